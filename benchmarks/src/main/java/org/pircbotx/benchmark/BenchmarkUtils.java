@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.benchmark;
+
+import com.google.common.collect.EvictingQueue;
+import java.io.IOException;
+import org.pircbotx.Configuration;
+import org.pircbotx.ReplayServer.ReplayPircBotX;
+import org.pircbotx.exception.IrcException;
+import org.pircbotx.hooks.ListenerAdapter;
+import org.pircbotx.hooks.managers.GenericListenerManager;
+
+/**
+ * Creates bots for benchmarks that never touch the network.
+ *
+ * @author Leon Blakey
+ */
+public final class BenchmarkUtils {
+	public static final String BOT_NICK = "PircBotXBot";
+	public static final String CHANNEL = "#bench";
+	/**
+	 * Representative inbound lines, also used to fill the benchmark channel
+	 */
+	public static final String LINE_PRIVMSG = ":user1!~login@user1.host.test PRIVMSG " + CHANNEL + " :Did anyone see the release notes for the new version?";
+	public static final String LINE_JOIN = ":user2!~login@user2.host.test JOIN " + CHANNEL;
+	public static final String LINE_MODE = ":op!~login@op.host.test MODE " + CHANNEL + " +o user1";
+	public static final String LINE_352 = ":irc.test 352 " + BOT_NICK + " " + CHANNEL + " ~login user3.host.test irc.test user3 H :0 Some Real Name";
+	public static final String LINE_353 = ":irc.test 353 " + BOT_NICK + " = " + CHANNEL + " :" + BOT_NICK + " @op +voice user1 user2 user3 user4 user5 user6 user7 user8 user9";
+
+	private BenchmarkUtils() {
+	}
+
+	/**
+	 * Create a bot that is logged in and has joined {@link #CHANNEL}. Events
+	 * are dispatched in the calling thread to the given listeners.
+	 */
+	@SuppressWarnings("deprecation")
+	public static ReplayPircBotX createBot(ListenerAdapter... listeners) throws IOException, IrcException {
+		Configuration.Builder config = new Configuration.Builder()
+				.setName(BOT_NICK)
+				.setLogin("login")
+				.addServer("irc.test")
+				.setMessageDelay(0)
+				.setCapEnabled(false)
+				.setListenerManager(new GenericListenerManager())
+				.setShutdownHookEnabled(false);
+		for (ListenerAdapter curListener : listeners)
+			config.addListener(curListener);
+		//Output is never read, don't let it pile up
+		ReplayPircBotX bot = new ReplayPircBotX(config.buildConfiguration(), EvictingQueue.<String>create(16));
+
+		bot.getInputParser().handleLine(":irc.test 001 " + BOT_NICK + " :Welcome to the benchmark network " + BOT_NICK);
+		bot.getInputParser().handleLine(":irc.test 004 " + BOT_NICK + " irc.test benchircd-1.0 iowx bklmnopstv bkloqv");
+		bot.getInputParser().handleLine(":irc.test 005 " + BOT_NICK + " CHANTYPES=# PREFIX=(ov)@+ CHANMODES=b,k,l,imnpst NICKLEN=30 :are supported by this server");
+		bot.getInputParser().handleLine(":" + BOT_NICK + "!~login@bot.host.test JOIN " + CHANNEL);
+		bot.getInputParser().handleLine(LINE_353);
+		bot.getInputParser().handleLine(":irc.test 366 " + BOT_NICK + " " + CHANNEL + " :End of /NAMES list.");
+		return bot;
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pircbotx.InputParser;
+import org.pircbotx.hooks.ListenerAdapter;
+
+/**
+ * Benchmarks of {@link InputParser#handleLine(java.lang.String) } including
+ * state updates and dispatching to a listener in the same thread.
+ *
+ * @author Leon Blakey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InputParserBenchmark {
+	@Param({"PRIVMSG", "JOIN", "MODE", "352", "353"})
+	public String lineType;
+	protected String line;
+	protected InputParser inputParser;
+
+	@Setup
+	public void setup() throws Exception {
+		inputParser = BenchmarkUtils.createBot(new ListenerAdapter() {
+		}).getInputParser();
+		if (lineType.equals("PRIVMSG"))
+			line = BenchmarkUtils.LINE_PRIVMSG;
+		else if (lineType.equals("JOIN"))
+			line = BenchmarkUtils.LINE_JOIN;
+		else if (lineType.equals("MODE"))
+			line = BenchmarkUtils.LINE_MODE;
+		else if (lineType.equals("352"))
+			line = BenchmarkUtils.LINE_352;
+		else if (lineType.equals("353"))
+			line = BenchmarkUtils.LINE_353;
+		else
+			throw new IllegalArgumentException("Unknown line type " + lineType);
+	}
+
+	@Benchmark
+	public void handleLine() throws Exception {
+		inputParser.handleLine(line);
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pircbotx.Channel;
+import org.pircbotx.PircBotX;
+import org.pircbotx.UserHostmask;
+import org.pircbotx.hooks.ListenerAdapter;
+import org.pircbotx.hooks.events.MessageEvent;
+import org.pircbotx.hooks.events.ServerResponseEvent;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+/**
+ * Benchmarks of routing an event through
+ * {@link ListenerAdapter#onEvent(org.pircbotx.hooks.Event) }, for events
+ * early and late in its checks.
+ *
+ * @author Leon Blakey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListenerAdapterBenchmark {
+	protected MessageEvent messageEvent;
+	protected ServerResponseEvent serverResponseEvent;
+	protected ListenerAdapter emptyListener;
+	protected ListenerAdapter messageListener;
+
+	@Setup
+	public void setup(final Blackhole blackhole) throws Exception {
+		PircBotX bot = BenchmarkUtils.createBot();
+		Channel channel = bot.getUserChannelDao().getChannel(BenchmarkUtils.CHANNEL);
+		UserHostmask hostmask = bot.getConfiguration().getBotFactory().createUserHostmask(bot, "user1!~login@user1.host.test");
+		messageEvent = new MessageEvent(bot, channel, channel.getName(), hostmask, bot.getUserChannelDao().getUser("user1"), "Hello");
+		serverResponseEvent = new ServerResponseEvent(bot, 372, ":irc.test 372 " + BenchmarkUtils.BOT_NICK + " :- MOTD",
+				ImmutableList.of(BenchmarkUtils.BOT_NICK, "- MOTD"));
+
+		emptyListener = new ListenerAdapter() {
+		};
+		messageListener = new ListenerAdapter() {
+			@Override
+			public void onMessage(MessageEvent event) throws Exception {
+				blackhole.consume(event);
+			}
+
+			@Override
+			public void onGenericMessage(GenericMessageEvent event) throws Exception {
+				blackhole.consume(event);
+			}
+		};
+	}
+
+	@Benchmark
+	public void messageEventEmptyListener() throws Exception {
+		emptyListener.onEvent(messageEvent);
+	}
+
+	@Benchmark
+	public void messageEvent() throws Exception {
+		messageListener.onEvent(messageEvent);
+	}
+
+	@Benchmark
+	public void serverResponseEvent() throws Exception {
+		messageListener.onEvent(serverResponseEvent);
+	}
+}
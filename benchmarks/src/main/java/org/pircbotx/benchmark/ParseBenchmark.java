@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pircbotx.Colors;
+import org.pircbotx.ParsedLine;
+import org.pircbotx.PircBotX;
+import org.pircbotx.UserHostmask;
+import org.pircbotx.Utils;
+
+/**
+ * Benchmarks of the String level parsing done for every line, independent of
+ * any bot state.
+ *
+ * @author Leon Blakey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+	protected String line = BenchmarkUtils.LINE_352;
+	protected String hostmask = "someNick!~someLogin@some.long.host.name.test";
+	protected String formattedMessage = Colors.BOLD + "Build " + Colors.GREEN + "#1234" + Colors.NORMAL
+			+ " finished: " + Colors.UNDERLINE + "SUCCESS" + Colors.NORMAL + " in " + Colors.RED + ",01" + "52 seconds";
+	protected String plainMessage = "Did anyone see the release notes for the new version?";
+	protected ParsedLine parsedLine = new ParsedLine();
+	protected PircBotX bot;
+
+	@Setup
+	public void setup() throws Exception {
+		bot = BenchmarkUtils.createBot();
+	}
+
+	@Benchmark
+	public List<String> tokenizeLine() {
+		return Utils.tokenizeLine(line);
+	}
+
+	@Benchmark
+	public ParsedLine parsedLine() {
+		return parsedLine.parse(line);
+	}
+
+	@Benchmark
+	public UserHostmask userHostmask() {
+		return bot.getConfiguration().getBotFactory().createUserHostmask(bot, hostmask);
+	}
+
+	@Benchmark
+	public String removeFormattingAndColors() {
+		return Colors.removeFormattingAndColors(formattedMessage);
+	}
+
+	@Benchmark
+	public String removeFormattingAndColorsPlain() {
+		return Colors.removeFormattingAndColors(plainMessage);
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.benchmark;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pircbotx.InputParser;
+import org.pircbotx.hooks.ListenerAdapter;
+
+/**
+ * Replays captured traffic through {@link InputParser}. Uses the bundled
+ * sample traffic by default or any file of raw server lines given with
+ * {@code -p trafficFile=/path/to/capture.txt}
+ *
+ * @author Leon Blakey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplayBenchmark {
+	@Param("")
+	public String trafficFile;
+	protected List<String> traffic;
+	protected InputParser inputParser;
+
+	@Setup
+	public void setup() throws Exception {
+		inputParser = BenchmarkUtils.createBot(new ListenerAdapter() {
+		}).getInputParser();
+		if (trafficFile.length() == 0)
+			traffic = Resources.readLines(Resources.getResource(ReplayBenchmark.class, "traffic.txt"), Charsets.UTF_8);
+		else
+			traffic = Resources.readLines(new File(trafficFile).toURI().toURL(), Charsets.UTF_8);
+	}
+
+	@Benchmark
+	public void replay() throws Exception {
+		for (String curLine : traffic)
+			inputParser.handleLine(curLine);
+	}
+}
@@ -26,7 +26,6 @@ import java.util.concurrent.CountDownLatch;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -41,11 +40,10 @@ import org.pircbotx.snapshot.ChannelSnapshot;
  *
  * @author Leon Blakey
  */
-@ToString(doNotUseGetters = true)
+@ToString(doNotUseGetters = true, exclude = {"snapshotVersion", "indexedId"})
 @EqualsAndHashCode(of = {"name", "bot"})
 @Slf4j
 @Getter
-@Setter(AccessLevel.PROTECTED)
 public class Channel implements Comparable<Channel> {
 	/**
 	 * The name of the channel. Will never change
@@ -67,7 +65,6 @@ public class Channel implements Comparable<Channel> {
 			return bot.getConfiguration().getBotFactory().createOutputChannel(bot, Channel.this);
 		}
 	};
-	@Setter(AccessLevel.NONE)
 	protected String mode = "";
 	/**
 	 * The current channel topic
@@ -116,10 +113,20 @@ public class Channel implements Comparable<Channel> {
 	 */
 	protected String channelKey = null;
 	@Getter(AccessLevel.NONE)
-	@Setter(AccessLevel.NONE)
 	protected CountDownLatch modeChangeLatch = null;
 	@Getter(AccessLevel.NONE)
 	protected final Object modeChangeLock = new Object();
+	/**
+	 * Last {@link UserChannelDao} snapshot that has a copy of this channel's
+	 * current state
+	 */
+	@Getter(AccessLevel.NONE)
+	protected int snapshotVersion = 0;
+	/**
+	 * Id of this channel in an {@link IndexedUserChannelDao}, -1 if none
+	 */
+	@Getter(AccessLevel.NONE)
+	protected int indexedId = -1;
 
 	protected Channel(PircBotX bot, String name) {
 		this.bot = bot;
@@ -141,6 +148,76 @@ public class Channel implements Comparable<Channel> {
 		return bot.getUserChannelDao();
 	}
 
+	/**
+	 * Called before this channel is modified, see
+	 * {@link UserChannelDao#beforeChange(org.pircbotx.Channel) }
+	 */
+	protected void beforeChange() {
+		UserChannelDao<User, Channel> dao = getDao();
+		if (dao != null)
+			dao.beforeChange(this);
+	}
+
+	protected void setTopic(String topic) {
+		beforeChange();
+		this.topic = topic;
+	}
+
+	protected void setTopicTimestamp(long topicTimestamp) {
+		beforeChange();
+		this.topicTimestamp = topicTimestamp;
+	}
+
+	protected void setCreateTimestamp(long createTimestamp) {
+		beforeChange();
+		this.createTimestamp = createTimestamp;
+	}
+
+	protected void setTopicSetter(UserHostmask topicSetter) {
+		beforeChange();
+		this.topicSetter = topicSetter;
+	}
+
+	protected void setModerated(boolean moderated) {
+		beforeChange();
+		this.moderated = moderated;
+	}
+
+	protected void setNoExternalMessages(boolean noExternalMessages) {
+		beforeChange();
+		this.noExternalMessages = noExternalMessages;
+	}
+
+	protected void setInviteOnly(boolean inviteOnly) {
+		beforeChange();
+		this.inviteOnly = inviteOnly;
+	}
+
+	protected void setSecret(boolean secret) {
+		beforeChange();
+		this.secret = secret;
+	}
+
+	protected void setChannelPrivate(boolean channelPrivate) {
+		beforeChange();
+		this.channelPrivate = channelPrivate;
+	}
+
+	protected void setTopicProtection(boolean topicProtection) {
+		beforeChange();
+		this.topicProtection = topicProtection;
+	}
+
+	protected void setChannelLimit(int channelLimit) {
+		beforeChange();
+		this.channelLimit = channelLimit;
+	}
+
+	protected void setChannelKey(String channelKey) {
+		beforeChange();
+		this.channelKey = channelKey;
+	}
+
 	/**
 	 * Send a line to the channel.
 	 *
@@ -155,6 +232,7 @@ public class Channel implements Comparable<Channel> {
 	}
 
 	protected void parseMode(String rawMode) {
+		beforeChange();
 		synchronized (modeChangeLock) {
 			if (rawMode.contains(" ") || (mode != null && mode.contains(" "))) {
 				//Mode contains arguments which are impossible to parse.
@@ -308,6 +386,7 @@ public class Channel implements Comparable<Channel> {
 	 * @param mode
 	 */
 	protected void setMode(String mode, ImmutableList<String> modeParsed) {
+		beforeChange();
 		synchronized (modeChangeLock) {
 			this.mode = mode;
 
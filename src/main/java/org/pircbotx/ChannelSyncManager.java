@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import static com.google.common.base.Preconditions.*;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import lombok.Getter;
+import lombok.NonNull;
+import org.pircbotx.hooks.events.ChannelSyncEvent;
+import org.pircbotx.output.OutputPriority;
+
+/**
+ * Requests the users and modes of channels the bot joins, unless
+ * {@link Configuration#isLazyChannelSync() } is enabled. WHO requests are
+ * queued and only {@link #getMaxInFlight() } are sent at a time, the next one
+ * being sent when a reply ends with 315, so joining many channels doesn't
+ * flood the bot with replies or trigger server penalties. If the server
+ * supports WHOX the user's account and real name are requested in a single
+ * reply.
+ * <p>
+ * When the reply to a requested WHO ends a {@link ChannelSyncEvent} is
+ * dispatched, except in lazy mode where it was already dispatched at the end of
+ * NAMES
+ *
+ * @author Leon Blakey
+ */
+public class ChannelSyncManager {
+	/**
+	 * Fields requested with WHOX: token, channel, login, host, nick, flags,
+	 * account, and real name
+	 */
+	public static final String WHOX_FIELDS = "%tcuhnfar";
+	/**
+	 * Query type sent with WHOX requests so their replies can be recognized
+	 */
+	public static final String WHOX_TOKEN = "743";
+	protected final PircBotX bot;
+	@Getter
+	protected final int maxInFlight;
+	/**
+	 * If joined channels are only synced with NAMES, see
+	 * {@link Configuration#isLazyChannelSync() }
+	 */
+	@Getter
+	protected final boolean lazy;
+	protected final Queue<String> queuedChannels = Lists.newLinkedList();
+	/**
+	 * All queued and in flight channels
+	 */
+	protected final Set<String> requestedChannels = Sets.newTreeSet(String.CASE_INSENSITIVE_ORDER);
+	protected final Set<String> inFlightChannels = Sets.newTreeSet(String.CASE_INSENSITIVE_ORDER);
+	/**
+	 * Joined channels waiting for the end of NAMES in lazy mode
+	 */
+	protected final Set<String> namesChannels = Sets.newTreeSet(String.CASE_INSENSITIVE_ORDER);
+
+	public ChannelSyncManager(@NonNull PircBotX bot, int maxInFlight, boolean lazy) {
+		checkArgument(maxInFlight > 0, "Max in flight must be positive");
+		this.bot = bot;
+		this.maxInFlight = maxInFlight;
+		this.lazy = lazy;
+	}
+
+	/**
+	 * Called when the bot joins a channel. Queues a sync unless in lazy mode
+	 * where the NAMES reply the server sends on join is used instead
+	 *
+	 * @param channel The channel name
+	 */
+	public synchronized void joined(@NonNull String channel) {
+		if (lazy)
+			namesChannels.add(channel);
+		else
+			requestSync(channel);
+	}
+
+	/**
+	 * Called when a NAMES reply ends
+	 *
+	 * @param channel The channel of the NAMES reply
+	 * @return True if in lazy mode and the channel was just joined
+	 */
+	public synchronized boolean namesFinished(@NonNull String channel) {
+		return namesChannels.remove(channel);
+	}
+
+	/**
+	 * Queue a channel to be synced. Does nothing if the channel is already
+	 * queued or waiting for a reply. In lazy mode this is how listeners fetch
+	 * user details, the channel modes are not requested
+	 *
+	 * @param channel The channel name
+	 */
+	public synchronized void requestSync(@NonNull String channel) {
+		if (!requestedChannels.add(channel))
+			return;
+		queuedChannels.add(channel);
+		sendRequests();
+	}
+
+	/**
+	 * Called when a WHO reply ends
+	 *
+	 * @param channel The target of the WHO
+	 * @return True if the WHO was sent by this manager
+	 */
+	public synchronized boolean whoFinished(@NonNull String channel) {
+		if (!inFlightChannels.remove(channel))
+			return false;
+		requestedChannels.remove(channel);
+		sendRequests();
+		return true;
+	}
+
+	/**
+	 * Called when the bot leaves a channel, drops it from the queue so no WHO
+	 * or MODE is sent for it. A WHO that was already sent stays in flight
+	 * until its 315 frees the slot
+	 *
+	 * @param channel The channel name
+	 */
+	public synchronized void parted(@NonNull String channel) {
+		namesChannels.remove(channel);
+		for (Iterator<String> itr = queuedChannels.iterator(); itr.hasNext();)
+			if (itr.next().equalsIgnoreCase(channel))
+				itr.remove();
+		if (!inFlightChannels.contains(channel))
+			requestedChannels.remove(channel);
+	}
+
+	public synchronized boolean isSyncing(@NonNull String channel) {
+		return requestedChannels.contains(channel);
+	}
+
+	public synchronized int getQueuedCount() {
+		return queuedChannels.size();
+	}
+
+	public synchronized int getInFlightCount() {
+		return inFlightChannels.size();
+	}
+
+	/**
+	 * Forget all requests, eg when the bot disconnects
+	 */
+	public synchronized void reset() {
+		queuedChannels.clear();
+		requestedChannels.clear();
+		inFlightChannels.clear();
+		namesChannels.clear();
+	}
+
+	protected void sendRequests() {
+		String channel;
+		while (inFlightChannels.size() < maxInFlight && (channel = queuedChannels.poll()) != null) {
+			inFlightChannels.add(channel);
+			bot.sendRaw().rawLineAsync(createWho(channel), OutputPriority.BULK);
+			if (!lazy)
+				bot.sendRaw().rawLineAsync("MODE " + channel, OutputPriority.BULK);
+		}
+	}
+
+	protected String createWho(String channel) {
+		if (bot.getServerInfo().isWhoX())
+			return "WHO " + channel + " " + WHOX_FIELDS + "," + WHOX_TOKEN;
+		return "WHO " + channel;
+	}
+}
@@ -27,11 +27,13 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import javax.net.SocketFactory;
+import javax.net.ssl.SSLSocketFactory;
 import lombok.Data;
 import lombok.NonNull;
 import lombok.ToString;
@@ -39,6 +41,7 @@ import lombok.experimental.Accessors;
 import org.apache.commons.lang3.StringUtils;
 import org.pircbotx.cap.CapHandler;
 import org.pircbotx.cap.EnableCapHandler;
+import org.pircbotx.cap.TLSCapHandler;
 import org.pircbotx.dcc.DccHandler;
 import org.pircbotx.dcc.ReceiveChat;
 import org.pircbotx.dcc.ReceiveFileTransfer;
@@ -49,11 +52,14 @@ import org.pircbotx.hooks.CoreHooks;
 import org.pircbotx.hooks.Listener;
 import org.pircbotx.hooks.managers.ListenerManager;
 import org.pircbotx.hooks.managers.ThreadedListenerManager;
+import org.pircbotx.hooks.managers.VirtualThreadListenerManager;
 import org.pircbotx.output.OutputCAP;
 import org.pircbotx.output.OutputChannel;
 import org.pircbotx.output.OutputDCC;
 import org.pircbotx.output.OutputIRC;
 import org.pircbotx.output.OutputRaw;
+import org.pircbotx.output.RateLimiter;
+import org.pircbotx.output.TokenBucketRateLimiter;
 import org.pircbotx.output.OutputUser;
 
 /**
@@ -80,6 +86,10 @@ public class Configuration {
 	protected final String channelPrefixes;
 	protected final String userLevelPrefixes;
 	protected final boolean snapshotsEnabled;
+	protected final boolean scopedSnapshots;
+	protected final boolean netSplitDetection;
+	protected final boolean netSplitEventsOnly;
+	protected final long netSplitTimeout;
 	//DCC
 	protected final boolean dccFilenameQuotes;
 	protected final ImmutableList<Integer> dccPorts;
@@ -116,6 +126,12 @@ public class Configuration {
 	protected final ImmutableList<CapHandler> capHandlers;
 	protected final ImmutableSortedMap<Character, ChannelModeHandler> channelModeHandlers;
 	protected final BotFactory botFactory;
+	protected final TokenBucketRateLimiter.Preset rateLimitPreset;
+	protected final int maxWhoInFlight;
+	protected final boolean lazyChannelSync;
+	protected final boolean indexedUserChannelDao;
+	protected final NioConnectionEngine nioConnectionEngine;
+	protected final boolean virtualThreadsEnabled;
 
 	/**
 	 * Use {@link Configuration.Builder#buildConfiguration() }.
@@ -154,6 +170,9 @@ public class Configuration {
 		checkArgument(builder.getSocketTimeout() > 0, "Socket timeout must greater than 0");
 		checkArgument(builder.getMaxLineLength() > 0, "Max line length must be positive");
 		checkArgument(builder.getMessageDelay() >= 0, "Message delay must be positive");
+		checkNotNull(builder.getRateLimitPreset(), "Must specify rate limit preset");
+		checkArgument(builder.getMaxWhoInFlight() > 0, "Max WHO requests in flight must be positive");
+		checkArgument(builder.getNetSplitTimeout() > 0, "Netsplit timeout must be positive");
 		checkNotNull(builder.getAutoJoinChannels(), "Auto join channels map cannot be null");
 		for (Map.Entry<String, String> curEntry : builder.getAutoJoinChannels().entrySet())
 			if (StringUtils.isBlank(curEntry.getKey()))
@@ -168,6 +187,11 @@ public class Configuration {
 		checkNotNull(builder.getCapHandlers(), "Cap handlers list cannot be null");
 		checkNotNull(builder.getChannelModeHandlers(), "Channel mode handlers list cannot be null");
 		checkNotNull(builder.getBotFactory(), "Must specify bot factory");
+		if (builder.getNioConnectionEngine() != null) {
+			checkArgument(!(builder.getSocketFactory() instanceof SSLSocketFactory), "NioConnectionEngine does not support SSL sockets");
+			for (CapHandler curHandler : builder.getCapHandlers())
+				checkArgument(!(curHandler instanceof TLSCapHandler), "NioConnectionEngine does not support STARTTLS");
+		}
 
 		this.webIrcEnabled = builder.isWebIrcEnabled();
 		this.webIrcUsername = builder.getWebIrcUsername();
@@ -182,6 +206,10 @@ public class Configuration {
 		this.channelPrefixes = builder.getChannelPrefixes().trim();
 		this.userLevelPrefixes = builder.getUserLevelPrefixes().trim();
 		this.snapshotsEnabled = builder.isSnapshotsEnabled();
+		this.scopedSnapshots = builder.isScopedSnapshots();
+		this.netSplitDetection = builder.isNetSplitDetection();
+		this.netSplitEventsOnly = builder.isNetSplitEventsOnly();
+		this.netSplitTimeout = builder.getNetSplitTimeout();
 		this.dccFilenameQuotes = builder.isDccFilenameQuotes();
 		this.dccPorts = ImmutableList.copyOf(builder.getDccPorts());
 		this.dccLocalAddress = builder.getDccLocalAddress();
@@ -211,13 +239,33 @@ public class Configuration {
 		this.listenerManager = builder.getListenerManager();
 		this.autoJoinChannels = ImmutableMap.copyOf(builder.getAutoJoinChannels());
 		this.capEnabled = builder.isCapEnabled();
-		this.capHandlers = ImmutableList.copyOf(builder.getCapHandlers());
+		ImmutableList<CapHandler> capHandlers = ImmutableList.copyOf(builder.getCapHandlers());
+		if (builder.isLazyChannelSync() && !hasEnableCapHandler(capHandlers, "userhost-in-names"))
+			//Get logins and hostnames from NAMES since there's no WHO
+			capHandlers = ImmutableList.<CapHandler>builder()
+					.addAll(capHandlers)
+					.add(new EnableCapHandler("userhost-in-names", true))
+					.build();
+		this.capHandlers = capHandlers;
 		ImmutableSortedMap.Builder<Character, ChannelModeHandler> channelModeHandlersBuilder = ImmutableSortedMap.naturalOrder();
 		for (ChannelModeHandler curHandler : builder.getChannelModeHandlers())
 			channelModeHandlersBuilder.put(curHandler.getMode(), curHandler);
 		this.channelModeHandlers = channelModeHandlersBuilder.build();
 		this.shutdownHookEnabled = builder.isShutdownHookEnabled();
 		this.botFactory = builder.getBotFactory();
+		this.rateLimitPreset = builder.getRateLimitPreset();
+		this.maxWhoInFlight = builder.getMaxWhoInFlight();
+		this.lazyChannelSync = builder.isLazyChannelSync();
+		this.indexedUserChannelDao = builder.isIndexedUserChannelDao();
+		this.nioConnectionEngine = builder.getNioConnectionEngine();
+		this.virtualThreadsEnabled = builder.isVirtualThreadsEnabled();
+	}
+
+	protected static boolean hasEnableCapHandler(List<CapHandler> capHandlers, String cap) {
+		for (CapHandler curHandler : capHandlers)
+			if (curHandler instanceof EnableCapHandler && ((EnableCapHandler) curHandler).getCap().equals(cap))
+				return true;
+		return false;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -300,6 +348,41 @@ public class Configuration {
 		 * relatively few user QUITs and PARTs per second.
 		 */
 		protected boolean snapshotsEnabled = true;
+		/**
+		 * Only include the affected user and channels in the snapshots created for
+		 * PartEvent and QuitEvent, default false. The snapshot contains the parting
+		 * user and channel or the quitting user and all of their channels with only
+		 * that user's membership and levels, so the cost doesn't depend on the size
+		 * of the network. Other users and channels are not known to the snapshot
+		 */
+		protected boolean scopedSnapshots = false;
+		/**
+		 * Detect netsplits and netjoins, default false. Consecutive QUITs with a
+		 * reason of two server names are processed together with a single snapshot
+		 * and followed by a {@link org.pircbotx.hooks.events.NetSplitEvent}. When
+		 * those users join again, consecutive JOINs are followed by a
+		 * {@link org.pircbotx.hooks.events.NetJoinEvent}. The end of a netsplit is
+		 * only known when an unrelated line is received, in which case the events
+		 * are dispatched right before that line is processed, or after
+		 * {@link #getNetSplitTimeout() } passes without another QUIT or JOIN of the
+		 * netsplit. Either way they are dispatched by the thread handling lines.
+		 * Until then the quitting users are still in the {@link UserChannelDao},
+		 * so events are delayed by about the timeout at most
+		 */
+		protected boolean netSplitDetection = false;
+		/**
+		 * With {@link #isNetSplitDetection() }, only dispatch the NetSplitEvent and
+		 * NetJoinEvent instead of also a QuitEvent or JoinEvent for every user,
+		 * default false. Useful on large networks where a netsplit can cause
+		 * thousands of events
+		 */
+		protected boolean netSplitEventsOnly = false;
+		/**
+		 * Milliseconds without another QUIT or JOIN of a netsplit or netjoin after
+		 * which its events are dispatched anyway, default 2 seconds. See
+		 * {@link #isNetSplitDetection() }
+		 */
+		protected long netSplitTimeout = 2000;
 		//DCC
 		/**
 		 * If true sends filenames in quotes, otherwise uses underscores,
@@ -481,6 +564,56 @@ public class Configuration {
 		 * The {@link BotFactory} to use
 		 */
 		protected BotFactory botFactory = new BotFactory();
+		/**
+		 * Flood control used for sending lines to the server, default
+		 * {@link TokenBucketRateLimiter.Preset#FIXED_DELAY} which waits
+		 * {@link #getMessageDelay() } between every line. For a custom
+		 * {@link RateLimiter} override
+		 * {@link BotFactory#createRateLimiter(org.pircbotx.PircBotX) }
+		 */
+		protected TokenBucketRateLimiter.Preset rateLimitPreset = TokenBucketRateLimiter.Preset.FIXED_DELAY;
+		/**
+		 * Maximum number of WHO requests sent by the {@link ChannelSyncManager} that
+		 * can be waiting for a reply at the same time, default 2. Further channels
+		 * are queued until a reply ends
+		 */
+		protected int maxWhoInFlight = 2;
+		/**
+		 * Skip the WHO and MODE requests sent when joining a channel and only use
+		 * the NAMES reply, default false. Users will only have their nick, prefixes,
+		 * and if the server supports userhost-in-names (requested automatically)
+		 * their login and hostname until {@link ChannelSyncManager#requestSync(java.lang.String) }
+		 * is called. Useful for large bots that only react to messages
+		 */
+		protected boolean lazyChannelSync = false;
+		/**
+		 * Store channel membership in an {@link IndexedUserChannelDao}, default false.
+		 * Users and channels get dense int ids and each channel stores its members
+		 * with their levels in a primitive table, using far less memory than the
+		 * default maps in channels with thousands of users.
+		 * <p>
+		 * Full snapshots of this dao copy every membership, so with
+		 * {@link #isSnapshotsEnabled() } each PART and QUIT costs O(all
+		 * memberships). Enable {@link #isScopedSnapshots() } as well to keep their
+		 * cost proportional to the user's channels
+		 */
+		protected boolean indexedUserChannelDao = false;
+		/**
+		 * The {@link NioConnectionEngine} that multiplexes this bot's connection with
+		 * other bots on a small set of selector threads, default null which reads
+		 * from the socket in the thread that called {@link PircBotX#startBot() }.
+		 * Note that SSL and STARTTLS are not supported by the engine
+		 */
+		protected NioConnectionEngine nioConnectionEngine = null;
+		/**
+		 * Run listeners on virtual threads when the JVM supports them, default
+		 * false. This only changes the default listener manager to a
+		 * {@link VirtualThreadListenerManager}, so it must be set before the listener
+		 * manager is set or first used (eg by adding a listener), otherwise
+		 * changing it throws an IllegalStateException. On older JVMs listeners run
+		 * on a normal cached thread pool
+		 */
+		protected boolean virtualThreadsEnabled = false;
 
 		/**
 		 * Create with defaults that work in most situations and IRC servers
@@ -507,6 +640,10 @@ public class Configuration {
 			this.channelPrefixes = configuration.getChannelPrefixes();
 			this.userLevelPrefixes = configuration.getUserLevelPrefixes();
 			this.snapshotsEnabled = configuration.isSnapshotsEnabled();
+			this.scopedSnapshots = configuration.isScopedSnapshots();
+			this.netSplitDetection = configuration.isNetSplitDetection();
+			this.netSplitEventsOnly = configuration.isNetSplitEventsOnly();
+			this.netSplitTimeout = configuration.getNetSplitTimeout();
 			this.dccFilenameQuotes = configuration.isDccFilenameQuotes();
 			this.dccPorts.addAll(configuration.getDccPorts());
 			this.dccLocalAddress = configuration.getDccLocalAddress();
@@ -540,6 +677,12 @@ public class Configuration {
 			this.channelModeHandlers.addAll(configuration.getChannelModeHandlers().values());
 			this.shutdownHookEnabled = configuration.isShutdownHookEnabled();
 			this.botFactory = configuration.getBotFactory();
+			this.rateLimitPreset = configuration.getRateLimitPreset();
+			this.maxWhoInFlight = configuration.getMaxWhoInFlight();
+			this.lazyChannelSync = configuration.isLazyChannelSync();
+			this.indexedUserChannelDao = configuration.isIndexedUserChannelDao();
+			this.nioConnectionEngine = configuration.getNioConnectionEngine();
+			this.virtualThreadsEnabled = configuration.isVirtualThreadsEnabled();
 		}
 
 		/**
@@ -561,6 +704,10 @@ public class Configuration {
 			this.channelPrefixes = otherBuilder.getChannelPrefixes();
 			this.userLevelPrefixes = otherBuilder.getUserLevelPrefixes();
 			this.snapshotsEnabled = otherBuilder.isSnapshotsEnabled();
+			this.scopedSnapshots = otherBuilder.isScopedSnapshots();
+			this.netSplitDetection = otherBuilder.isNetSplitDetection();
+			this.netSplitEventsOnly = otherBuilder.isNetSplitEventsOnly();
+			this.netSplitTimeout = otherBuilder.getNetSplitTimeout();
 			this.dccFilenameQuotes = otherBuilder.isDccFilenameQuotes();
 			this.dccPorts.addAll(otherBuilder.getDccPorts());
 			this.dccLocalAddress = otherBuilder.getDccLocalAddress();
@@ -594,6 +741,12 @@ public class Configuration {
 			this.channelModeHandlers.addAll(otherBuilder.getChannelModeHandlers());
 			this.shutdownHookEnabled = otherBuilder.isShutdownHookEnabled();
 			this.botFactory = otherBuilder.getBotFactory();
+			this.rateLimitPreset = otherBuilder.getRateLimitPreset();
+			this.maxWhoInFlight = otherBuilder.getMaxWhoInFlight();
+			this.lazyChannelSync = otherBuilder.isLazyChannelSync();
+			this.indexedUserChannelDao = otherBuilder.isIndexedUserChannelDao();
+			this.nioConnectionEngine = otherBuilder.getNioConnectionEngine();
+			this.virtualThreadsEnabled = otherBuilder.isVirtualThreadsEnabled();
 		}
 
 		/**
@@ -742,6 +895,18 @@ public class Configuration {
 			return this;
 		}
 
+		/**
+		 * @see #isVirtualThreadsEnabled()
+		 * @throws IllegalStateException If the listener manager was already
+		 * created or set
+		 */
+		public Builder setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+			checkState(listenerManager == null || this.virtualThreadsEnabled == virtualThreadsEnabled,
+					"Virtual threads must be set before the listener manager is created or set, eg by adding a listener");
+			this.virtualThreadsEnabled = virtualThreadsEnabled;
+			return this;
+		}
+
 		public void replaceCoreHooksListener(CoreHooks extended) {
 			//Find the corehooks impl
 			CoreHooks orig = null;
@@ -757,15 +922,17 @@ public class Configuration {
 
 		/**
 		 * Returns the current ListenerManager in use by this bot. Note that the
-		 * default listener manager ({@link ListenerManager}) is lazy loaded
-		 * here unless one was already set
+		 * default listener manager ({@link ThreadedListenerManager}, or
+		 * {@link VirtualThreadListenerManager} if
+		 * {@link #isVirtualThreadsEnabled() }) is lazy loaded here unless one was
+		 * already set
 		 *
 		 * @return Current ListenerManager
 		 */
 		@SuppressWarnings("unchecked")
 		public <M extends ListenerManager> M getListenerManager() {
 			if (listenerManager == null)
-				setListenerManager(new ThreadedListenerManager());
+				setListenerManager(virtualThreadsEnabled ? new VirtualThreadListenerManager() : new ThreadedListenerManager());
 			return (M) listenerManager;
 		}
 
@@ -819,6 +986,8 @@ public class Configuration {
 	 */
 	public static class BotFactory {
 		public UserChannelDao createUserChannelDao(PircBotX bot) {
+			if (bot.getConfiguration().isIndexedUserChannelDao())
+				return new IndexedUserChannelDao(bot, bot.getConfiguration().getBotFactory());
 			return new UserChannelDao(bot, bot.getConfiguration().getBotFactory());
 		}
 
@@ -826,6 +995,10 @@ public class Configuration {
 			return new OutputRaw(bot);
 		}
 
+		public RateLimiter createRateLimiter(PircBotX bot) {
+			return bot.getConfiguration().getRateLimitPreset().create(bot.getConfiguration());
+		}
+
 		public OutputCAP createOutputCAP(PircBotX bot) {
 			return new OutputCAP(bot);
 		}
@@ -870,6 +1043,10 @@ public class Configuration {
 			return new ReceiveFileTransfer(bot.getConfiguration(), socket, user, file, startPosition, fileSize);
 		}
 
+		public ChannelSyncManager createChannelSyncManager(PircBotX bot) {
+			return new ChannelSyncManager(bot, bot.getConfiguration().getMaxWhoInFlight(), bot.getConfiguration().isLazyChannelSync());
+		}
+
 		public ServerInfo createServerInfo(PircBotX bot) {
 			return new ServerInfo(bot);
 		}
@@ -889,6 +1066,10 @@ public class Configuration {
 		public Channel createChannel(PircBotX bot, String name) {
 			return new Channel(bot, name);
 		}
+
+		public NioConnection createNioConnection(PircBotX bot, SocketChannel channel) {
+			return new NioConnection(bot, channel);
+		}
 	}
 
 	@Data
@@ -0,0 +1,542 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import com.google.common.collect.ImmutableSortedSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.pircbotx.UserChannelMap.levelBit;
+import lombok.NonNull;
+import org.pircbotx.snapshot.UserChannelDaoSnapshot;
+
+/**
+ * A {@link UserChannelDao} that gives each user and channel with members a
+ * dense int id and stores membership in primitive tables instead of a
+ * {@link UserChannelMap}. Each channel has a table of member ids mapped to a
+ * bitmask of their {@link UserLevel}s and each user has a table of the channel
+ * ids they are in, so a membership costs a few bytes instead of a few map
+ * entries. The id is stored on the user or channel itself so finding it
+ * doesn't need a map either. Ids of users and channels that are gone are
+ * reused. Unlike the
+ * default dao, membership lookups lock since the tables are modified in place.
+ * <p>
+ * Enable with
+ * {@link Configuration.Builder#setIndexedUserChannelDao(boolean) }
+ *
+ * @author Leon Blakey
+ */
+public class IndexedUserChannelDao<U extends User, C extends Channel> extends UserChannelDao<U, C> {
+	protected final IdSpace<U> userIds = new IdSpace<U>() {
+		@Override
+		protected int getId(U user) {
+			return user.indexedId;
+		}
+
+		@Override
+		protected void setId(U user, int id) {
+			user.indexedId = id;
+		}
+	};
+	protected final IdSpace<C> channelIds = new IdSpace<C>() {
+		@Override
+		protected int getId(C channel) {
+			return channel.indexedId;
+		}
+
+		@Override
+		protected void setId(C channel, int id) {
+			channel.indexedId = id;
+		}
+	};
+
+	protected IndexedUserChannelDao(PircBotX bot, Configuration.BotFactory botFactory) {
+		super(bot, botFactory);
+	}
+
+	@Override
+	protected void addUserToChannel(@NonNull U user, @NonNull C channel) {
+		synchronized (accessLock) {
+			addMember(user, channel);
+		}
+	}
+
+	/**
+	 * Add the user to the channel if they aren't already a member
+	 *
+	 * @return The user's id
+	 */
+	protected int addMember(U user, C channel) {
+		int channelId = channelIds.acquire(channel);
+		int userId = userIds.acquire(user);
+		channelIds.table(channelId).add(userId);
+		userIds.table(userId).add(channelId);
+		return userId;
+	}
+
+	@Override
+	protected void addUserToLevel(@NonNull UserLevel level, @NonNull U user, @NonNull C channel) {
+		synchronized (accessLock) {
+			int userId = addMember(user, channel);
+			IdTable members = channelIds.table(channelIds.get(channel));
+			members.put(userId, members.get(userId) | levelBit(level));
+		}
+	}
+
+	@Override
+	protected void removeUserFromLevel(@NonNull UserLevel level, @NonNull U user, @NonNull C channel) {
+		synchronized (accessLock) {
+			int channelId = channelIds.get(channel);
+			int userId = userIds.get(user);
+			if (channelId == -1 || userId == -1)
+				return;
+			IdTable members = channelIds.table(channelId);
+			int levels = members.get(userId);
+			if (levels != -1)
+				members.put(userId, levels & ~levelBit(level));
+		}
+	}
+
+	@Override
+	protected boolean levelContainsUser(@NonNull UserLevel level, @NonNull C channel, @NonNull U user) {
+		synchronized (accessLock) {
+			return (getLevelBits(channel, user) & levelBit(level)) != 0;
+		}
+	}
+
+	/**
+	 * @return The level bitmask of the user in the channel, or 0 if they are
+	 * not a member
+	 */
+	protected int getLevelBits(C channel, U user) {
+		int channelId = channelIds.get(channel);
+		int userId = userIds.get(user);
+		if (channelId == -1 || userId == -1)
+			return 0;
+		return Math.max(channelIds.table(channelId).get(userId), 0);
+	}
+
+	@Override
+	public ImmutableSortedSet<UserLevel> getLevels(@NonNull C channel, @NonNull U user) {
+		synchronized (accessLock) {
+			int levels = getLevelBits(channel, user);
+			ImmutableSortedSet.Builder<UserLevel> builder = ImmutableSortedSet.naturalOrder();
+			for (UserLevel curLevel : UserLevel.values())
+				if ((levels & levelBit(curLevel)) != 0)
+					builder.add(curLevel);
+			return builder.build();
+		}
+	}
+
+	@Override
+	public ImmutableSortedSet<U> getUsers(@NonNull C channel) {
+		synchronized (accessLock) {
+			return getMembers(channel, -1);
+		}
+	}
+
+	@Override
+	public ImmutableSortedSet<U> getUsers(@NonNull C channel, @NonNull UserLevel level) {
+		synchronized (accessLock) {
+			return getMembers(channel, levelBit(level));
+		}
+	}
+
+	@Override
+	public ImmutableSortedSet<U> getNormalUsers(@NonNull C channel) {
+		synchronized (accessLock) {
+			return getMembers(channel, 0);
+		}
+	}
+
+	/**
+	 * @param levelMask -1 for all members, 0 for members without a level,
+	 * otherwise members holding any of the levels in the mask
+	 */
+	protected ImmutableSortedSet<U> getMembers(C channel, int levelMask) {
+		int channelId = channelIds.get(channel);
+		if (channelId == -1)
+			return ImmutableSortedSet.of();
+		IdTable members = channelIds.table(channelId);
+		List<U> users = new ArrayList<U>(members.size());
+		for (int i = 0; i < members.capacity(); i++) {
+			int userId = members.keyAt(i);
+			if (userId != IdTable.FREE && matchesLevel(members.valueAt(i), levelMask))
+				users.add(userIds.object(userId));
+		}
+		return ImmutableSortedSet.copyOf(users);
+	}
+
+	protected static boolean matchesLevel(int levels, int levelMask) {
+		if (levelMask == -1)
+			return true;
+		if (levelMask == 0)
+			return levels == 0;
+		return (levels & levelMask) != 0;
+	}
+
+	@Override
+	public ImmutableSortedSet<C> getChannels(@NonNull U user) {
+		synchronized (accessLock) {
+			return getUserChannels(user, -1);
+		}
+	}
+
+	@Override
+	public ImmutableSortedSet<C> getChannels(@NonNull U user, @NonNull UserLevel level) {
+		synchronized (accessLock) {
+			return getUserChannels(user, levelBit(level));
+		}
+	}
+
+	@Override
+	public ImmutableSortedSet<C> getNormalUserChannels(@NonNull U user) {
+		synchronized (accessLock) {
+			return getUserChannels(user, 0);
+		}
+	}
+
+	/**
+	 * @param levelMask Same as {@link #getMembers(org.pircbotx.Channel, int) }
+	 */
+	protected ImmutableSortedSet<C> getUserChannels(U user, int levelMask) {
+		int userId = userIds.get(user);
+		if (userId == -1)
+			return ImmutableSortedSet.of();
+		IdTable userChannels = userIds.table(userId);
+		List<C> channels = new ArrayList<C>(userChannels.size());
+		for (int i = 0; i < userChannels.capacity(); i++) {
+			int channelId = userChannels.keyAt(i);
+			if (channelId != IdTable.FREE && matchesLevel(channelIds.table(channelId).get(userId), levelMask))
+				channels.add(channelIds.object(channelId));
+		}
+		return ImmutableSortedSet.copyOf(channels);
+	}
+
+	@Override
+	protected void removeUserFromChannel(@NonNull U user, @NonNull C channel) {
+		synchronized (accessLock) {
+			int channelId = channelIds.get(channel);
+			int userId = userIds.get(user);
+			if (channelId != -1 && userId != -1) {
+				channelIds.table(channelId).remove(userId);
+				IdTable userChannels = userIds.table(userId);
+				userChannels.remove(channelId);
+				if (userChannels.size() == 0)
+					userIds.release(userId);
+			}
+
+			if (!privateUsers.values().contains(user) && userIds.get(user) == -1)
+				//Completely remove user
+				userNickMap = userNickMap.minus(user.getNick().toLowerCase(locale));
+		}
+	}
+
+	@Override
+	protected void removeUser(@NonNull U user) {
+		synchronized (accessLock) {
+			int userId = userIds.get(user);
+			if (userId != -1) {
+				IdTable userChannels = userIds.table(userId);
+				for (int i = 0; i < userChannels.capacity(); i++) {
+					int channelId = userChannels.keyAt(i);
+					if (channelId != IdTable.FREE)
+						channelIds.table(channelId).remove(userId);
+				}
+				userIds.release(userId);
+			}
+
+			//Remove remaining locations
+			userNickMap = userNickMap.minus(user.getNick().toLowerCase(locale));
+			privateUsers = privateUsers.minus(user.getNick().toLowerCase(locale));
+		}
+	}
+
+	@Override
+	protected void removeUsers(@NonNull Iterable<U> users) {
+		synchronized (accessLock) {
+			for (U curUser : users)
+				removeUser(curUser);
+		}
+	}
+
+	@Override
+	protected void removeChannel(@NonNull C channel) {
+		synchronized (accessLock) {
+			int channelId = channelIds.get(channel);
+			if (channelId != -1) {
+				IdTable members = channelIds.table(channelId);
+				for (int i = 0; i < members.capacity(); i++) {
+					int userId = members.keyAt(i);
+					if (userId == IdTable.FREE)
+						continue;
+					IdTable userChannels = userIds.table(userId);
+					userChannels.remove(channelId);
+					if (userChannels.size() == 0)
+						userIds.release(userId);
+				}
+				channelIds.release(channelId);
+			}
+
+			//Remove remaining locations
+			channelNameMap = channelNameMap.minus(channel.getName());
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized (accessLock) {
+			userIds.clear();
+			channelIds.clear();
+			super.close();
+		}
+	}
+
+	/**
+	 * Create a snapshot of all users and channels. Unlike the default dao the
+	 * tables can't be shared with the snapshot, so this copies every membership
+	 * and costs O(all memberships). Prefer
+	 * {@link #createSnapshot(org.pircbotx.User, java.lang.Iterable) }, which
+	 * InputParser uses for PART and QUIT with
+	 * {@link Configuration#isScopedSnapshots() }
+	 */
+	@Override
+	public UserChannelDaoSnapshot createSnapshot() {
+		synchronized (accessLock) {
+			//Expand the tables into a map for the snapshot
+			UserChannelMap<U, C> snapshotMap = new UserChannelMap<U, C>();
+			for (int channelId = 0; channelId < channelIds.nextId; channelId++) {
+				C channel = channelIds.object(channelId);
+				if (channel == null)
+					continue;
+				IdTable members = channelIds.table(channelId);
+				for (int i = 0; i < members.capacity(); i++) {
+					int userId = members.keyAt(i);
+					if (userId == IdTable.FREE)
+						continue;
+					U user = userIds.object(userId);
+					snapshotMap.addUserToChannel(user, channel);
+					for (UserLevel curLevel : UserLevel.values())
+						if ((members.valueAt(i) & levelBit(curLevel)) != 0)
+							snapshotMap.addUserToLevel(curLevel, user, channel);
+				}
+			}
+			return createSnapshot(snapshotMap);
+		}
+	}
+
+	/**
+	 * Assigns dense ids to objects, reusing released ids, and keeps an
+	 * {@link IdTable} for each id. The id of an object is stored on the object
+	 * by the subclass
+	 */
+	protected abstract static class IdSpace<T> {
+		protected Object[] objects = new Object[16];
+		protected IdTable[] tables = new IdTable[16];
+		protected int[] freeIds = new int[16];
+		protected int freeCount = 0;
+		/**
+		 * All ids below this have been used at least once
+		 */
+		protected int nextId = 0;
+
+		/**
+		 * @return The id of the object or -1 if it doesn't have one
+		 */
+		public int get(T object) {
+			return getId(object);
+		}
+
+		/**
+		 * @return The id of the object, assigning one if needed
+		 */
+		public int acquire(T object) {
+			int existingId = getId(object);
+			if (existingId != -1)
+				return existingId;
+			int id;
+			if (freeCount > 0)
+				id = freeIds[--freeCount];
+			else {
+				id = nextId++;
+				if (id == objects.length) {
+					objects = Arrays.copyOf(objects, id * 2);
+					tables = Arrays.copyOf(tables, id * 2);
+				}
+			}
+			setId(object, id);
+			objects[id] = object;
+			tables[id] = new IdTable();
+			return id;
+		}
+
+		public void release(int id) {
+			setId(object(id), -1);
+			objects[id] = null;
+			tables[id] = null;
+			if (freeCount == freeIds.length)
+				freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+			freeIds[freeCount++] = id;
+		}
+
+		@SuppressWarnings("unchecked")
+		public T object(int id) {
+			return (T) objects[id];
+		}
+
+		public IdTable table(int id) {
+			return tables[id];
+		}
+
+		/**
+		 * @return The id stored on the object or -1 if it doesn't have one
+		 */
+		protected abstract int getId(T object);
+
+		protected abstract void setId(T object, int id);
+
+		public void clear() {
+			for (int i = 0; i < nextId; i++)
+				if (objects[i] != null)
+					setId(object(i), -1);
+			Arrays.fill(objects, null);
+			Arrays.fill(tables, null);
+			freeCount = 0;
+			nextId = 0;
+		}
+	}
+
+	/**
+	 * Open addressing hash table of non-negative int ids to a byte value with
+	 * linear probing. Iterate with {@link #capacity() }, {@link #keyAt(int) },
+	 * and {@link #valueAt(int) }, skipping {@link #FREE} slots
+	 */
+	protected static class IdTable {
+		public static final int FREE = -1;
+		protected int[] keys;
+		protected byte[] values;
+		protected int size = 0;
+
+		public IdTable() {
+			keys = new int[4];
+			Arrays.fill(keys, FREE);
+			values = new byte[4];
+		}
+
+		protected static int hash(int key) {
+			int hash = key * 0x9E3779B9;
+			return hash ^ (hash >>> 16);
+		}
+
+		/**
+		 * @return The slot containing the key or the free slot it belongs in
+		 */
+		protected int slot(int key) {
+			int mask = keys.length - 1;
+			int slot = hash(key) & mask;
+			while (keys[slot] != FREE && keys[slot] != key)
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		/**
+		 * @return The value of the key or -1 if the key doesn't exist
+		 */
+		public int get(int key) {
+			int slot = slot(key);
+			return keys[slot] == FREE ? -1 : values[slot] & 0xFF;
+		}
+
+		/**
+		 * Add the key with a value of 0 if it doesn't exist
+		 */
+		public void add(int key) {
+			if (keys[slot(key)] == FREE)
+				put(key, 0);
+		}
+
+		public void put(int key, int value) {
+			int slot = slot(key);
+			if (keys[slot] == FREE) {
+				keys[slot] = key;
+				size++;
+			}
+			values[slot] = (byte) value;
+			//Keep the load factor below 3/4 so there's always a free slot
+			if (size * 4 > keys.length * 3)
+				resize(keys.length * 2);
+		}
+
+		public boolean remove(int key) {
+			int slot = slot(key);
+			if (keys[slot] == FREE)
+				return false;
+
+			//Shift back following keys that would no longer be found
+			int mask = keys.length - 1;
+			int hole = slot;
+			int next = slot;
+			while (true) {
+				next = (next + 1) & mask;
+				if (keys[next] == FREE)
+					break;
+				int home = hash(keys[next]) & mask;
+				boolean between = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+				if (!between) {
+					keys[hole] = keys[next];
+					values[hole] = values[next];
+					hole = next;
+				}
+			}
+			keys[hole] = FREE;
+			values[hole] = 0;
+			size--;
+			return true;
+		}
+
+		protected void resize(int newCapacity) {
+			int[] oldKeys = keys;
+			byte[] oldValues = values;
+			keys = new int[newCapacity];
+			Arrays.fill(keys, FREE);
+			values = new byte[newCapacity];
+			for (int i = 0; i < oldKeys.length; i++)
+				if (oldKeys[i] != FREE) {
+					int slot = slot(oldKeys[i]);
+					keys[slot] = oldKeys[i];
+					values[slot] = oldValues[i];
+				}
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int capacity() {
+			return keys.length;
+		}
+
+		public int keyAt(int slot) {
+			return keys[slot];
+		}
+
+		public int valueAt(int slot) {
+			return values[slot] & 0xFF;
+		}
+	}
+}
@@ -19,9 +19,13 @@ package org.pircbotx;
 
 import org.pircbotx.snapshot.UserSnapshot;
 import com.google.common.base.CharMatcher;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -33,6 +37,8 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import lombok.Getter;
@@ -47,6 +53,7 @@ import org.pircbotx.exception.IrcException;
 import org.pircbotx.hooks.events.ActionEvent;
 import org.pircbotx.hooks.events.BanListEvent;
 import org.pircbotx.hooks.events.ChannelInfoEvent;
+import org.pircbotx.hooks.events.ChannelSyncEvent;
 import org.pircbotx.hooks.events.ConnectEvent;
 import org.pircbotx.hooks.events.FingerEvent;
 import org.pircbotx.hooks.events.HalfOpEvent;
@@ -56,6 +63,8 @@ import org.pircbotx.hooks.events.KickEvent;
 import org.pircbotx.hooks.events.MessageEvent;
 import org.pircbotx.hooks.events.ModeEvent;
 import org.pircbotx.hooks.events.MotdEvent;
+import org.pircbotx.hooks.events.NetJoinEvent;
+import org.pircbotx.hooks.events.NetSplitEvent;
 import org.pircbotx.hooks.events.NickAlreadyInUseEvent;
 import org.pircbotx.hooks.events.NickChangeEvent;
 import org.pircbotx.hooks.events.NoticeEvent;
@@ -264,6 +273,11 @@ public class InputParser implements Closeable {
 	protected final List<CapHandler> capHandlersFinished = Lists.newArrayList();
 	protected boolean capEndSent = false;
 	protected BufferedReader inputReader;
+	/**
+	 * Reused for every line to avoid allocating a new one
+	 */
+	protected final ParsedLine parsedLineCache = new ParsedLine();
+	protected boolean parsedLineInUse = false;
 	//Builders
 	/**
 	 * Map to keep active WhoisEvents. Must be a treemap to be case insensitive
@@ -275,6 +289,41 @@ public class InputParser implements Closeable {
 	protected ImmutableList.Builder<ChannelListEntry> channelListBuilder;
 	protected int nickSuffix = 0;
 	protected final Multimap<Channel, BanListEvent.Entry> banListBuilder = LinkedListMultimap.create();
+	//Netsplits, see Configuration#isNetSplitDetection()
+	/**
+	 * Quit reason of a netsplit: two server names
+	 */
+	protected static final Pattern NETSPLIT_REASON = Pattern.compile("[^ .]+(\\.[^ .]+)+ [^ .]+(\\.[^ .]+)+");
+	/**
+	 * When the last QUIT or JOIN of the current netsplit or netjoin was
+	 * received. Volatile so the connection can check for the timeout, see
+	 * {@link #getNetSplitTimeoutRemaining() }
+	 */
+	protected volatile long netSplitLastNanos;
+	/**
+	 * If a netsplit or netjoin is still being received
+	 */
+	protected volatile boolean netSplitPending = false;
+	/**
+	 * Quit reason of the netsplit currently being received, null if none
+	 */
+	protected String netSplitReason;
+	protected final List<UserHostmask> netSplitHostmasks = Lists.newArrayList();
+	protected final List<User> netSplitUsers = Lists.newArrayList();
+	/**
+	 * Lowercase nicks of users that quit in a netsplit to the quit reason, used
+	 * to detect netjoins
+	 */
+	protected final Cache<String, String> netSplitNicks = CacheBuilder.newBuilder()
+			.expireAfterWrite(1, TimeUnit.HOURS)
+			.maximumSize(100000)
+			.build();
+	/**
+	 * Quit reason of the netsplit the netjoin currently being received ends,
+	 * null if none
+	 */
+	protected String netJoinReason;
+	protected final Multimap<User, Channel> netJoinChannels = LinkedHashMultimap.create();
 
 	public InputParser(PircBotX bot) {
 		this.bot = bot;
@@ -291,18 +340,43 @@ public class InputParser implements Closeable {
 		String line = CharMatcher.WHITESPACE.trimFrom(rawLine);
 		log.info(INPUT_MARKER, line);
 
-		List<String> parsedLine = Utils.tokenizeLine(line);
+		if (line.length() == 0)
+			return;
+
+		//Reuse the parsed line unless a listener is handling lines recursively
+		ParsedLine parsed = parsedLineInUse ? new ParsedLine(line) : parsedLineCache.parse(line);
+		boolean ownsCache = !parsedLineInUse;
+		parsedLineInUse = true;
+		try {
+			handleLine(parsed);
+		} finally {
+			if (ownsCache)
+				parsedLineInUse = false;
+		}
+	}
+
+	/**
+	 * Handle an already parsed line from the server
+	 *
+	 * @param parsed The parsed line, only valid for the duration of this call
+	 */
+	protected void handleLine(ParsedLine parsed) throws IOException, IrcException {
+		String line = parsed.getLine();
 
-		String sourceRaw = "";
-		if (parsedLine.get(0).charAt(0) == ':')
-			sourceRaw = parsedLine.remove(0);
+		//Any other line ends a netsplit or netjoin
+		checkNetSplitTimeout();
+		if (netSplitReason != null && !(parsed.isCommand("QUIT") && parsed.getParamCount() != 0 && parsed.getParam(0).equals(netSplitReason)))
+			finishNetSplit();
+		if (netJoinReason != null && !parsed.isCommand("MODE") && !(parsed.isCommand("JOIN") && netJoinReason.equals(getNetSplitReason(parsed))))
+			finishNetJoin();
 
-		String command = parsedLine.remove(0).toUpperCase(configuration.getLocale());
+		String sourceRaw = parsed.getPrefix();
+		String command = parsed.getCommand().toUpperCase(configuration.getLocale());
 
 		// Check for server pings.
 		if (command.equals("PING")) {
 			// Respond to the ping and return immediately.
-			configuration.getListenerManager().dispatchEvent(new ServerPingEvent(bot, parsedLine.get(0)));
+			configuration.getListenerManager().dispatchEvent(new ServerPingEvent(bot, parsed.getParam(0)));
 			return;
 		} else if (command.startsWith("ERROR")) {
 			//Server is shutting us down
@@ -310,12 +384,12 @@ public class InputParser implements Closeable {
 			return;
 		}
 
-		String target = (parsedLine.isEmpty()) ? "" : parsedLine.get(0);
+		String target = (parsed.getParamCount() == 0) ? "" : parsed.getParam(0);
 		if (target.startsWith(":"))
 			target = target.substring(1);
 
 		//Make sure this is a valid IRC line
-		if (!sourceRaw.startsWith(":")) {
+		if (!parsed.hasPrefix()) {
 			// We don't know what this line means.
 			configuration.getListenerManager().dispatchEvent(new UnknownEvent(bot, line));
 			if (!bot.loggedIn)
@@ -327,13 +401,17 @@ public class InputParser implements Closeable {
 			return;
 		}
 
+		//The process methods are public and may keep the parameters, so they get
+		//an immutable copy instead of the reused view
+		ImmutableList<String> parsedLine = parsed.getParamsCopy();
+
 		//if user build source hostmask or call server parsing method
 		UserHostmask source;
 		if (StringUtils.containsAny(target, '!', '@'))
 			source = bot.getConfiguration().getBotFactory().createUserHostmask(bot, target);
 		else {
 			//Must be a backend code 
-			int code = Utils.tryParseInt(command, -1);
+			int code = parsed.getCode();
 			if (code != -1) {
 				if (!bot.loggedIn)
 					processConnect(line, command, target, parsedLine);
@@ -383,8 +461,7 @@ public class InputParser implements Closeable {
 					autoConnectChannels = ImmutableMap.of();
 				else
 					autoConnectChannels = configuration.getAutoJoinChannels();
-			for (Map.Entry<String, String> channelEntry : autoConnectChannels.entrySet())
-				bot.sendIRC().joinChannel(channelEntry.getKey(), channelEntry.getValue());
+			bot.sendIRC().joinChannels(autoConnectChannels);
 		} else if (code.equals("439"))
 			//EXAMPLE: PircBotX: Target change too fast. Please wait 104 seconds
 			// No action required.
@@ -524,13 +601,23 @@ public class InputParser implements Closeable {
 			if (source.getNick().equalsIgnoreCase(bot.getNick())) {
 				//Its us, get channel info
 				channel = bot.getUserChannelDao().createChannel(target);
-				bot.sendRaw().rawLine("WHO " + target);
-				bot.sendRaw().rawLine("MODE " + target);
+				bot.getChannelSyncManager().joined(target);
 			}
 			//Create user if it doesn't exist already
 			sourceUser = createUserIfNull(sourceUser, source);
 
 			bot.getUserChannelDao().addUserToChannel(sourceUser, channel);
+
+			String splitReason = configuration.isNetSplitDetection()
+					? netSplitNicks.getIfPresent(source.getNick().toLowerCase(configuration.getLocale())) : null;
+			if (splitReason != null) {
+				//User is returning from a netsplit
+				netJoinReason = splitReason;
+				netJoinChannels.put(sourceUser, channel);
+				netSplitReceived();
+				if (configuration.isNetSplitEventsOnly())
+					return;
+			}
 			configuration.getListenerManager().dispatchEvent(new JoinEvent(bot, channel, source, sourceUser));
 		} else if (command.equals("PART")) {
 			// Someone is parting from a channel.
@@ -538,7 +625,9 @@ public class InputParser implements Closeable {
 			ChannelSnapshot channelSnapshot;
 			UserSnapshot sourceSnapshot;
 			if (configuration.isSnapshotsEnabled()) {
-				daoSnapshot = bot.getUserChannelDao().createSnapshot();
+				daoSnapshot = (configuration.isScopedSnapshots() && sourceUser != null)
+						? bot.getUserChannelDao().createSnapshot(sourceUser, ImmutableList.of(channel))
+						: bot.getUserChannelDao().createSnapshot();
 				channelSnapshot = daoSnapshot.getChannel(channel.getName());
 				sourceSnapshot = daoSnapshot.getUser(source);
 			} else {
@@ -547,10 +636,11 @@ public class InputParser implements Closeable {
 				sourceSnapshot = null;
 			}
 
-			if (source.getNick().equalsIgnoreCase(bot.getNick()))
+			if (source.getNick().equalsIgnoreCase(bot.getNick())) {
 				//We parted the channel
+				bot.getChannelSyncManager().parted(channel.getName());
 				bot.getUserChannelDao().removeChannel(channel);
-			else
+			} else
 				//Just remove the user from memory
 				bot.getUserChannelDao().removeUserFromChannel(sourceUser, channel);
 			configuration.getListenerManager().dispatchEvent(new PartEvent(bot, daoSnapshot, channelSnapshot, source, sourceSnapshot, message));
@@ -567,10 +657,20 @@ public class InputParser implements Closeable {
 			// Someone is sending a notice.
 			configuration.getListenerManager().dispatchEvent(new NoticeEvent(bot, source, sourceUser, channel, target, message));
 		} else if (command.equals("QUIT")) {
+			if (configuration.isNetSplitDetection() && sourceUser != null && NETSPLIT_REASON.matcher(target).matches()) {
+				//Handled with the rest of the netsplit by finishNetSplit()
+				netSplitReason = target;
+				netSplitHostmasks.add(source);
+				netSplitUsers.add(sourceUser);
+				netSplitReceived();
+				return;
+			}
 			UserChannelDaoSnapshot daoSnapshot;
 			UserSnapshot sourceSnapshot;
 			if (configuration.isSnapshotsEnabled()) {
-				daoSnapshot = bot.getUserChannelDao().createSnapshot();
+				daoSnapshot = configuration.isScopedSnapshots()
+						? bot.getUserChannelDao().createSnapshot(sourceUser, bot.getUserChannelDao().getChannels(sourceUser))
+						: bot.getUserChannelDao().createSnapshot();
 				sourceSnapshot = daoSnapshot.getUser(sourceUser.getNick());
 			} else {
 				daoSnapshot = null;
@@ -588,10 +688,11 @@ public class InputParser implements Closeable {
 			UserHostmask recipientHostmask = bot.getConfiguration().getBotFactory().createUserHostmask(bot, message);
 			User recipient = bot.getUserChannelDao().getUser(message);
 
-			if (recipient.getNick().equals(bot.getNick()))
+			if (recipient.getNick().equals(bot.getNick())) {
 				//We were just kicked
+				bot.getChannelSyncManager().parted(channel.getName());
 				bot.getUserChannelDao().removeChannel(channel);
-			else
+			} else
 				//Someone else
 				bot.getUserChannelDao().removeUserFromChannel(recipient, channel);
 			configuration.getListenerManager().dispatchEvent(new KickEvent(bot, channel, source, sourceUser, recipientHostmask, recipient, parsedLine.get(2)));
@@ -694,6 +795,9 @@ public class InputParser implements Closeable {
 			channel.setTopicSetter(setBy);
 
 			configuration.getListenerManager().dispatchEvent(new TopicEvent(bot, channel, null, channel.getTopic(), setBy, date, false));
+		} else if (code == RPL_WHOREPLY && bot.getChannelSyncManager().isSyncing(parsedResponse.get(1))
+				&& !bot.getUserChannelDao().containsChannel(parsedResponse.get(1))) {
+			//Reply to a sync of a channel the bot has since left, ignore
 		} else if (code == RPL_WHOREPLY) {
 			//EXAMPLE: 352 PircBotX #aChannel ~someName 74.56.56.56.my.Hostmask wolfe.freenode.net someNick H :0 Full Name
 			//Part of a WHO reply on information on individual users
@@ -722,8 +826,32 @@ public class InputParser implements Closeable {
 		} else if (code == RPL_ENDOFWHO) {
 			//EXAMPLE: 315 PircBotX #aChannel :End of /WHO list
 			//End of the WHO reply
-			Channel channel = bot.getUserChannelDao().getChannel(parsedResponse.get(1));
-			configuration.getListenerManager().dispatchEvent(new UserListEvent(bot, channel, bot.getUserChannelDao().getUsers(channel), true));
+			boolean synced = bot.getChannelSyncManager().whoFinished(parsedResponse.get(1));
+			//Skip WHOs of users or of channels the bot has since left
+			if (bot.getUserChannelDao().containsChannel(parsedResponse.get(1))) {
+				Channel channel = bot.getUserChannelDao().getChannel(parsedResponse.get(1));
+				configuration.getListenerManager().dispatchEvent(new UserListEvent(bot, channel, bot.getUserChannelDao().getUsers(channel), true));
+				//In lazy mode the event was already dispatched at the end of NAMES
+				if (synced && !bot.getChannelSyncManager().isLazy())
+					configuration.getListenerManager().dispatchEvent(new ChannelSyncEvent(bot, channel));
+			}
+		} else if (code == RPL_WHOSPCRPL && parsedResponse.size() == 9 && parsedResponse.get(1).equals(ChannelSyncManager.WHOX_TOKEN)
+				&& !bot.getUserChannelDao().containsChannel(parsedResponse.get(2))) {
+			//WHOX reply for a channel the bot has since left, ignore
+		} else if (code == RPL_WHOSPCRPL && parsedResponse.size() == 9 && parsedResponse.get(1).equals(ChannelSyncManager.WHOX_TOKEN)) {
+			//EXAMPLE: 354 PircBotX 743 #aChannel ~someName 74.56.56.56.my.Hostmask someNick H@ someAccount :Full Name
+			//WHOX reply to a request from the ChannelSyncManager, fields are %tcuhnfar
+			Channel channel = bot.getUserChannelDao().getChannel(parsedResponse.get(2));
+
+			UserHostmask curUserHostmask = bot.getConfiguration().getBotFactory().createUserHostmask(bot, null, parsedResponse.get(5), parsedResponse.get(3), parsedResponse.get(4));
+			User curUser = (bot.getUserChannelDao().containsUser(curUserHostmask)) ? bot.getUserChannelDao().getUser(curUserHostmask) : bot.getUserChannelDao().createUser(curUserHostmask);
+			processUserStatus(channel, curUser, parsedResponse.get(6));
+			//Account is 0 if not logged in
+			String account = parsedResponse.get(7);
+			curUser.setAccount(account.equals("0") ? null : account);
+			curUser.setRealName(parsedResponse.get(8));
+
+			bot.getUserChannelDao().addUserToChannel(curUser, channel);
 		} else if (code == RPL_CHANNELMODEIS) {
 			//EXAMPLE: 324 PircBotX #aChannel +cnt
 			//Full channel mode (In response to MODE <channel>)
@@ -759,14 +887,15 @@ public class InputParser implements Closeable {
 		} else if (code == 4 || code == 5) {
 			//Example: 004 PircBotX sendak.freenode.net ircd-seven-1.1.3 DOQRSZaghilopswz CFILMPQbcefgijklmnopqrstvz bkloveqjfI
 			//Server info line, remove ending comment and let ServerInfo class parse it
+			List<String> serverInfoParsed = parsedResponseOrig;
 			int endCommentIndex = rawResponse.lastIndexOf(" :");
 			if (endCommentIndex > 1) {
 				String endComment = rawResponse.substring(endCommentIndex + 2);
 				int lastIndex = parsedResponseOrig.size() - 1;
 				if (endComment.equals(parsedResponseOrig.get(lastIndex)))
-					parsedResponseOrig.remove(lastIndex);
+					serverInfoParsed = parsedResponseOrig.subList(0, lastIndex);
 			}
-			bot.getServerInfo().parse(code, parsedResponseOrig);
+			bot.getServerInfo().parse(code, serverInfoParsed);
 		} else if (code == RPL_WHOISUSER) {
 			//Example: 311 TheLQ Plazma ~Plazma freenode/staff/plazma * :Plazma Rooolz!
 			//New whois is starting
@@ -865,12 +994,16 @@ public class InputParser implements Closeable {
 					levels.add(parsedLevel);
 				}
 				
+				//With userhost-in-names this is a full hostmask
+				UserHostmask hostmask = configuration.getBotFactory().createUserHostmask(bot, nick);
 				User user;
-				if(!bot.getUserChannelDao().containsUser(nick))
+				if(!bot.getUserChannelDao().containsUser(hostmask))
 					//Create user with nick only
-					user = bot.getUserChannelDao().createUser(new UserHostmask(bot, nick));
-				else 
-					user = bot.getUserChannelDao().getUser(nick);
+					user = bot.getUserChannelDao().createUser(hostmask);
+				else {
+					user = bot.getUserChannelDao().getUser(hostmask);
+					user.updateHostmask(hostmask);
+				}
 				Channel chan = bot.getUserChannelDao().getChannel(parsedResponse.get(2));
 				bot.getUserChannelDao().addUserToChannel(user, chan);
 				
@@ -882,8 +1015,11 @@ public class InputParser implements Closeable {
 		} else if (code == 366) {
 			//NAMES response finished
 			//366 PircBotXUser #aChannel :End of /NAMES list.
+			boolean synced = bot.getChannelSyncManager().namesFinished(parsedResponse.get(1));
 			Channel channel = bot.getUserChannelDao().getChannel(parsedResponse.get(1));
 			configuration.getListenerManager().dispatchEvent(new UserListEvent(bot, channel, bot.getUserChannelDao().getUsers(channel), false));
+			if (synced)
+				configuration.getListenerManager().dispatchEvent(new ChannelSyncEvent(bot, channel));
 		}
 		configuration.getListenerManager().dispatchEvent(new ServerResponseEvent(bot, code, rawResponse, parsedResponse));
 	}
@@ -963,6 +1099,116 @@ public class InputParser implements Closeable {
 		motdBuilder = null;
 		channelListRunning = false;
 		channelListBuilder = null;
+		bot.getChannelSyncManager().reset();
+		finishNetSplits();
+		netSplitNicks.invalidateAll();
+	}
+
+	/**
+	 * Dispatch the events of a netsplit or netjoin that is still being
+	 * received, eg before the bot disconnects. Must be called by the thread
+	 * handling lines
+	 */
+	public void finishNetSplits() {
+		if (netSplitReason != null)
+			finishNetSplit();
+		if (netJoinReason != null)
+			finishNetJoin();
+	}
+
+	/**
+	 * Dispatch the events of a netsplit or netjoin once
+	 * {@link Configuration#getNetSplitTimeout() } passed without another QUIT
+	 * or JOIN. Must be called by the thread handling lines, which does so when
+	 * {@link #getNetSplitTimeoutRemaining() } says its time even if no line
+	 * was received
+	 */
+	public void checkNetSplitTimeout() {
+		if (getNetSplitTimeoutRemaining() == 0)
+			finishNetSplits();
+	}
+
+	/**
+	 * Get how long until the netsplit or netjoin that is still being received
+	 * times out. Can be called by any thread
+	 *
+	 * @return Milliseconds until {@link #checkNetSplitTimeout() } dispatches
+	 * it, 0 if it already timed out or -1 if there isn't one
+	 */
+	public long getNetSplitTimeoutRemaining() {
+		if (!netSplitPending)
+			return -1;
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - netSplitLastNanos);
+		return Math.max(configuration.getNetSplitTimeout() - elapsed, 0);
+	}
+
+	/**
+	 * Record that a QUIT or JOIN of the current netsplit or netjoin was
+	 * received
+	 */
+	protected void netSplitReceived() {
+		netSplitLastNanos = System.nanoTime();
+		netSplitPending = true;
+	}
+
+	/**
+	 * Get the netsplit the source of the line quit in
+	 *
+	 * @return The quit reason or null if the source didn't quit in a netsplit
+	 */
+	protected String getNetSplitReason(ParsedLine parsed) {
+		String prefix = parsed.getPrefix();
+		int nickEnd = prefix.indexOf('!');
+		if (nickEnd == -1)
+			return null;
+		return netSplitNicks.getIfPresent(prefix.substring(1, nickEnd).toLowerCase(configuration.getLocale()));
+	}
+
+	/**
+	 * Remove all users that quit in the netsplit with a single snapshot, then
+	 * dispatch their QuitEvents and a NetSplitEvent
+	 */
+	protected void finishNetSplit() {
+		String reason = netSplitReason;
+		ImmutableList<UserHostmask> hostmasks = ImmutableList.copyOf(netSplitHostmasks);
+		ImmutableList<User> users = ImmutableList.copyOf(netSplitUsers);
+		netSplitReason = null;
+		netSplitHostmasks.clear();
+		netSplitUsers.clear();
+		netSplitPending = netJoinReason != null;
+
+		UserChannelDaoSnapshot daoSnapshot = configuration.isSnapshotsEnabled() ? bot.getUserChannelDao().createSnapshot() : null;
+		ImmutableList.Builder<UserSnapshot> userSnapshots = ImmutableList.builder();
+		if (daoSnapshot != null)
+			for (User curUser : users)
+				userSnapshots.add(daoSnapshot.getUser(curUser.getNick()));
+		ImmutableList<UserSnapshot> userSnapshotList = userSnapshots.build();
+
+		bot.getUserChannelDao().removeUsers(users);
+		for (User curUser : users)
+			netSplitNicks.put(curUser.getNick().toLowerCase(configuration.getLocale()), reason);
+
+		if (!configuration.isNetSplitEventsOnly())
+			for (int i = 0; i < hostmasks.size(); i++)
+				configuration.getListenerManager().dispatchEvent(new QuitEvent(bot, daoSnapshot, hostmasks.get(i),
+						daoSnapshot != null ? userSnapshotList.get(i) : null, reason));
+		String[] servers = StringUtils.split(reason, ' ');
+		configuration.getListenerManager().dispatchEvent(new NetSplitEvent(bot, daoSnapshot, servers[0], servers[1], hostmasks, userSnapshotList));
+	}
+
+	/**
+	 * Dispatch a NetJoinEvent for the users that rejoined
+	 */
+	protected void finishNetJoin() {
+		String[] servers = StringUtils.split(netJoinReason, ' ');
+		ImmutableSetMultimap<User, Channel> userChannels = ImmutableSetMultimap.copyOf(netJoinChannels);
+		netJoinReason = null;
+		netJoinChannels.clear();
+		netSplitPending = netSplitReason != null;
+
+		for (User curUser : userChannels.keySet())
+			netSplitNicks.invalidate(curUser.getNick().toLowerCase(configuration.getLocale()));
+		configuration.getListenerManager().dispatchEvent(new NetJoinEvent(bot, servers[0], servers[1], userChannels));
 	}
 
 	protected static abstract class OpChannelModeHandler extends ChannelModeHandler {
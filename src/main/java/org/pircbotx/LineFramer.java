@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import static com.google.common.base.Preconditions.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Splits raw bytes from the server into lines on LF (with an optional CR)
+ * without decoding them first. Bytes are read into a single reusable buffer
+ * and only complete lines are decoded, pure ASCII lines without running the
+ * charset decoder.
+ * <p>
+ * Complete lines are decoded as a whole and then split by {@link ParsedLine}.
+ * Parsing the prefix, command and parameters out of the bytes wouldn't save the
+ * decode since every line is logged and passed as a String to
+ * {@link InputParser} and its events anyway.
+ * <p>
+ * Lines longer than the buffer are split. Empty lines are skipped. This class
+ * is not thread safe
+ *
+ * @author Leon Blakey
+ */
+public class LineFramer {
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+	protected static final byte[] ASCII_TEST = " !#0:9@AZ[]az{}~".getBytes(Charset.forName("US-ASCII"));
+	/**
+	 * Maps every byte to the char of the same value, so for ASCII bytes its
+	 * equivalent to any ASCII compatible encoding but decodes without lookups
+	 */
+	protected static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+	@Getter
+	protected final Charset encoding;
+	/**
+	 * If the encoding maps ASCII bytes to the same characters, allowing the
+	 * decoder to be skipped for pure ASCII lines
+	 */
+	protected final boolean asciiCompatible;
+	protected final byte[] array;
+	/**
+	 * Wraps {@link #array}, position is the end of the read data
+	 */
+	protected final ByteBuffer buffer;
+	/**
+	 * Start of the data that hasn't been returned as a line yet
+	 */
+	protected int frameStart = 0;
+	/**
+	 * Where to resume searching for a line ending
+	 */
+	protected int scanStart = 0;
+	/**
+	 * Offset of the current line in {@link #array}
+	 */
+	protected int lineOffset = 0;
+	/**
+	 * Length of the current line without the line ending, -1 if there is no
+	 * current line
+	 */
+	protected int lineLength = -1;
+
+	public LineFramer(Charset encoding) {
+		this(encoding, DEFAULT_BUFFER_SIZE);
+	}
+
+	public LineFramer(@NonNull Charset encoding, int bufferSize) {
+		checkArgument(bufferSize > 0, "Buffer size must be positive");
+		this.encoding = encoding;
+		this.asciiCompatible = isAsciiCompatible(encoding);
+		this.array = new byte[bufferSize];
+		this.buffer = ByteBuffer.wrap(array);
+	}
+
+	/**
+	 * Check if the encoding maps ASCII bytes to the same characters
+	 */
+	public static boolean isAsciiCompatible(Charset encoding) {
+		return Arrays.equals(new String(ASCII_TEST, Charset.forName("US-ASCII")).getBytes(encoding), ASCII_TEST);
+	}
+
+	/**
+	 * Get the buffer to read new data into, eg with
+	 * {@link java.nio.channels.ReadableByteChannel#read(java.nio.ByteBuffer) }.
+	 * Any partial line is moved to the start of the buffer first
+	 *
+	 * @return The reusable buffer
+	 */
+	public ByteBuffer getReadBuffer() {
+		if (frameStart > 0) {
+			int remaining = buffer.position() - frameStart;
+			System.arraycopy(array, frameStart, array, 0, remaining);
+			scanStart -= frameStart;
+			lineOffset = 0;
+			lineLength = -1;
+			frameStart = 0;
+			buffer.position(remaining);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Read available data from the stream into the buffer. This blocks until
+	 * at least one byte is read
+	 *
+	 * @return The number of bytes read or -1 if the end of the stream was
+	 * reached
+	 * @throws IOException From the stream, including
+	 * {@link java.net.SocketTimeoutException} on a read timeout
+	 */
+	public int fill(InputStream input) throws IOException {
+		ByteBuffer readBuffer = getReadBuffer();
+		int read = input.read(array, readBuffer.position(), readBuffer.remaining());
+		if (read > 0)
+			readBuffer.position(readBuffer.position() + read);
+		return read;
+	}
+
+	/**
+	 * Frame the next complete line in the buffer.
+	 *
+	 * @return True if a line is available with {@link #decodeLine() }, false
+	 * if more data needs to be read
+	 */
+	public boolean nextLine() {
+		int dataEnd = buffer.position();
+		while (true) {
+			int newline = -1;
+			for (int i = scanStart; i < dataEnd; i++)
+				if (array[i] == '\n') {
+					newline = i;
+					break;
+				}
+
+			if (newline == -1) {
+				if (frameStart == 0 && dataEnd == array.length && dataEnd > 0) {
+					//Buffer is full without a line ending, return it as a line
+					lineOffset = 0;
+					lineLength = dataEnd;
+					frameStart = scanStart = dataEnd;
+					return true;
+				}
+				scanStart = dataEnd;
+				lineLength = -1;
+				return false;
+			}
+
+			int lineEnd = newline;
+			if (lineEnd > frameStart && array[lineEnd - 1] == '\r')
+				lineEnd--;
+			lineOffset = frameStart;
+			lineLength = lineEnd - frameStart;
+			frameStart = scanStart = newline + 1;
+			if (lineLength > 0)
+				return true;
+		}
+	}
+
+	/**
+	 * Read the next line from the stream, blocking until one is available.
+	 *
+	 * @return The decoded line or null if the end of the stream was reached
+	 * @throws IOException From the stream
+	 */
+	public String readLine(InputStream input) throws IOException {
+		while (!nextLine())
+			if (fill(input) == -1)
+				return null;
+		return decodeLine();
+	}
+
+	/**
+	 * Decode the current line
+	 */
+	public String decodeLine() {
+		checkState(lineLength != -1, "No line is available");
+		return decode(lineOffset, lineLength);
+	}
+
+	protected String decode(int offset, int length) {
+		if (asciiCompatible) {
+			boolean ascii = true;
+			for (int i = offset, end = offset + length; i < end; i++)
+				if (array[i] < 0) {
+					ascii = false;
+					break;
+				}
+			if (ascii)
+				//No need to run the full decoder
+				return new String(array, offset, length, LATIN1);
+		}
+		return new String(array, offset, length, encoding);
+	}
+}
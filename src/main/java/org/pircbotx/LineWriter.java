@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import static com.google.common.base.Preconditions.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Writes lines to the server through a single reusable buffer. Lines are
+ * encoded directly into the buffer, pure ASCII lines without running the
+ * encoder, and only written to the stream when the buffer is full or
+ * {@link #flush() } is called, so several lines can share one write.
+ * <p>
+ * This class is not thread safe
+ *
+ * @see LineFramer
+ * @author Leon Blakey
+ */
+public class LineWriter {
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+	protected final OutputStream output;
+	@Getter
+	protected final Charset encoding;
+	protected final boolean asciiCompatible;
+	protected final byte[] buffer;
+	/**
+	 * Number of bytes in the buffer that haven't been written yet
+	 */
+	@Getter
+	protected int bufferedBytes = 0;
+
+	public LineWriter(OutputStream output, Charset encoding) {
+		this(output, encoding, DEFAULT_BUFFER_SIZE);
+	}
+
+	public LineWriter(@NonNull OutputStream output, @NonNull Charset encoding, int bufferSize) {
+		checkArgument(bufferSize > 2, "Buffer size must be greater than 2");
+		this.output = output;
+		this.encoding = encoding;
+		this.asciiCompatible = LineFramer.isAsciiCompatible(encoding);
+		this.buffer = new byte[bufferSize];
+	}
+
+	/**
+	 * Buffer the line followed by a CRLF line ending
+	 *
+	 * @param line The line without a line ending
+	 * @throws IOException If the buffer was full and writing it failed
+	 */
+	public void writeLine(String line) throws IOException {
+		int length = line.length();
+		if (asciiCompatible && length + 2 <= buffer.length) {
+			if (bufferedBytes + length + 2 > buffer.length)
+				flushBuffer();
+			int start = bufferedBytes;
+			boolean ascii = true;
+			for (int i = 0; i < length; i++) {
+				char curChar = line.charAt(i);
+				if (curChar >= 0x80) {
+					ascii = false;
+					break;
+				}
+				buffer[start + i] = (byte) curChar;
+			}
+			if (ascii) {
+				buffer[start + length] = '\r';
+				buffer[start + length + 1] = '\n';
+				bufferedBytes = start + length + 2;
+				return;
+			}
+		}
+
+		byte[] bytes = line.getBytes(encoding);
+		if (bufferedBytes + bytes.length + 2 > buffer.length)
+			flushBuffer();
+		if (bytes.length + 2 > buffer.length) {
+			//Too long for the buffer
+			output.write(bytes);
+			output.write('\r');
+			output.write('\n');
+			return;
+		}
+		System.arraycopy(bytes, 0, buffer, bufferedBytes, bytes.length);
+		bufferedBytes += bytes.length;
+		buffer[bufferedBytes++] = '\r';
+		buffer[bufferedBytes++] = '\n';
+	}
+
+	protected void flushBuffer() throws IOException {
+		if (bufferedBytes == 0)
+			return;
+		//Reset first so a failed write doesn't send the same bytes again
+		int length = bufferedBytes;
+		bufferedBytes = 0;
+		output.write(buffer, 0, length);
+	}
+
+	/**
+	 * Write all buffered lines and flush the stream
+	 *
+	 * @throws IOException From the stream
+	 */
+	public void flush() throws IOException {
+		flushBuffer();
+		output.flush();
+	}
+}
@@ -80,10 +80,30 @@ public class MultiBotManager {
 	 * Create MultiBotManager with a cached thread pool.
 	 */
 	public MultiBotManager() {
-		managerNumber = MANAGER_COUNT.getAndIncrement();
+		this(MANAGER_COUNT.getAndIncrement(), createDefaultPool());
+	}
+
+	protected static ExecutorService createDefaultPool() {
 		ThreadPoolExecutor defaultPool = (ThreadPoolExecutor) Executors.newCachedThreadPool();
 		defaultPool.allowCoreThreadTimeOut(true);
-		this.botPool = MoreExecutors.listeningDecorator(defaultPool);
+		return defaultPool;
+	}
+
+	/**
+	 * Create MultiBotManager that runs each bot on its own virtual thread so
+	 * bots blocked on reading from the server don't need a platform thread
+	 * each. Falls back to a cached thread pool on JVMs without virtual threads
+	 *
+	 * @see Utils#newVirtualThreadExecutor(java.lang.String)
+	 */
+	public static MultiBotManager withVirtualThreads() {
+		int managerNumber = MANAGER_COUNT.getAndIncrement();
+		ExecutorService virtualPool = Utils.newVirtualThreadExecutor("botPool" + managerNumber + "-virtual");
+		if (virtualPool == null) {
+			log.info("Virtual threads are not supported by this JVM, using a cached thread pool");
+			return new MultiBotManager(managerNumber, createDefaultPool());
+		}
+		return new MultiBotManager(managerNumber, virtualPool);
 	}
 
 	/**
@@ -92,9 +112,13 @@ public class MultiBotManager {
 	 * @param botPool A provided thread pool.
 	 */
 	public MultiBotManager(ExecutorService botPool) {
+		this(MANAGER_COUNT.getAndIncrement(), botPool);
+	}
+
+	protected MultiBotManager(int managerNumber, ExecutorService botPool) {
 		checkNotNull(botPool, "Bot pool cannot be null");
 		this.botPool = MoreExecutors.listeningDecorator(botPool);
-		this.managerNumber = MANAGER_COUNT.getAndIncrement();
+		this.managerNumber = managerNumber;
 	}
 
 	/**
@@ -172,7 +196,13 @@ public class MultiBotManager {
 
 	protected ListenableFuture<Void> startBot(final PircBotX bot) {
 		checkNotNull(bot, "Bot cannot be null");
-		ListenableFuture<Void> future = botPool.submit(new BotRunner(bot));
+		NioConnectionEngine nioEngine = bot.getConfiguration().getNioConnectionEngine();
+		ListenableFuture<Void> future;
+		if (nioEngine != null)
+			//Engine handles the connection, don't waste a thread from the pool
+			future = nioEngine.startBot(bot);
+		else
+			future = botPool.submit(new BotRunner(bot));
 		synchronized (runningBotsLock) {
 			runningBots.put(bot, future);
 			runningBotsNumbers.put(bot, bot.getBotId());
@@ -212,6 +242,13 @@ public class MultiBotManager {
 				log.debug("Waiting 5 seconds for bot(s) [{}] to terminate ", commaJoiner.join(runningBots.values()));
 			}
 		while (!botPool.awaitTermination(5, TimeUnit.SECONDS));
+
+		//Bots running on a NioConnectionEngine aren't tracked by the pool,
+		//BotFutureCallback signals once the last bot is removed
+		synchronized (runningBotsLock) {
+			while (!runningBots.isEmpty())
+				runningBotsLock.wait();
+		}
 	}
 
 	/**
@@ -285,6 +322,9 @@ public class MultiBotManager {
 						if (state == State.STOPPING)
 							state = State.TERMINATED;
 					}
+				if (runningBots.isEmpty())
+					//Wake up stopAndWait()
+					runningBotsLock.notifyAll();
 			}
 		}
 	}
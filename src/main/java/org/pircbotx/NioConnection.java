@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A single bot's non-blocking connection to the server, driven by a
+ * {@link NioConnectionEngine}. Reads and writes happen on the engine's
+ * selector thread while received lines are handed to the {@link InputParser}
+ * in order on the engine's worker pool so a slow listener or message delay
+ * never stalls other bots sharing the selector.
+ *
+ * @author Leon Blakey
+ */
+@Slf4j
+public class NioConnection {
+	@Getter
+	protected final PircBotX bot;
+	@Getter
+	protected final SocketChannel channel;
+	protected final Charset encoding;
+	protected final LineFramer framer;
+	protected final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+	/**
+	 * Reused by the selector thread for gathering writes
+	 */
+	protected final ByteBuffer[] writeBatch = new ByteBuffer[64];
+	protected final Queue<String> lineQueue = new ConcurrentLinkedQueue<String>();
+	protected final AtomicBoolean lineProcessorScheduled = new AtomicBoolean(false);
+	protected final AtomicBoolean closeNotified = new AtomicBoolean(false);
+	protected volatile boolean closed = false;
+	protected volatile long lastReadNanos = System.nanoTime();
+	protected volatile NioConnectionEngine engine;
+	protected volatile NioConnectionEngine.SelectorLoop selectorLoop;
+
+	public NioConnection(@NonNull PircBotX bot, @NonNull SocketChannel channel) {
+		this.bot = bot;
+		this.channel = channel;
+		this.encoding = bot.getConfiguration().getEncoding();
+		this.framer = new LineFramer(encoding);
+	}
+
+	/**
+	 * Queue a line to be sent to the server. The line separator is appended
+	 * automatically
+	 *
+	 * @param line The raw line to send
+	 * @throws IOException If the connection is already closed
+	 */
+	public void write(String line) throws IOException {
+		write(line, true);
+	}
+
+	/**
+	 * Queue a line to be sent to the server, optionally waiting for
+	 * {@link #flush() } before waking up the selector so multiple lines are
+	 * written together
+	 *
+	 * @param line The raw line to send
+	 * @param flush False to only queue the line
+	 * @throws IOException If the connection is already closed
+	 */
+	public void write(String line, boolean flush) throws IOException {
+		if (closed || !channel.isOpen())
+			throw new IOException("Connection is closed");
+		writeQueue.add(ByteBuffer.wrap((line + "\r\n").getBytes(encoding.name())));
+		if (flush)
+			flush();
+	}
+
+	/**
+	 * Ask the selector to write all queued lines
+	 */
+	public void flush() {
+		NioConnectionEngine.SelectorLoop loop = selectorLoop;
+		if (loop != null)
+			loop.requestWrite(this);
+	}
+
+	/**
+	 * Read all available data from the channel, called by the selector thread
+	 *
+	 * @return False if the server closed the connection
+	 * @throws IOException If reading failed
+	 */
+	protected boolean handleRead() throws IOException {
+		int read = channel.read(framer.getReadBuffer());
+		if (read == -1)
+			return false;
+		if (read == 0)
+			return true;
+		lastReadNanos = System.nanoTime();
+
+		boolean linesAdded = false;
+		while (framer.nextLine()) {
+			lineQueue.add(framer.decodeLine());
+			linesAdded = true;
+		}
+		if (linesAdded)
+			scheduleLineProcessing();
+		return true;
+	}
+
+	/**
+	 * Write as much queued data as the channel accepts, called by the selector
+	 * thread
+	 *
+	 * @return True if all queued data was written
+	 * @throws IOException If writing failed
+	 */
+	protected boolean handleWrite() throws IOException {
+		while (!writeQueue.isEmpty()) {
+			//Gather queued lines into a single write
+			int count = 0;
+			for (ByteBuffer curBuffer : writeQueue) {
+				writeBatch[count++] = curBuffer;
+				if (count == writeBatch.length)
+					break;
+			}
+			channel.write(writeBatch, 0, count);
+
+			for (int i = 0; i < count; i++) {
+				if (writeBatch[i].hasRemaining()) {
+					//Socket buffer is full, wait until its writable again
+					Arrays.fill(writeBatch, null);
+					return false;
+				}
+				writeQueue.poll();
+			}
+			Arrays.fill(writeBatch, 0, count, null);
+		}
+		return true;
+	}
+
+	protected boolean hasPendingWrites() {
+		return !writeQueue.isEmpty();
+	}
+
+	/**
+	 * Mark the connection as closed. Any lines already read are still handled
+	 * before the engine is notified
+	 */
+	protected void closed() {
+		closed = true;
+		scheduleLineProcessing();
+	}
+
+	protected void scheduleLineProcessing() {
+		if (lineProcessorScheduled.compareAndSet(false, true))
+			engine.execute(new Runnable() {
+				public void run() {
+					processLines();
+				}
+			});
+	}
+
+	protected void processLines() {
+		Utils.addBotToMDC(bot);
+		while (true) {
+			String line;
+			while ((line = lineQueue.poll()) != null)
+				try {
+					bot.getInputParser().handleLine(line);
+				} catch (Exception e) {
+					//Exception in client code. Just log and continue
+					log.error("Exception encountered when parsing line " + line, e);
+				}
+			try {
+				bot.getInputParser().checkNetSplitTimeout();
+			} catch (Exception e) {
+				log.error("Exception encountered when dispatching netsplit", e);
+			}
+
+			lineProcessorScheduled.set(false);
+			//Lines might of been added after the queue was drained but before the flag was cleared
+			if (lineQueue.isEmpty() || !lineProcessorScheduled.compareAndSet(false, true))
+				break;
+		}
+
+		if (closed && lineQueue.isEmpty() && closeNotified.compareAndSet(false, true))
+			engine.connectionClosed(this);
+	}
+}
@@ -0,0 +1,415 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import static com.google.common.base.Preconditions.*;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+/**
+ * Multiplexes the server connections of many bots over a small, fixed number
+ * of selector threads instead of dedicating a blocking reader thread to each
+ * bot. Set with {@link Configuration.Builder#setNioConnectionEngine(org.pircbotx.NioConnectionEngine)
+ * } and share a single engine between all bot configurations.
+ * <p>
+ * Bots are started with {@link #startBot(org.pircbotx.PircBotX) }, which
+ * returns immediately. {@link PircBotX#startBot() } and {@link MultiBotManager}
+ * both do this automatically when an engine is configured. Reconnecting follows
+ * the same rules as the blocking connection.
+ * <p>
+ * Received lines are parsed on a worker pool, never on a selector thread, in
+ * the order they were received. Note that SSL and STARTTLS are not supported
+ *
+ * @author Leon Blakey
+ */
+@Slf4j
+public class NioConnectionEngine implements Closeable {
+	protected static final AtomicInteger ENGINE_COUNT = new AtomicInteger();
+	/**
+	 * How long a selector blocks before checking for closed connections and
+	 * socket timeouts
+	 */
+	protected static final long SELECT_TIMEOUT = 1000;
+	protected final int engineNumber;
+	protected final SelectorLoop[] selectorLoops;
+	protected final AtomicInteger nextSelectorLoop = new AtomicInteger();
+	protected final ExecutorService workerPool;
+	protected final ScheduledExecutorService reconnectScheduler;
+	protected final ConcurrentMap<PircBotX, BotDriver> runningBots = Maps.newConcurrentMap();
+	@Getter
+	protected volatile boolean closed = false;
+
+	/**
+	 * Create an engine with a selector thread for each available processor
+	 */
+	public NioConnectionEngine() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create an engine with the specified number of selector threads.
+	 *
+	 * @param selectorThreads Number of selector threads, must be positive
+	 */
+	public NioConnectionEngine(int selectorThreads) {
+		checkArgument(selectorThreads > 0, "Must have at least one selector thread");
+		this.engineNumber = ENGINE_COUNT.getAndIncrement();
+		this.workerPool = Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
+				.namingPattern("nioEngine" + engineNumber + "-worker%d")
+				.daemon(true)
+				.build());
+		this.reconnectScheduler = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+				.namingPattern("nioEngine" + engineNumber + "-reconnect%d")
+				.daemon(true)
+				.build());
+		this.selectorLoops = new SelectorLoop[selectorThreads];
+		for (int i = 0; i < selectorThreads; i++) {
+			try {
+				selectorLoops[i] = new SelectorLoop(Selector.open());
+			} catch (IOException e) {
+				close();
+				throw new RuntimeException("Could not open selector", e);
+			}
+			Thread thread = new Thread(selectorLoops[i], "nioEngine" + engineNumber + "-selector" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Connect the bot and keep it connected (following the bot's reconnect
+	 * settings) in the background.
+	 *
+	 * @param bot An unconnected bot whose configuration uses this engine
+	 * @return A future that completes when the bot is finished or fails with
+	 * the exception {@link PircBotX#startBot() } would of thrown
+	 */
+	public ListenableFuture<Void> startBot(@NonNull PircBotX bot) {
+		checkArgument(bot.getConfiguration().getNioConnectionEngine() == this, "Bot is not configured to use this engine");
+		checkState(!closed, "Engine is closed");
+		BotDriver driver = new BotDriver(bot);
+		if (runningBots.putIfAbsent(bot, driver) != null)
+			throw new IllegalStateException("Bot " + bot.getBotId() + " is already running");
+		bot.reconnectStopped = false;
+		workerPool.execute(driver);
+		return driver.future;
+	}
+
+	/**
+	 * Open a blocking connection to the server that can later be
+	 * {@link #register(org.pircbotx.NioConnection) registered}
+	 */
+	public Socket openSocket(InetAddress address, int port, InetAddress localAddress) throws IOException {
+		SocketChannel channel = SocketChannel.open();
+		try {
+			if (localAddress != null)
+				channel.socket().bind(new InetSocketAddress(localAddress, 0));
+			channel.connect(new InetSocketAddress(address, port));
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel.socket();
+	}
+
+	/**
+	 * Switch the connection to non-blocking mode and start reading from it on
+	 * one of the selector threads
+	 */
+	public void register(@NonNull NioConnection connection) throws IOException {
+		checkState(!closed, "Engine is closed");
+		connection.getChannel().configureBlocking(false);
+		SelectorLoop loop = selectorLoops[Math.abs(nextSelectorLoop.getAndIncrement() % selectorLoops.length)];
+		connection.engine = this;
+		connection.selectorLoop = loop;
+		loop.pendingRegistrations.add(connection);
+		loop.selector.wakeup();
+	}
+
+	protected void execute(Runnable task) {
+		try {
+			workerPool.execute(task);
+		} catch (RejectedExecutionException e) {
+			//Engine is closing, still let bots cleanup
+			task.run();
+		}
+	}
+
+	/**
+	 * Called once all lines from a closed connection have been handled
+	 */
+	protected void connectionClosed(NioConnection connection) {
+		BotDriver driver = runningBots.get(connection.getBot());
+		if (driver != null)
+			driver.connectionClosed(connection);
+	}
+
+	/**
+	 * Stop reconnecting all bots, close their connections, and stop all
+	 * threads. Bots should be disconnected with
+	 * {@link org.pircbotx.output.OutputIRC#quitServer() } first
+	 */
+	public void close() {
+		closed = true;
+		for (BotDriver curDriver : runningBots.values()) {
+			curDriver.bot.stopBotReconnect();
+			curDriver.future.setException(new IOException("NioConnectionEngine was closed"));
+		}
+		runningBots.clear();
+		for (SelectorLoop curLoop : selectorLoops)
+			if (curLoop != null) {
+				curLoop.running = false;
+				curLoop.selector.wakeup();
+			}
+		reconnectScheduler.shutdownNow();
+		workerPool.shutdown();
+	}
+
+	/**
+	 * Connect attempts and reconnect loop of a single bot, the non-blocking
+	 * equivalent of {@link PircBotX#startBot() }
+	 */
+	@RequiredArgsConstructor
+	protected class BotDriver implements Runnable {
+		@NonNull
+		protected final PircBotX bot;
+		protected final SettableFuture<Void> future = SettableFuture.create();
+		protected LinkedHashMap<InetSocketAddress, Exception> connectExceptions;
+		protected boolean awaitingDisconnect = false;
+
+		public synchronized void run() {
+			Utils.addBotToMDC(bot);
+			connectExceptions = Maps.newLinkedHashMap();
+			try {
+				bot.connectAttempt(connectExceptions);
+			} catch (RuntimeException e) {
+				finishAttempt(e);
+				return;
+			}
+
+			if (connectExceptions.isEmpty() && bot.nioConnection != null && !bot.nioConnection.closed)
+				//Connected, finish when the connection is closed
+				awaitingDisconnect = true;
+			else
+				finishAttempt(null);
+		}
+
+		public synchronized void connectionClosed(NioConnection connection) {
+			//Ignore connections from previous attempts
+			if (!awaitingDisconnect || connection != bot.nioConnection)
+				return;
+			awaitingDisconnect = false;
+			finishAttempt(null);
+		}
+
+		protected void finishAttempt(RuntimeException connectException) {
+			try {
+				bot.finishConnectAttempt(connectExceptions);
+				if (connectException != null)
+					throw connectException;
+
+				if (!closed && bot.isReconnectNeeded()) {
+					long delay = bot.getConfiguration().getAutoReconnectDelay();
+					log.debug("Pausing for {} milliseconds before connecting again", delay);
+					reconnectScheduler.schedule(new Runnable() {
+						public void run() {
+							workerPool.execute(BotDriver.this);
+						}
+					}, delay, TimeUnit.MILLISECONDS);
+					return;
+				}
+				finish(null);
+			} catch (Exception e) {
+				finish(e);
+			}
+		}
+
+		protected void finish(Exception exception) {
+			runningBots.remove(bot, this);
+			if (exception == null)
+				future.set(null);
+			else
+				future.setException(exception);
+		}
+	}
+
+	/**
+	 * A selector and the thread that services it
+	 */
+	protected class SelectorLoop implements Runnable {
+		protected final Selector selector;
+		protected final Queue<NioConnection> pendingRegistrations = new ConcurrentLinkedQueue<NioConnection>();
+		protected final Queue<NioConnection> pendingWrites = new ConcurrentLinkedQueue<NioConnection>();
+		/**
+		 * Only accessed by the selector thread
+		 */
+		protected final Set<NioConnection> connections = new HashSet<NioConnection>();
+		protected volatile boolean running = true;
+
+		public SelectorLoop(Selector selector) {
+			this.selector = selector;
+		}
+
+		protected void requestWrite(NioConnection connection) {
+			pendingWrites.add(connection);
+			selector.wakeup();
+		}
+
+		public void run() {
+			try {
+				while (running) {
+					selector.select(SELECT_TIMEOUT);
+					processPending();
+					processSelected();
+					checkConnections();
+				}
+			} catch (Exception e) {
+				log.error("Exception in selector loop, closing all connections", e);
+			} finally {
+				for (NioConnection curConnection : connections.toArray(new NioConnection[connections.size()]))
+					closeConnection(curConnection);
+				try {
+					selector.close();
+				} catch (IOException e) {
+					log.error("Cannot close selector", e);
+				}
+			}
+		}
+
+		protected void processPending() {
+			NioConnection connection;
+			while ((connection = pendingRegistrations.poll()) != null)
+				try {
+					int ops = SelectionKey.OP_READ;
+					if (connection.hasPendingWrites())
+						ops |= SelectionKey.OP_WRITE;
+					connection.getChannel().register(selector, ops, connection);
+					connections.add(connection);
+				} catch (ClosedChannelException e) {
+					closeConnection(connection);
+				}
+
+			while ((connection = pendingWrites.poll()) != null) {
+				SelectionKey key = connection.getChannel().keyFor(selector);
+				if (key != null && key.isValid())
+					key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+			}
+		}
+
+		protected void processSelected() {
+			Iterator<SelectionKey> keyItr = selector.selectedKeys().iterator();
+			while (keyItr.hasNext()) {
+				SelectionKey key = keyItr.next();
+				keyItr.remove();
+				NioConnection connection = (NioConnection) key.attachment();
+				try {
+					if (key.isValid() && key.isReadable() && !connection.handleRead()) {
+						log.info("Server closed connection");
+						closeConnection(connection);
+						continue;
+					}
+					if (key.isValid() && key.isWritable() && connection.handleWrite())
+						key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+				} catch (IOException e) {
+					//Something is wrong. Assume its bad and begin disconnect
+					if (connection.getChannel().isOpen()) {
+						log.error("Exception encountered when reading next line from server", e);
+						connection.getBot().disconnectException = e;
+					}
+					closeConnection(connection);
+				}
+			}
+		}
+
+		/**
+		 * Handle connections closed by other threads, dispatch netsplits that
+		 * timed out and send a PING to connections that haven't received
+		 * anything in a while
+		 */
+		protected void checkConnections() {
+			long now = System.nanoTime();
+			for (NioConnection curConnection : connections.toArray(new NioConnection[connections.size()])) {
+				if (!curConnection.getChannel().isOpen()) {
+					log.info("Socket is closed, stopping read loop and shutting down");
+					closeConnection(curConnection);
+					continue;
+				}
+
+				final PircBotX bot = curConnection.getBot();
+				if (bot.getInputParser().getNetSplitTimeoutRemaining() == 0)
+					//Dispatched by the line processor so its serialized with the lines
+					curConnection.scheduleLineProcessing();
+				long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(bot.getConfiguration().getSocketTimeout());
+				if (now - curConnection.lastReadNanos > timeoutNanos) {
+					curConnection.lastReadNanos = now;
+					//Sending might wait on the message delay, don't block the selector
+					execute(new Runnable() {
+						public void run() {
+							try {
+								bot.sendRaw().rawLine("PING " + (System.currentTimeMillis() / 1000));
+							} catch (Exception e) {
+								log.debug("Could not send PING", e);
+							}
+						}
+					});
+				}
+			}
+		}
+
+		protected void closeConnection(NioConnection connection) {
+			connections.remove(connection);
+			SelectionKey key = connection.getChannel().keyFor(selector);
+			if (key != null)
+				key.cancel();
+			try {
+				connection.getChannel().close();
+			} catch (IOException e) {
+				log.error("Cannot close channel", e);
+			}
+			connection.closed();
+		}
+	}
+}
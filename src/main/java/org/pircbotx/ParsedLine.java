@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import com.google.common.collect.ImmutableList;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A raw line from the server split into prefix, command, and parameters. The
+ * line is parsed in a single pass that only records offsets into the
+ * original String, parts are only copied out when requested. Parameters are
+ * split the same way as {@link Utils#tokenizeLine(java.lang.String) }
+ * <p>
+ * Instances can be reused with {@link #parse(java.lang.String) }, which
+ * invalidates the previous line including any {@link #getParams() } view.
+ * This class is not thread safe
+ *
+ * @author Leon Blakey
+ */
+public class ParsedLine {
+	/**
+	 * The parsed line
+	 */
+	@Getter
+	protected String line;
+	protected int prefixEnd;
+	protected int commandStart;
+	protected int commandEnd;
+	/**
+	 * The numeric code of the command or -1 if its not a 3 digit numeric
+	 */
+	@Getter
+	protected int code;
+	/**
+	 * If the last parameter was prefixed with a colon and may contain spaces
+	 */
+	@Getter
+	protected boolean trailing;
+	protected int paramCount;
+	protected int[] paramStarts = new int[16];
+	protected int[] paramEnds = new int[16];
+	protected final Params params = new Params();
+
+	public ParsedLine() {
+	}
+
+	public ParsedLine(String line) {
+		parse(line);
+	}
+
+	/**
+	 * Parse a new line, replacing the current one
+	 *
+	 * @param line A line with no surrounding whitespace
+	 * @return this
+	 */
+	public ParsedLine parse(@NonNull String line) {
+		this.line = line;
+		this.paramCount = 0;
+		this.trailing = false;
+		this.code = -1;
+		int length = line.length();
+
+		//Prefix
+		int pos = 0;
+		if (length != 0 && line.charAt(0) == ':') {
+			int end = line.indexOf(' ');
+			prefixEnd = (end == -1) ? length : end;
+			pos = prefixEnd + 1;
+		} else
+			prefixEnd = -1;
+
+		//Command, which like any other token after a space can be trailing
+		boolean commandTrailing = false;
+		if (prefixEnd != -1 && pos < length && line.charAt(pos) == ':') {
+			commandTrailing = true;
+			pos++;
+		}
+		commandStart = Math.min(pos, length);
+		if (commandTrailing || pos >= length)
+			commandEnd = length;
+		else {
+			int end = line.indexOf(' ', pos);
+			commandEnd = (end == -1) ? length : end;
+		}
+		if (commandEnd - commandStart == 3) {
+			char c1 = line.charAt(commandStart);
+			char c2 = line.charAt(commandStart + 1);
+			char c3 = line.charAt(commandStart + 2);
+			if (isDigit(c1) && isDigit(c2) && isDigit(c3))
+				code = (c1 - '0') * 100 + (c2 - '0') * 10 + (c3 - '0');
+		}
+
+		//Parameters
+		pos = commandEnd + 1;
+		while (pos <= length && commandEnd != length) {
+			if (pos < length && line.charAt(pos) == ':') {
+				addParam(pos + 1, length);
+				trailing = true;
+				break;
+			}
+			int end = line.indexOf(' ', pos);
+			if (end == -1) {
+				addParam(pos, length);
+				break;
+			}
+			addParam(pos, end);
+			pos = end + 1;
+		}
+		return this;
+	}
+
+	protected static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	protected void addParam(int start, int end) {
+		if (paramCount == paramStarts.length) {
+			int[] newStarts = new int[paramCount * 2];
+			int[] newEnds = new int[paramCount * 2];
+			System.arraycopy(paramStarts, 0, newStarts, 0, paramCount);
+			System.arraycopy(paramEnds, 0, newEnds, 0, paramCount);
+			paramStarts = newStarts;
+			paramEnds = newEnds;
+		}
+		paramStarts[paramCount] = start;
+		paramEnds[paramCount] = end;
+		paramCount++;
+	}
+
+	public boolean hasPrefix() {
+		return prefixEnd != -1;
+	}
+
+	/**
+	 * @return The prefix including the leading colon or an empty String if
+	 * there is no prefix
+	 */
+	public String getPrefix() {
+		return hasPrefix() ? line.substring(0, prefixEnd) : "";
+	}
+
+	/**
+	 * @return The command as sent by the server
+	 */
+	public String getCommand() {
+		return line.substring(commandStart, commandEnd);
+	}
+
+	/**
+	 * Compare the command without copying it out of the line.
+	 */
+	public boolean isCommand(@NonNull String command) {
+		return commandEnd - commandStart == command.length()
+				&& line.regionMatches(true, commandStart, command, 0, command.length());
+	}
+
+	public boolean isNumeric() {
+		return code != -1;
+	}
+
+	public int getParamCount() {
+		return paramCount;
+	}
+
+	public String getParam(int index) {
+		if (index < 0 || index >= paramCount)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Parameters: " + paramCount);
+		return line.substring(paramStarts[index], paramEnds[index]);
+	}
+
+	/**
+	 * Check if a parameter starts with the specified character without copying
+	 * it out of the line
+	 */
+	public boolean paramStartsWith(int index, char prefix) {
+		return index < paramCount && paramEnds[index] > paramStarts[index] && line.charAt(paramStarts[index]) == prefix;
+	}
+
+	/**
+	 * Get an unmodifiable view of the parameters (everything after the
+	 * command). Each access copies the parameter out of the line, so copy the
+	 * view with {@link #getParamsCopy() } if its needed after the next
+	 * {@link #parse(java.lang.String) }.
+	 *
+	 * @return A view that is only valid until this is reused
+	 */
+	public List<String> getParams() {
+		return params;
+	}
+
+	/**
+	 * Get an immutable copy of the parameters, as passed to events like
+	 * {@link org.pircbotx.hooks.events.ServerResponseEvent}
+	 */
+	public ImmutableList<String> getParamsCopy() {
+		return ImmutableList.copyOf(params);
+	}
+
+	@Override
+	public String toString() {
+		return line;
+	}
+
+	protected class Params extends AbstractList<String> implements RandomAccess {
+		@Override
+		public String get(int index) {
+			return getParam(index);
+		}
+
+		@Override
+		public int size() {
+			return paramCount;
+		}
+	}
+}
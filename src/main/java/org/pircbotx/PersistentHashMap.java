@@ -0,0 +1,389 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import lombok.NonNull;
+
+/**
+ * An immutable hash map where {@link #plus(java.lang.Object, java.lang.Object) }
+ * and {@link #minus(java.lang.Object) } return a new map that shares all
+ * unchanged parts with this one, copying only the path to the changed key
+ * (a hash array mapped trie). Holding on to a version of the map is free, which
+ * is what makes {@link UserChannelDao#createSnapshot() } cheap.
+ * <p>
+ * Null keys and values are not supported. The {@link Map} mutators throw
+ * {@link UnsupportedOperationException}
+ *
+ * @author Leon Blakey
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+	protected static final PersistentHashMap<Object, Object> EMPTY = new PersistentHashMap<Object, Object>(null, 0);
+	protected static final int BITS = 5;
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	protected static final Comparator<Object> NATURAL = (Comparator) Ordering.natural();
+	protected final Node root;
+	protected final int size;
+	protected transient Set<Map.Entry<K, V>> entrySet;
+	/**
+	 * Cached sorted views. Since the map never changes they stay valid, a
+	 * changed map is a new instance without a cache. Racing threads at worst
+	 * build the same immutable set twice
+	 */
+	protected transient ImmutableSortedSet<K> sortedKeys;
+	protected transient ImmutableSortedSet<V> sortedValues;
+
+	protected PersistentHashMap(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentHashMap<K, V> of() {
+		return (PersistentHashMap<K, V>) EMPTY;
+	}
+
+	protected static int hash(Object key) {
+		int hash = key.hashCode();
+		return hash ^ (hash >>> 16);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		if (root == null || key == null)
+			return null;
+		return (V) root.get(key, hash(key), 0);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return An equal map without any cached views, eg when the order of the
+	 * keys changed
+	 */
+	public PersistentHashMap<K, V> uncached() {
+		return root == null ? this : new PersistentHashMap<K, V>(root, size);
+	}
+
+	/**
+	 * Get the keys in their natural order. The set is created on the first
+	 * call and cached, so repeated calls are free
+	 *
+	 * @return An immutable sorted set of the keys, which must be
+	 * {@link Comparable}
+	 */
+	@SuppressWarnings("unchecked")
+	public ImmutableSortedSet<K> sortedKeys() {
+		ImmutableSortedSet<K> keys = sortedKeys;
+		if (keys == null)
+			sortedKeys = keys = ImmutableSortedSet.copyOf((Comparator<? super K>) NATURAL, keySet());
+		return keys;
+	}
+
+	/**
+	 * Get the values in their natural order, see {@link #sortedKeys() }
+	 *
+	 * @return An immutable sorted set of the values, which must be
+	 * {@link Comparable}
+	 */
+	@SuppressWarnings("unchecked")
+	public ImmutableSortedSet<V> sortedValues() {
+		ImmutableSortedSet<V> values = sortedValues;
+		if (values == null)
+			sortedValues = values = ImmutableSortedSet.copyOf((Comparator<? super V>) NATURAL, values());
+		return values;
+	}
+
+	/**
+	 * @return A map with the key set to the value, or this map if the key
+	 * already has the same value
+	 */
+	public PersistentHashMap<K, V> plus(@NonNull K key, @NonNull V value) {
+		int hash = hash(key);
+		if (root == null)
+			return new PersistentHashMap<K, V>(Node.create(0, key, value), 1);
+		Object existing = root.get(key, hash, 0);
+		if (existing == value)
+			return this;
+		return new PersistentHashMap<K, V>(root.plus(key, value, hash, 0), existing == null ? size + 1 : size);
+	}
+
+	/**
+	 * @return A map without the key, or this map if the key doesn't exist
+	 */
+	public PersistentHashMap<K, V> minus(Object key) {
+		if (root == null || key == null)
+			return this;
+		int hash = hash(key);
+		if (root.get(key, hash, 0) == null)
+			return this;
+		if (size == 1)
+			return of();
+		return new PersistentHashMap<K, V>(root.minus(key, hash, 0), size - 1);
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (entrySet == null)
+			entrySet = new AbstractSet<Map.Entry<K, V>>() {
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return new EntryIterator<K, V>(root);
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		return entrySet;
+	}
+
+	/**
+	 * A trie node. Each of the 32 possible slots at this level is either empty,
+	 * a key and value pair, or a child node stored as a null key followed by
+	 * the node. Keys whose hashes are fully equal end up in a collision node
+	 * that is searched linearly
+	 */
+	protected static final class Node {
+		protected final int bitmap;
+		protected final Object[] array;
+		protected final boolean collision;
+
+		protected Node(int bitmap, Object[] array, boolean collision) {
+			this.bitmap = bitmap;
+			this.array = array;
+			this.collision = collision;
+		}
+
+		protected static Node create(int shift, Object key, Object value) {
+			return new Node(bit(hash(key), shift), new Object[]{key, value}, false);
+		}
+
+		/**
+		 * Create a node containing both keys, which share the same slot at the
+		 * previous level
+		 */
+		protected static Node create(int shift, Object key1, Object value1, Object key2, Object value2) {
+			int hash1 = hash(key1);
+			int hash2 = hash(key2);
+			if (shift >= 32)
+				return new Node(0, new Object[]{key1, value1, key2, value2}, true);
+			int bit1 = bit(hash1, shift);
+			int bit2 = bit(hash2, shift);
+			if (bit1 == bit2)
+				return new Node(bit1, new Object[]{null, create(shift + BITS, key1, value1, key2, value2)}, false);
+			if (Integer.numberOfTrailingZeros(bit1) < Integer.numberOfTrailingZeros(bit2))
+				return new Node(bit1 | bit2, new Object[]{key1, value1, key2, value2}, false);
+			return new Node(bit1 | bit2, new Object[]{key2, value2, key1, value1}, false);
+		}
+
+		protected static int bit(int hash, int shift) {
+			return 1 << ((hash >>> shift) & 31);
+		}
+
+		protected int index(int bit) {
+			return 2 * Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		protected Object get(Object key, int hash, int shift) {
+			Node node = this;
+			while (true) {
+				if (node.collision) {
+					for (int i = 0; i < node.array.length; i += 2)
+						if (key.equals(node.array[i]))
+							return node.array[i + 1];
+					return null;
+				}
+				int bit = bit(hash, shift);
+				if ((node.bitmap & bit) == 0)
+					return null;
+				int index = node.index(bit);
+				Object curKey = node.array[index];
+				if (curKey == null) {
+					node = (Node) node.array[index + 1];
+					shift += BITS;
+				} else
+					return key.equals(curKey) ? node.array[index + 1] : null;
+			}
+		}
+
+		protected Node plus(Object key, Object value, int hash, int shift) {
+			if (collision) {
+				for (int i = 0; i < array.length; i += 2)
+					if (key.equals(array[i]))
+						return new Node(0, copySet(array, i + 1, value), true);
+				Object[] newArray = new Object[array.length + 2];
+				System.arraycopy(array, 0, newArray, 0, array.length);
+				newArray[array.length] = key;
+				newArray[array.length + 1] = value;
+				return new Node(0, newArray, true);
+			}
+
+			int bit = bit(hash, shift);
+			int index = index(bit);
+			if ((bitmap & bit) == 0) {
+				//Empty slot, insert the pair
+				Object[] newArray = new Object[array.length + 2];
+				System.arraycopy(array, 0, newArray, 0, index);
+				newArray[index] = key;
+				newArray[index + 1] = value;
+				System.arraycopy(array, index, newArray, index + 2, array.length - index);
+				return new Node(bitmap | bit, newArray, false);
+			}
+			Object curKey = array[index];
+			Object curValue = array[index + 1];
+			if (curKey == null)
+				return new Node(bitmap, copySet(array, index + 1, ((Node) curValue).plus(key, value, hash, shift + BITS)), false);
+			if (key.equals(curKey))
+				return new Node(bitmap, copySet(array, index + 1, value), false);
+			//Different key in the same slot, push both down a level
+			Object[] newArray = copySet(array, index + 1, create(shift + BITS, curKey, curValue, key, value));
+			newArray[index] = null;
+			return new Node(bitmap, newArray, false);
+		}
+
+		/**
+		 * Remove a key that is known to exist
+		 *
+		 * @return The new node or null if its now empty
+		 */
+		protected Node minus(Object key, int hash, int shift) {
+			if (collision) {
+				if (array.length == 2)
+					return null;
+				for (int i = 0; i < array.length; i += 2)
+					if (key.equals(array[i]))
+						return new Node(0, copyRemove(array, i), true);
+				throw new IllegalStateException("Key not found: " + key);
+			}
+
+			int bit = bit(hash, shift);
+			int index = index(bit);
+			if (array[index] == null) {
+				Node child = ((Node) array[index + 1]).minus(key, hash, shift + BITS);
+				if (child != null) {
+					if (!child.collision && child.array.length == 2 && child.array[0] != null) {
+						//Only a single pair left, pull it up to this level
+						Object[] newArray = copySet(array, index + 1, child.array[1]);
+						newArray[index] = child.array[0];
+						return new Node(bitmap, newArray, false);
+					}
+					return new Node(bitmap, copySet(array, index + 1, child), false);
+				}
+			}
+			//Remove the slot entirely
+			if (array.length == 2)
+				return null;
+			return new Node(bitmap & ~bit, copyRemove(array, index), false);
+		}
+
+		protected static Object[] copySet(Object[] array, int index, Object value) {
+			Object[] newArray = array.clone();
+			newArray[index] = value;
+			return newArray;
+		}
+
+		protected static Object[] copyRemove(Object[] array, int index) {
+			Object[] newArray = new Object[array.length - 2];
+			System.arraycopy(array, 0, newArray, 0, index);
+			System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+			return newArray;
+		}
+	}
+
+	/**
+	 * Depth first iterator using a stack of nodes and positions
+	 */
+	protected static class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+		protected final Node[] nodes = new Node[8];
+		protected final int[] positions = new int[8];
+		protected int depth = -1;
+		protected Map.Entry<K, V> next;
+
+		public EntryIterator(Node root) {
+			if (root != null) {
+				depth = 0;
+				nodes[0] = root;
+				positions[0] = 0;
+			}
+			advance();
+		}
+
+		@SuppressWarnings("unchecked")
+		protected void advance() {
+			next = null;
+			while (depth >= 0) {
+				Node node = nodes[depth];
+				int position = positions[depth];
+				if (position >= node.array.length) {
+					depth--;
+					continue;
+				}
+				positions[depth] = position + 2;
+				Object key = node.array[position];
+				if (key == null) {
+					depth++;
+					nodes[depth] = (Node) node.array[position + 1];
+					positions[depth] = 0;
+				} else {
+					next = new SimpleImmutableEntry<K, V>((K) key, (V) node.array[position + 1]);
+					return;
+				}
+			}
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public Map.Entry<K, V> next() {
+			if (next == null)
+				throw new NoSuchElementException();
+			Map.Entry<K, V> entry = next;
+			advance();
+			return entry;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("Map is immutable");
+		}
+	}
+}
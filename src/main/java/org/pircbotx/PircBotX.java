@@ -17,15 +17,15 @@
  */
 package org.pircbotx;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Ints;
-import java.io.BufferedReader;
+import com.google.common.util.concurrent.ListenableFuture;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
-import java.io.OutputStreamWriter;
 import java.lang.ref.WeakReference;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -33,6 +33,9 @@ import java.net.Socket;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
@@ -46,6 +49,7 @@ import org.pircbotx.dcc.DccHandler;
 import org.pircbotx.exception.IrcException;
 import org.pircbotx.hooks.ListenerAdapter;
 import org.pircbotx.hooks.events.*;
+import org.pircbotx.hooks.managers.ListenerManager;
 import org.pircbotx.output.OutputCAP;
 import org.pircbotx.output.OutputDCC;
 import org.pircbotx.output.OutputIRC;
@@ -106,11 +110,20 @@ public class PircBotX implements Comparable<PircBotX>, Closeable {
 	@Getter
 	protected final DccHandler dccHandler;
 	protected final ServerInfo serverInfo;
+	@Getter
+	protected final ChannelSyncManager channelSyncManager;
 	//Connection stuff.
 	@Getter(AccessLevel.PROTECTED)
 	protected Socket socket;
-	protected BufferedReader inputReader;
-	protected OutputStreamWriter outputWriter;
+	protected InputStream inputStream;
+	protected LineFramer inputFramer;
+	protected LineWriter outputWriter;
+	/**
+	 * If the line being sent shouldn't be flushed yet, only used by the output
+	 * writer
+	 */
+	protected boolean outputFlushDeferred = false;
+	protected NioConnection nioConnection;
 	protected final OutputRaw outputRaw;
 	protected final OutputIRC outputIRC;
 	protected final OutputCAP outputCAP;
@@ -138,8 +151,8 @@ public class PircBotX implements Comparable<PircBotX>, Closeable {
 	@Getter
 	@Setter(AccessLevel.PROTECTED)
 	protected boolean nickservIdentified = false;
-	private int connectAttempts = 0;
-	private int connectAttemptTotal = 0;
+	protected int connectAttempts = 0;
+	protected int connectAttemptTotal = 0;
 
 	/**
 	 * Constructs a PircBotX with the provided configuration.
@@ -163,6 +176,7 @@ public class PircBotX implements Comparable<PircBotX>, Closeable {
 		this.outputCAP = configuration.getBotFactory().createOutputCAP(this);
 		this.outputDCC = configuration.getBotFactory().createOutputDCC(this);
 		this.dccHandler = configuration.getBotFactory().createDccHandler(this);
+		this.channelSyncManager = configuration.getBotFactory().createChannelSyncManager(this);
 		this.inputParser = configuration.getBotFactory().createInputParser(this);
 	}
 
@@ -171,50 +185,37 @@ public class PircBotX implements Comparable<PircBotX>, Closeable {
 	 * {@link Configuration#isAutoReconnect()} is true this will continuously
 	 * reconnect to the server until {@link #stopBotReconnect() } is called or
 	 * an exception is thrown from connecting
+	 * <p>
+	 * If a {@link NioConnectionEngine} is configured the connection is handled
+	 * by the engine and this only blocks until the bot is finished. Use
+	 * {@link NioConnectionEngine#startBot(org.pircbotx.PircBotX) } directly to
+	 * avoid blocking
 	 *
 	 * @throws IOException if it was not possible to connect to the server.
 	 * @throws IrcException
 	 */
 	public void startBot() throws IOException, IrcException {
+		NioConnectionEngine nioEngine = configuration.getNioConnectionEngine();
+		if (nioEngine != null) {
+			//Lines are read by the engine's selector threads, just wait for the bot to finish
+			waitForNioBot(nioEngine.startBot(this));
+			return;
+		}
+
 		//Begin magic
 		reconnectStopped = false;
 		do {
 			//Try to connect to the server, grabbing any exceptions
 			LinkedHashMap<InetSocketAddress, Exception> connectExceptions = Maps.newLinkedHashMap();
 			try {
-				connectAttemptTotal++;
-				connectAttempts++;
-				connectExceptions.putAll(connect());
-			} catch (Exception e) {
-				//Initial connect exceptions are returned in the map, this is a more serious error
-				log.error("Exception encountered during connect", e);
-				connectExceptions.put(new InetSocketAddress(serverHostname, serverPort), e);
-
-				if (!configuration.isAutoReconnect())
-					throw new RuntimeException("Exception encountered during connect", e);
+				connectAttempt(connectExceptions);
 			} finally {
-				if (!connectExceptions.isEmpty())
-					Utils.dispatchEvent(this, new ConnectAttemptFailedEvent(this,
-							configuration.getAutoReconnectAttempts() - connectAttempts,
-							ImmutableMap.copyOf(connectExceptions)));
-
-				//Cleanup if not already called
-				synchronized (stateLock) {
-					if (state != State.DISCONNECTED)
-						shutdown();
-				}
+				finishConnectAttempt(connectExceptions);
 			}
 
 			//No longer connected to the server
-			if (!configuration.isAutoReconnect())
-				return;
-			if (reconnectStopped) {
-				log.debug("stopBotReconnect() called, exiting reconnect loop");
+			if (!isReconnectNeeded())
 				return;
-			}
-			if (connectAttempts == configuration.getAutoReconnectAttempts()) {
-				throw new IOException("Failed to connect to IRC server(s) after " + connectAttempts + " attempts");
-			}
 
 			//Optionally pause between attempts, useful if network is temporarily down
 			if (configuration.getAutoReconnectDelay() > 0)
@@ -227,6 +228,86 @@ public class PircBotX implements Comparable<PircBotX>, Closeable {
 		} while (connectAttempts < configuration.getAutoReconnectAttempts());
 	}
 
+	/**
+	 * Make a single connect attempt, storing any exceptions encountered.
+	 *
+	 * @param connectExceptions Map to store connect exceptions in
+	 * @throws RuntimeException If connecting threw an exception and
+	 * {@link Configuration#isAutoReconnect()} is false
+	 */
+	protected void connectAttempt(Map<InetSocketAddress, Exception> connectExceptions) {
+		try {
+			connectAttemptTotal++;
+			connectAttempts++;
+			connectExceptions.putAll(connect());
+		} catch (Exception e) {
+			//Initial connect exceptions are returned in the map, this is a more serious error
+			log.error("Exception encountered during connect", e);
+			connectExceptions.put(new InetSocketAddress(serverHostname, serverPort), e);
+
+			if (!configuration.isAutoReconnect())
+				throw new RuntimeException("Exception encountered during connect", e);
+		}
+	}
+
+	/**
+	 * Dispatch a {@link ConnectAttemptFailedEvent} if needed and cleanup after
+	 * a connect attempt
+	 *
+	 * @param connectExceptions Exceptions from {@link #connectAttempt(java.util.Map)
+	 * }
+	 */
+	protected void finishConnectAttempt(Map<InetSocketAddress, Exception> connectExceptions) {
+		if (!connectExceptions.isEmpty())
+			Utils.dispatchEvent(this, new ConnectAttemptFailedEvent(this,
+					configuration.getAutoReconnectAttempts() - connectAttempts,
+					ImmutableMap.copyOf(connectExceptions)));
+
+		//Cleanup if not already called
+		synchronized (stateLock) {
+			if (state != State.DISCONNECTED)
+				shutdown();
+		}
+	}
+
+	/**
+	 * Check if another connect attempt should be made after the bot is no
+	 * longer connected to the server
+	 *
+	 * @return True if the bot should reconnect
+	 * @throws IOException If the maximum number of connect attempts was
+	 * reached
+	 */
+	protected boolean isReconnectNeeded() throws IOException {
+		if (!configuration.isAutoReconnect())
+			return false;
+		if (reconnectStopped) {
+			log.debug("stopBotReconnect() called, exiting reconnect loop");
+			return false;
+		}
+		if (connectAttempts == configuration.getAutoReconnectAttempts()) {
+			throw new IOException("Failed to connect to IRC server(s) after " + connectAttempts + " attempts");
+		}
+		return true;
+	}
+
+	/**
+	 * Block until a bot started by {@link NioConnectionEngine} is finished,
+	 * rethrowing any exception it failed with
+	 */
+	protected void waitForNioBot(ListenableFuture<Void> botFuture) throws IOException, IrcException {
+		try {
+			botFuture.get();
+		} catch (InterruptedException e) {
+			stopBotReconnect();
+			close();
+			throw new RuntimeException("Interrupted while waiting for bot to disconnect", e);
+		} catch (ExecutionException e) {
+			Throwables.propagateIfPossible(e.getCause(), IOException.class, IrcException.class);
+			throw new RuntimeException("Exception encountered while running bot", e.getCause());
+		}
+	}
+
 	/**
 	 * Do not try connecting again in the future.
 	 */
@@ -285,7 +366,10 @@ public class PircBotX implements Comparable<PircBotX>, Closeable {
 					);
 					log.debug("{}Atempting to connect to {} on port {}", debug, curAddress, curServerEntry.getPort());
 					try {
-						socket = configuration.getSocketFactory().createSocket(curAddress, curServerEntry.getPort(), configuration.getLocalAddress(), 0);
+						if (configuration.getNioConnectionEngine() != null)
+							socket = configuration.getNioConnectionEngine().openSocket(curAddress, curServerEntry.getPort(), configuration.getLocalAddress());
+						else
+							socket = configuration.getSocketFactory().createSocket(curAddress, curServerEntry.getPort(), configuration.getLocalAddress(), 0);
 
 						//No exception, assume successful
 						serverPort = curServerEntry.getPort();
@@ -341,17 +425,47 @@ public class PircBotX implements Comparable<PircBotX>, Closeable {
 
 	protected void changeSocket(Socket socket) throws IOException {
 		this.socket = socket;
-		this.inputReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), configuration.getEncoding()));
-		this.outputWriter = new OutputStreamWriter(socket.getOutputStream(), configuration.getEncoding());
+		NioConnectionEngine nioEngine = configuration.getNioConnectionEngine();
+		if (nioEngine != null && socket.getChannel() != null) {
+			this.nioConnection = configuration.getBotFactory().createNioConnection(this, socket.getChannel());
+			nioEngine.register(nioConnection);
+		} else {
+			this.nioConnection = null;
+			this.inputStream = socket.getInputStream();
+			this.inputFramer = new LineFramer(configuration.getEncoding());
+			this.outputWriter = new LineWriter(socket.getOutputStream(), configuration.getEncoding());
+		}
 	}
 
 	protected void startLineProcessing() {
+		if (nioConnection != null)
+			//Lines are read and handled by the NioConnectionEngine
+			return;
+		int readTimeout = configuration.getSocketTimeout();
+		long lastReadNanos = System.nanoTime();
 		while (true) {
 			//Get line from the server
 			String line;
 			try {
-				line = inputReader.readLine();
+				//Wake up in time to dispatch a netsplit that no other line ends
+				long netSplitRemaining = inputParser.getNetSplitTimeoutRemaining();
+				int timeout = (netSplitRemaining == -1) ? configuration.getSocketTimeout()
+						: (int) Math.max(Math.min(netSplitRemaining, configuration.getSocketTimeout()), 1);
+				if (timeout != readTimeout) {
+					socket.setSoTimeout(timeout);
+					readTimeout = timeout;
+				}
+				line = inputFramer.readLine(inputStream);
+				lastReadNanos = System.nanoTime();
 			} catch (InterruptedIOException iioe) {
+				try {
+					inputParser.checkNetSplitTimeout();
+				} catch (Exception e) {
+					log.error("Exception encountered when dispatching netsplit", e);
+				}
+				if (System.nanoTime() - lastReadNanos < TimeUnit.MILLISECONDS.toNanos(configuration.getSocketTimeout()))
+					continue;
+				lastReadNanos = System.nanoTime();
 				// This will happen if we haven't received anything from the server for a while.
 				// So we shall send it a ping to check that we are still connected.
 				sendRaw().rawLine("PING " + (System.currentTimeMillis() / 1000));
@@ -412,11 +526,49 @@ public class PircBotX implements Comparable<PircBotX>, Closeable {
 	protected void sendRawLineToServer(String line) throws IOException {
 		if (line.length() > configuration.getMaxLineLength() - 2)
 			line = line.substring(0, configuration.getMaxLineLength() - 2);
-		outputWriter.write(line + "\r\n");
-		outputWriter.flush();
+		if (nioConnection != null)
+			nioConnection.write(line, !outputFlushDeferred);
+		else {
+			outputWriter.writeLine(line);
+			if (!outputFlushDeferred)
+				outputWriter.flush();
+		}
+
+		ListenerManager listenerManager = getConfiguration().getListenerManager();
+		if (listenerManager.hasSubscribers(OutputEvent.class))
+			listenerManager.dispatchEvent(new OutputEvent(this, line, null));
+	}
 
-		List<String> lineParts = Utils.tokenizeLine(line);
-		getConfiguration().getListenerManager().dispatchEvent(new OutputEvent(this, line, lineParts));
+	/**
+	 * Send a raw line, optionally leaving it buffered until
+	 * {@link #flushRawLinesToServer() } so multiple lines can be sent in a
+	 * single write. Overrides of {@link #sendRawLineToServer(java.lang.String) }
+	 * are still used
+	 *
+	 * @param line
+	 * @param flush False to only buffer the line
+	 * @throws IOException
+	 */
+	protected void sendRawLineToServer(String line, boolean flush) throws IOException {
+		outputFlushDeferred = !flush;
+		try {
+			sendRawLineToServer(line);
+		} finally {
+			outputFlushDeferred = false;
+		}
+	}
+
+	/**
+	 * Write any lines buffered by
+	 * {@link #sendRawLineToServer(java.lang.String, boolean) }
+	 *
+	 * @throws IOException
+	 */
+	protected void flushRawLinesToServer() throws IOException {
+		if (nioConnection != null)
+			nioConnection.flush();
+		else if (outputWriter != null)
+			outputWriter.flush();
 	}
 
 	protected void onLoggedIn(String nick) {
@@ -570,7 +722,7 @@ public class PircBotX implements Comparable<PircBotX>, Closeable {
 	 * connections to the server, kill background threads, clear server specific
 	 * state, and dispatch a DisconnectedEvent
 	 */
-	private void shutdown() {
+	protected void shutdown() {
 		UserChannelDaoSnapshot daoSnapshot;
 		synchronized (stateLock) {
 			log.debug("---PircBotX shutdown started---");
@@ -599,6 +751,8 @@ public class PircBotX implements Comparable<PircBotX>, Closeable {
 
 			//Clear relevant variables of information
 			loggedIn = false;
+			//Users that quit in a netsplit must be removed before the snapshot
+			inputParser.finishNetSplits();
 			daoSnapshot = (configuration.isSnapshotsEnabled()) ? userChannelDao.createSnapshot() : null;
 			userChannelDao.close();
 			inputParser.close();
@@ -53,7 +53,7 @@ public class ReplayServer {
 	 * the IRC server
 	 */
 	@Slf4j
-	protected static class ReplayPircBotX extends PircBotX {
+	public static class ReplayPircBotX extends PircBotX {
 		protected final Queue<String> outputQueue;
 		@Getter
 		protected boolean closed = false;
@@ -20,6 +20,7 @@ package org.pircbotx;
 import com.google.common.collect.ImmutableMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.StringTokenizer;
 import lombok.AccessLevel;
 import lombok.Data;
@@ -80,6 +81,11 @@ public class ServerInfo {
 	protected boolean cPrivMsgExists;
 	protected boolean cNoticeExists;
 	protected int maxTargets;
+	/**
+	 * Maximum targets per command from TARGMAX, commands without a limit map
+	 * to {@link Integer#MAX_VALUE}
+	 */
+	protected ImmutableMap<String, Integer> targetMax = ImmutableMap.of();
 	protected boolean knockExists;
 	protected boolean vChannels;
 	protected int watchMax;
@@ -121,10 +127,11 @@ public class ServerInfo {
 
 	protected void parse005(List<String> parsedLine) {
 		//REFERENCE: http://www.irc.org/tech_docs/005.html
-		for (String curItem : parsedLine) {
-			String[] itemParts = curItem.split("=", 2);
-			String key = itemParts[0];
-			String value = (itemParts.length == 2) ? itemParts[1] : "";
+		for (int i = 0, size = parsedLine.size(); i < size; i++) {
+			String curItem = parsedLine.get(i);
+			int equalsIndex = curItem.indexOf('=');
+			String key = (equalsIndex == -1) ? curItem : curItem.substring(0, equalsIndex);
+			String value = (equalsIndex == -1) ? "" : curItem.substring(equalsIndex + 1);
 			isupportRaw.put(key, value);
 			if (key.equalsIgnoreCase("PREFIX"))
 				prefixes = value;
@@ -198,7 +205,19 @@ public class ServerInfo {
 				userIPExists = true;
 			else if (key.equalsIgnoreCase("CNOTICE"))
 				cNoticeExists = true;
-			else if (key.equalsIgnoreCase("EXTBAN")) {
+			else if (key.equalsIgnoreCase("MAXTARGETS"))
+				maxTargets = Integer.parseInt(value);
+			else if (key.equalsIgnoreCase("TARGMAX")) {
+				ImmutableMap.Builder<String, Integer> targetMaxBuilder = ImmutableMap.builder();
+				for (String curEntry : StringUtils.split(value, ',')) {
+					String[] entrySplit = StringUtils.split(curEntry, ":", 2);
+					if (entrySplit.length == 0)
+						continue;
+					int limit = entrySplit.length == 2 ? Integer.parseInt(entrySplit[1]) : Integer.MAX_VALUE;
+					targetMaxBuilder.put(entrySplit[0].toUpperCase(Locale.ENGLISH), limit);
+				}
+				targetMax = targetMaxBuilder.build();
+			} else if (key.equalsIgnoreCase("EXTBAN")) {
 				if (value.contains(",")) {
 					String[] valueSplit = StringUtils.split(value, ",", 2);
 					if (valueSplit.length == 2) {
@@ -227,6 +246,20 @@ public class ServerInfo {
 		//005 QTest SSL=[::]:6697 STARTTLS STATUSMSG=!~&@%+ TOPICLEN=307 UHNAMES USERIP VBANLIST WALLCHOPS WALLVOICES WATCH=32 :are supported by this server
 	}
 
+	/**
+	 * Get the maximum number of comma separated targets the server accepts
+	 * for the command, using TARGMAX and then MAXTARGETS
+	 *
+	 * @param command The command, eg PRIVMSG
+	 * @return The limit, 1 if the server didn't send one
+	 */
+	public int getMaxTargets(String command) {
+		Integer limit = targetMax.get(command.toUpperCase(Locale.ENGLISH));
+		if (limit != null)
+			return limit;
+		return maxTargets > 0 ? maxTargets : 1;
+	}
+
 	/**
 	 * Get all supported server options as a map. Be careful about calling this
 	 * very early in the connection phase as we might not of received all the
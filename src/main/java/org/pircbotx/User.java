@@ -22,7 +22,6 @@ import com.google.common.collect.ImmutableSortedSet;
 import java.util.UUID;
 import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 import org.pircbotx.hooks.WaitForQueue;
 import org.pircbotx.hooks.events.WhoisEvent;
@@ -39,8 +38,7 @@ import org.pircbotx.hooks.events.WhoisEvent;
  * href="http://pircbotx.googlecode.com">PircBotX</a>
  */
 @Getter
-@ToString(callSuper = true)
-@Setter(AccessLevel.PROTECTED)
+@ToString(callSuper = true, exclude = {"snapshotVersion", "indexedId"})
 public class User extends UserHostmask {
 	private final UUID userId;
 	/**
@@ -65,6 +63,22 @@ public class User extends UserHostmask {
 	 * The number of hops it takes to this user.
 	 */
 	private int hops = 0;
+	/**
+	 * The services account the user is logged into, null if not logged in or
+	 * unknown. Only known if the server supports WHOX
+	 */
+	private String account = null;
+	/**
+	 * Last {@link UserChannelDao} snapshot that has a copy of this user's
+	 * current state
+	 */
+	@Getter(AccessLevel.NONE)
+	protected int snapshotVersion = 0;
+	/**
+	 * Id of this user in an {@link IndexedUserChannelDao}, -1 if none
+	 */
+	@Getter(AccessLevel.NONE)
+	protected int indexedId = -1;
 
 	protected User(UserHostmask hostmask) {
 		super(hostmask);
@@ -84,6 +98,43 @@ public class User extends UserHostmask {
 		return bot.getUserChannelDao();
 	}
 
+	@Override
+	protected void beforeChange() {
+		UserChannelDao<User, Channel> dao = getDao();
+		if (dao != null)
+			dao.beforeChange(this);
+	}
+
+	protected void setRealName(String realName) {
+		beforeChange();
+		this.realName = realName;
+	}
+
+	protected void setAwayMessage(String awayMessage) {
+		beforeChange();
+		this.awayMessage = awayMessage;
+	}
+
+	protected void setIrcop(boolean ircop) {
+		beforeChange();
+		this.ircop = ircop;
+	}
+
+	protected void setServer(String server) {
+		beforeChange();
+		this.server = server;
+	}
+
+	protected void setHops(int hops) {
+		beforeChange();
+		this.hops = hops;
+	}
+
+	protected void setAccount(String account) {
+		beforeChange();
+		this.account = account;
+	}
+
 	/**
 	 * Query the user with WHOIS to determine if they are verified *EXPENSIVE*.
 	 * This is intended to be a quick utility method, if you need more specific
@@ -18,16 +18,14 @@
 package org.pircbotx;
 
 import static com.google.common.base.Preconditions.*;
-import com.google.common.collect.ImmutableBiMap;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 import java.io.Closeable;
-import java.util.EnumMap;
-import java.util.HashSet;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 import lombok.AccessLevel;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -35,10 +33,7 @@ import lombok.Synchronized;
 import org.apache.commons.lang3.StringUtils;
 import org.pircbotx.exception.DaoException;
 import org.pircbotx.hooks.events.UserListEvent;
-import org.pircbotx.snapshot.ChannelSnapshot;
 import org.pircbotx.snapshot.UserChannelDaoSnapshot;
-import org.pircbotx.snapshot.UserChannelMapSnapshot;
-import org.pircbotx.snapshot.UserSnapshot;
 
 /**
  * Model that creates and tracks Users and Channel and maintains relationships.
@@ -47,6 +42,11 @@ import org.pircbotx.snapshot.UserSnapshot;
  * <p>
  * All methods will throw a {@link NullPointerException} when any argument is
  * null
+ * <p>
+ * Lookups don't lock. All state is kept in persistent maps that are replaced
+ * atomically on every change, so listener threads calling eg
+ * {@link Channel#getUsers() } never wait for the input thread and always see
+ * the state as of the last completed change. Changes are synchronized
  *
  * @see User
  * @see Channel
@@ -59,24 +59,29 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	protected final Locale locale;
 	protected final Object accessLock = new Object();
 	protected final UserChannelMap<U, C> mainMap;
-	protected final EnumMap<UserLevel, UserChannelMap<U, C>> levelsMap;
-	protected final Map<String, U> userNickMap;
-	protected final Map<String, C> channelNameMap;
-	protected final Map<String, U> privateUsers;
+	/**
+	 * Name maps are replaced on every change so snapshots can share them and
+	 * lookups don't need to lock
+	 */
+	protected volatile PersistentHashMap<String, U> userNickMap = PersistentHashMap.of();
+	protected volatile PersistentHashMap<String, C> channelNameMap = PersistentHashMap.of();
+	protected volatile PersistentHashMap<String, U> privateUsers = PersistentHashMap.of();
+	/**
+	 * Incremented for every snapshot, see {@link #beforeChange(org.pircbotx.User)
+	 * }
+	 */
+	protected volatile int snapshotVersion = 0;
+	/**
+	 * Snapshots that might still share users or channels, oldest first
+	 */
+	protected final List<WeakReference<UserChannelDaoSnapshot>> snapshots = Lists.newArrayList();
+	protected int snapshotsPruneSize = 16;
 
 	protected UserChannelDao(PircBotX bot, Configuration.BotFactory botFactory) {
 		this.bot = bot;
 		this.botFactory = botFactory;
 		this.locale = bot.getConfiguration().getLocale();
 		this.mainMap = new UserChannelMap<U, C>();
-		this.userNickMap = Maps.newHashMap();
-		this.channelNameMap = Maps.newHashMap();
-		this.privateUsers = Maps.newHashMap();
-
-		//Initialize levels map with a UserChannelMap for each level
-		this.levelsMap = Maps.newEnumMap(UserLevel.class);
-		for (UserLevel level : UserLevel.values())
-			levelsMap.put(level, new UserChannelMap<U, C>());
 	}
 
 	/**
@@ -88,7 +93,6 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * {@link org.pircbotx.exception.DaoException.Reason#UnknownUser} and the
 	 * nick that doesn't exist
 	 */
-	@Synchronized("accessLock")
 	public U getUser(@NonNull String nick) throws DaoException {
 		checkArgument(StringUtils.isNotBlank(nick), "Cannot get a blank user");
 		U user = userNickMap.get(nick.toLowerCase(locale));
@@ -108,7 +112,6 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * {@link org.pircbotx.exception.DaoException.Reason#UnknownUserHostmask},
 	 * hostmask, and wrapped exception with nick
 	 */
-	@Synchronized("accessLock")
 	public U getUser(@NonNull UserHostmask userHostmask) {
 		try {
 			//Rarely we don't get the full hostmask
@@ -135,7 +138,9 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 		if (containsUser(userHostmask))
 			throw new RuntimeException("Cannot create a user from hostmask that already exists: " + userHostmask);
 		U user = (U) botFactory.createUser(userHostmask);
-		userNickMap.put(userHostmask.getNick().toLowerCase(locale), user);
+		//Existing snapshots don't contain the new user
+		user.snapshotVersion = snapshotVersion;
+		userNickMap = userNickMap.plus(userHostmask.getNick().toLowerCase(locale), user);
 		return user;
 	}
 
@@ -144,7 +149,6 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * Java Collections API
 	 * @see #containsUser(java.lang.String)
 	 */
-	@Synchronized("accessLock")
 	@Deprecated
 	public boolean userExists(@NonNull String nick) {
 		return containsUser(nick);
@@ -156,7 +160,6 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @param nick Nick of user
 	 * @return True if user exists
 	 */
-	@Synchronized("accessLock")
 	public boolean containsUser(@NonNull String nick) {
 		String nickLowercase = nick.toLowerCase(locale);
 		return userNickMap.containsKey(nickLowercase) || privateUsers.containsKey(nickLowercase);
@@ -168,7 +171,6 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @param hostmask Hostmask of user
 	 * @return True if user exists
 	 */
-	@Synchronized("accessLock")
 	public boolean containsUser(@NonNull UserHostmask hostmask) {
 		return containsUser(hostmask.getNick());
 	}
@@ -180,9 +182,8 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @return An immutable set of the currently known users
 	 * @see UserListEvent
 	 */
-	@Synchronized("accessLock")
 	public ImmutableSortedSet<U> getAllUsers() {
-		return ImmutableSortedSet.copyOf(userNickMap.values());
+		return userNickMap.sortedValues();
 	}
 
 	@Synchronized("accessLock")
@@ -193,17 +194,17 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	@Synchronized("accessLock")
 	protected void addUserToPrivate(@NonNull U user) {
 		String nick = user.getNick().toLowerCase(locale);
-		privateUsers.put(nick, user);
+		privateUsers = privateUsers.plus(nick, user);
 	}
 
 	@Synchronized("accessLock")
 	protected void addUserToLevel(@NonNull UserLevel level, @NonNull U user, @NonNull C channel) {
-		levelsMap.get(level).addUserToChannel(user, channel);
+		mainMap.addUserToLevel(level, user, channel);
 	}
 
 	@Synchronized("accessLock")
 	protected void removeUserFromLevel(@NonNull UserLevel level, @NonNull U user, @NonNull C channel) {
-		levelsMap.get(level).removeUserFromChannel(user, channel);
+		mainMap.removeUserFromLevel(level, user, channel);
 	}
 
 	/**
@@ -214,12 +215,8 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @param channel Known channel
 	 * @return An immutable sorted set of Users
 	 */
-	@Synchronized("accessLock")
 	public ImmutableSortedSet<U> getNormalUsers(@NonNull C channel) {
-		Set<U> remainingUsers = new HashSet<U>(mainMap.getUsers(channel));
-		for (UserChannelMap<U, C> curLevelMap : levelsMap.values())
-			remainingUsers.removeAll(curLevelMap.getUsers(channel));
-		return ImmutableSortedSet.copyOf(remainingUsers);
+		return mainMap.getNormalUsers(channel);
 	}
 
 	/**
@@ -231,9 +228,8 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @param level Level users must hold
 	 * @return An immutable sorted set of Users
 	 */
-	@Synchronized("accessLock")
 	public ImmutableSortedSet<U> getUsers(@NonNull C channel, @NonNull UserLevel level) {
-		return levelsMap.get(level).getUsers(channel);
+		return mainMap.getUsers(channel, level);
 	}
 
 	/**
@@ -245,13 +241,8 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @param user Known user
 	 * @return An immutable sorted set of UserLevels
 	 */
-	@Synchronized("accessLock")
 	public ImmutableSortedSet<UserLevel> getLevels(@NonNull C channel, @NonNull U user) {
-		ImmutableSortedSet.Builder<UserLevel> builder = ImmutableSortedSet.naturalOrder();
-		for (Map.Entry<UserLevel, UserChannelMap<U, C>> curEntry : levelsMap.entrySet())
-			if (curEntry.getValue().containsEntry(user, channel))
-				builder.add(curEntry.getKey());
-		return builder.build();
+		return mainMap.getLevels(user, channel);
 	}
 
 	/**
@@ -262,12 +253,8 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @param user Known user
 	 * @return An immutable sorted set of Channels
 	 */
-	@Synchronized("accessLock")
 	public ImmutableSortedSet<C> getNormalUserChannels(@NonNull U user) {
-		Set<C> remainingChannels = new HashSet<C>(mainMap.getChannels(user));
-		for (UserChannelMap<U, C> curLevelMap : levelsMap.values())
-			remainingChannels.removeAll(curLevelMap.getChannels(user));
-		return ImmutableSortedSet.copyOf(remainingChannels);
+		return mainMap.getNormalChannels(user);
 	}
 
 	/**
@@ -278,36 +265,46 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @param user Known user
 	 * @return An immutable sorted set of Channels
 	 */
-	@Synchronized("accessLock")
 	public ImmutableSortedSet<C> getChannels(@NonNull U user, @NonNull UserLevel level) {
-		return levelsMap.get(level).getChannels(user);
+		return mainMap.getChannels(user, level);
 	}
 
 	@Synchronized("accessLock")
 	protected void removeUserFromChannel(@NonNull U user, @NonNull C channel) {
 		mainMap.removeUserFromChannel(user, channel);
-		for (UserChannelMap<U, C> curLevelMap : levelsMap.values())
-			curLevelMap.removeUserFromChannel(user, channel);
 
 		if (!privateUsers.values().contains(user) && !mainMap.containsUser(user))
 			//Completely remove user
-			userNickMap.remove(user.getNick().toLowerCase(locale));
+			userNickMap = userNickMap.minus(user.getNick().toLowerCase(locale));
 	}
 
 	@Synchronized("accessLock")
 	protected void removeUser(@NonNull U user) {
 		mainMap.removeUser(user);
-		for (UserChannelMap<U, C> curLevelMap : levelsMap.values())
-			curLevelMap.removeUser(user);
 
 		//Remove remaining locations
-		userNickMap.remove(user.getNick().toLowerCase(locale));
-		privateUsers.remove(user.getNick().toLowerCase(locale));
+		userNickMap = userNickMap.minus(user.getNick().toLowerCase(locale));
+		privateUsers = privateUsers.minus(user.getNick().toLowerCase(locale));
 	}
 
+	/**
+	 * Remove many users at once, eg after a netsplit
+	 *
+	 * @param users Known users
+	 */
 	@Synchronized("accessLock")
+	protected void removeUsers(@NonNull Iterable<U> users) {
+		mainMap.removeUsers(users);
+
+		for (U curUser : users) {
+			String nick = curUser.getNick().toLowerCase(locale);
+			userNickMap = userNickMap.minus(nick);
+			privateUsers = privateUsers.minus(nick);
+		}
+	}
+
 	protected boolean levelContainsUser(@NonNull UserLevel level, @NonNull C channel, @NonNull U user) {
-		return levelsMap.get(level).containsEntry(user, channel);
+		return mainMap.containsLevel(level, user, channel);
 	}
 
 	@Synchronized("accessLock")
@@ -315,8 +312,8 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 		String oldNick = user.getNick();
 
 		user.setNick(newNick);
-		userNickMap.remove(oldNick.toLowerCase(locale));
-		userNickMap.put(newNick.toLowerCase(locale), user);
+		mainMap.userRenamed(user);
+		userNickMap = userNickMap.minus(oldNick.toLowerCase(locale)).plus(newNick.toLowerCase(locale), user);
 	}
 
 	/**
@@ -325,10 +322,24 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @param name Name of channel (eg #pircbotx)
 	 * @return A known channel
 	 */
-	@Synchronized("accessLock")
 	public C getChannel(@NonNull String name) throws DaoException {
 		checkArgument(StringUtils.isNotBlank(name), "Cannot get a blank channel");
-		C chan = channelNameMap.get(name.toLowerCase(locale));
+		C chan = findChannel(channelNameMap, name);
+		if (chan != null)
+			return chan;
+
+		//Channel does not exist
+		throw new DaoException(DaoException.Reason.UnknownChannel, name);
+	}
+
+	/**
+	 * Lookup a channel by name in the given map, also stripping off any user
+	 * level prefixes
+	 *
+	 * @return The channel or null if not found
+	 */
+	protected <T> T findChannel(Map<String, T> channelMap, String name) {
+		T chan = channelMap.get(name.toLowerCase(locale));
 		if (chan != null)
 			return chan;
 
@@ -338,14 +349,12 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 			String nameTrimmed = name.toLowerCase(locale);
 			do {
 				nameTrimmed = nameTrimmed.substring(1);
-				chan = channelNameMap.get(nameTrimmed);
+				chan = channelMap.get(nameTrimmed);
 				if (chan != null)
 					return chan;
-			} while (modePrefixes.contains(Character.toString(nameTrimmed.charAt(0))));
+			} while (nameTrimmed.length() > 0 && modePrefixes.contains(Character.toString(nameTrimmed.charAt(0))));
 		}
-
-		//Channel does not exist
-		throw new DaoException(DaoException.Reason.UnknownChannel, name);
+		return null;
 	}
 
 	/**
@@ -357,7 +366,8 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	@SuppressWarnings("unchecked")
 	public C createChannel(@NonNull String name) {
 		C chan = (C) botFactory.createChannel(bot, name);
-		channelNameMap.put(name.toLowerCase(locale), chan);
+		chan.snapshotVersion = snapshotVersion;
+		channelNameMap = channelNameMap.plus(name.toLowerCase(locale), chan);
 		return chan;
 	}
 
@@ -377,24 +387,8 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @param name Channel name (eg #pircbotx)
 	 * @return True if we are still connected to the channel
 	 */
-	@Synchronized("accessLock")
 	public boolean containsChannel(@NonNull String name) {
-		if (channelNameMap.containsKey(name.toLowerCase(locale)))
-			return true;
-
-		//This could potentially be a mode message, strip off prefixes till we get a channel
-		String modePrefixes = bot.getConfiguration().getUserLevelPrefixes();
-		if (modePrefixes.contains(Character.toString(name.charAt(0)))) {
-			String nameTrimmed = name.toLowerCase(locale);
-			do {
-				nameTrimmed = nameTrimmed.substring(1);
-				if (channelNameMap.containsKey(nameTrimmed))
-					return true;
-			} while (modePrefixes.contains(Character.toString(nameTrimmed.charAt(0))));
-		}
-
-		//Nope, doesn't exist
-		return false;
+		return findChannel(channelNameMap, name) != null;
 	}
 
 	/**
@@ -403,7 +397,6 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @param channel Known channel
 	 * @return An immutable set of users
 	 */
-	@Synchronized("accessLock")
 	public ImmutableSortedSet<U> getUsers(@NonNull C channel) {
 		return mainMap.getUsers(channel);
 	}
@@ -413,9 +406,8 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 *
 	 * @return An immutable set of channels
 	 */
-	@Synchronized("accessLock")
 	public ImmutableSortedSet<C> getAllChannels() {
-		return ImmutableSortedSet.copyOf(channelNameMap.values());
+		return channelNameMap.sortedValues();
 	}
 
 	/**
@@ -424,7 +416,6 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 * @param user A known user
 	 * @return An immutable set of channels
 	 */
-	@Synchronized("accessLock")
 	public ImmutableSortedSet<C> getChannels(@NonNull U user) {
 		return mainMap.getChannels(user);
 	}
@@ -432,11 +423,9 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	@Synchronized("accessLock")
 	protected void removeChannel(@NonNull C channel) {
 		mainMap.removeChannel(channel);
-		for (UserChannelMap<U, C> curLevelMap : levelsMap.values())
-			curLevelMap.removeChannel(channel);
 
 		//Remove remaining locations
-		channelNameMap.remove(channel.getName());
+		channelNameMap = channelNameMap.minus(channel.getName());
 	}
 
 	/**
@@ -444,7 +433,6 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	 *
 	 * @return The user object representing this bot
 	 */
-	@Synchronized("accessLock")
 	public User getUserBot() {
 		return getUser(bot.getNick());
 	}
@@ -455,60 +443,138 @@ public class UserChannelDao<U extends User, C extends Channel> implements Closea
 	@Synchronized("accessLock")
 	public void close() {
 		mainMap.clear();
-		for (UserChannelMap<U, C> curLevelMap : levelsMap.values())
-			curLevelMap.clear();
-		channelNameMap.clear();
-		privateUsers.clear();
-		userNickMap.clear();
+		channelNameMap = PersistentHashMap.of();
+		privateUsers = PersistentHashMap.of();
+		userNickMap = PersistentHashMap.of();
 	}
 
 	/**
-	 * Create an immutable snapshot (copy) of all of contained Users, Channels,
-	 * and mappings, VERY EXPENSIVE.
+	 * Create an immutable snapshot of all of contained Users, Channels, and
+	 * mappings. The snapshot shares the current maps and only copies a user or
+	 * channel when its first used from the snapshot or before its next
+	 * modified, so this is cheap even with many users
 	 *
-	 * @return Copy of entire model
+	 * @return Snapshot of entire model
 	 */
 	@Synchronized("accessLock")
 	public UserChannelDaoSnapshot createSnapshot() {
-		//Create snapshots of all users and channels
-		Map<U, UserSnapshot> userSnapshotMap = Maps.newHashMapWithExpectedSize(userNickMap.size());
-		for (U curUser : userNickMap.values())
-			userSnapshotMap.put(curUser, curUser.createSnapshot());
-		Map<C, ChannelSnapshot> channelSnapshotMap = Maps.newHashMapWithExpectedSize(channelNameMap.size());
-		for (C curChannel : channelNameMap.values())
-			channelSnapshotMap.put(curChannel, curChannel.createSnapshot());
-
-		//Make snapshots of the relationship maps using the above user and channel snapshots
-		UserChannelMapSnapshot mainMapSnapshot = mainMap.createSnapshot(userSnapshotMap, channelSnapshotMap);
-		EnumMap<UserLevel, UserChannelMap<UserSnapshot, ChannelSnapshot>> levelsMapSnapshot = Maps.newEnumMap(UserLevel.class);
-		for (Map.Entry<UserLevel, UserChannelMap<U, C>> curLevel : levelsMap.entrySet())
-			levelsMapSnapshot.put(curLevel.getKey(), curLevel.getValue().createSnapshot(userSnapshotMap, channelSnapshotMap));
-		ImmutableBiMap.Builder<String, UserSnapshot> userNickMapSnapshotBuilder = ImmutableBiMap.builder();
-		for (Map.Entry<String, U> curNickEntry : userNickMap.entrySet())
-			userNickMapSnapshotBuilder.put(curNickEntry.getKey(), userSnapshotMap.get(curNickEntry.getValue()));
-		ImmutableBiMap.Builder<String, ChannelSnapshot> channelNameMapSnapshotBuilder = ImmutableBiMap.builder();
-		for (Map.Entry<String, C> curName : channelNameMap.entrySet())
-			channelNameMapSnapshotBuilder.put(curName.getKey(), channelSnapshotMap.get(curName.getValue()));
-		ImmutableBiMap.Builder<String, UserSnapshot> privateUserSnapshotBuilder = ImmutableBiMap.builder();
-		for (Map.Entry<String, U> curNickEntry : privateUsers.entrySet())
-			privateUserSnapshotBuilder.put(curNickEntry.getKey(), userSnapshotMap.get(curNickEntry.getValue()));
-
-		//Finally can create the snapshot object
+		return createSnapshot(mainMap);
+	}
+
+	/**
+	 * Create a snapshot that only contains the given user and channels. Only
+	 * the user's own membership and levels in those channels are included, so
+	 * the cost depends on the number of channels instead of the total number of
+	 * users. Used for PartEvent and QuitEvent when
+	 * {@link Configuration#isScopedSnapshots() } is enabled
+	 *
+	 * @param user The user to include
+	 * @param channels The channels to include
+	 * @return A snapshot of only the user and channels
+	 */
+	@Synchronized("accessLock")
+	public UserChannelDaoSnapshot createSnapshot(@NonNull U user, @NonNull Iterable<C> channels) {
+		UserChannelMap<User, Channel> scopedMap = new UserChannelMap<User, Channel>();
+		PersistentHashMap<String, Channel> scopedChannels = PersistentHashMap.of();
+		ImmutableSortedSet<C> userChannels = getChannels(user);
+		for (C curChannel : channels) {
+			scopedChannels = scopedChannels.plus(curChannel.getName().toLowerCase(locale), curChannel);
+			if (!userChannels.contains(curChannel))
+				continue;
+			scopedMap.addUserToChannel(user, curChannel);
+			for (UserLevel curLevel : getLevels(curChannel, user))
+				scopedMap.addUserToLevel(curLevel, user, curChannel);
+		}
+
+		String nick = user.getNick().toLowerCase(locale);
+		PersistentHashMap<String, User> scopedUsers = PersistentHashMap.<String, User>of().plus(nick, user);
+		PersistentHashMap<String, User> scopedPrivateUsers = PersistentHashMap.of();
+		if (privateUsers.get(nick) == user)
+			scopedPrivateUsers = scopedPrivateUsers.plus(nick, user);
+
+		//Nothing is shared with the live dao, copy everything now
 		UserChannelDaoSnapshot daoSnapshot = new UserChannelDaoSnapshot(bot,
 				locale,
-				mainMapSnapshot,
-				levelsMapSnapshot,
-				userNickMapSnapshotBuilder.build(),
-				channelNameMapSnapshotBuilder.build(),
-				privateUserSnapshotBuilder.build());
-
-		//Tell UserSnapshots and ChannelSnapshots what the new backing dao is
-		for (UserSnapshot curUserSnapshot : userSnapshotMap.values())
-			curUserSnapshot.setDao(daoSnapshot);
-		for (ChannelSnapshot curChannelSnapshot : channelSnapshotMap.values())
-			curChannelSnapshot.setDao(daoSnapshot);
-
-		//Finally
+				accessLock,
+				snapshotVersion,
+				scopedMap.createSnapshot(),
+				scopedUsers,
+				scopedChannels,
+				scopedPrivateUsers);
+		daoSnapshot.captureUser(user);
+		for (Channel curChannel : scopedChannels.values())
+			daoSnapshot.captureChannel(curChannel);
 		return daoSnapshot;
 	}
+
+	/**
+	 * Create a snapshot using the given relationship map, used by
+	 * implementations that store relationships differently
+	 */
+	@SuppressWarnings("unchecked")
+	protected UserChannelDaoSnapshot createSnapshot(UserChannelMap<U, C> mainMap) {
+		UserChannelDaoSnapshot daoSnapshot = new UserChannelDaoSnapshot(bot,
+				locale,
+				accessLock,
+				++snapshotVersion,
+				mainMap.createSnapshot(),
+				(PersistentHashMap<String, User>) (Object) userNickMap,
+				(PersistentHashMap<String, Channel>) (Object) channelNameMap,
+				(PersistentHashMap<String, User>) (Object) privateUsers);
+
+		if (snapshots.size() >= snapshotsPruneSize) {
+			//Forget snapshots that are no longer used
+			for (Iterator<WeakReference<UserChannelDaoSnapshot>> itr = snapshots.iterator(); itr.hasNext();)
+				if (itr.next().get() == null)
+					itr.remove();
+			snapshotsPruneSize = Math.max(16, snapshots.size() * 2);
+		}
+		snapshots.add(new WeakReference<UserChannelDaoSnapshot>(daoSnapshot));
+		return daoSnapshot;
+	}
+
+	/**
+	 * Called before the user is modified. Snapshots created since the user was
+	 * last modified still share the user, so they are given a copy of its
+	 * current state first
+	 *
+	 * @param user The user about to be modified
+	 */
+	protected void beforeChange(User user) {
+		if (user.snapshotVersion >= snapshotVersion)
+			return;
+		synchronized (accessLock) {
+			for (int i = snapshots.size() - 1; i >= 0; i--) {
+				UserChannelDaoSnapshot curSnapshot = snapshots.get(i).get();
+				if (curSnapshot == null)
+					continue;
+				if (curSnapshot.getVersion() <= user.snapshotVersion)
+					break;
+				curSnapshot.captureUser(user);
+			}
+			user.snapshotVersion = snapshotVersion;
+		}
+	}
+
+	/**
+	 * Called before the channel is modified, see
+	 * {@link #beforeChange(org.pircbotx.User) }
+	 *
+	 * @param channel The channel about to be modified
+	 */
+	protected void beforeChange(Channel channel) {
+		if (channel.snapshotVersion >= snapshotVersion)
+			return;
+		synchronized (accessLock) {
+			for (int i = snapshots.size() - 1; i >= 0; i--) {
+				UserChannelDaoSnapshot curSnapshot = snapshots.get(i).get();
+				if (curSnapshot == null)
+					continue;
+				if (curSnapshot.getVersion() <= channel.snapshotVersion)
+					break;
+				curSnapshot.captureChannel(channel);
+			}
+			channel.snapshotVersion = snapshotVersion;
+		}
+	}
 }
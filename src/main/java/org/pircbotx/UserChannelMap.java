@@ -17,97 +17,261 @@
  */
 package org.pircbotx;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.List;
 import java.util.Map;
 import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.pircbotx.snapshot.ChannelSnapshot;
 import org.pircbotx.snapshot.UserChannelMapSnapshot;
-import org.pircbotx.snapshot.UserSnapshot;
 
 /**
- * A many to many map of users to channels.
+ * A many to many map of users to channels. Each user in a channel is mapped to
+ * a bitmask of the {@link UserLevel}s they hold there, so membership and level
+ * lookups are a single probe.
+ * <p>
+ * The maps are {@link PersistentHashMap}s that are replaced on every change,
+ * so {@link #createSnapshot() } only needs to copy the references. Since
+ * they're never modified in place, reads don't need any locking; they see
+ * the state as of the last completed change to the map they use. Changes
+ * must still be made by a single thread at a time
  */
-@RequiredArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
 @Slf4j
 public class UserChannelMap<U extends User, C extends Channel> {
-	protected final Multimap<U, C> userToChannelMap;
-	protected final Multimap<C, U> channelToUserMap;
+	/**
+	 * Users to the channels they are in, values are always true
+	 */
+	protected volatile PersistentHashMap<U, PersistentHashMap<C, Boolean>> userToChannelMap;
+	/**
+	 * Channels to their users, mapped to a bitmask of their levels
+	 */
+	protected volatile PersistentHashMap<C, PersistentHashMap<U, Integer>> channelToUserMap;
 
 	/**
-	 * Create with HashMultimaps.
+	 * Create empty.
 	 */
 	public UserChannelMap() {
-		channelToUserMap = HashMultimap.create();
-		userToChannelMap = HashMultimap.create();
+		userToChannelMap = PersistentHashMap.of();
+		channelToUserMap = PersistentHashMap.of();
+	}
+
+	/**
+	 * @return The bit for the level in the level bitmask
+	 */
+	public static int levelBit(UserLevel level) {
+		return 1 << level.ordinal();
+	}
+
+	protected PersistentHashMap<U, Integer> getChannelUsers(C channel) {
+		PersistentHashMap<U, Integer> users = channelToUserMap.get(channel);
+		return users == null ? PersistentHashMap.<U, Integer>of() : users;
+	}
+
+	protected PersistentHashMap<C, Boolean> getUserChannels(U user) {
+		PersistentHashMap<C, Boolean> channels = userToChannelMap.get(user);
+		return channels == null ? PersistentHashMap.<C, Boolean>of() : channels;
 	}
 
 	public void addUserToChannel(U user, C channel) {
-		userToChannelMap.put(user, channel);
-		channelToUserMap.put(channel, user);
+		PersistentHashMap<U, Integer> users = getChannelUsers(channel);
+		if (!users.containsKey(user)) {
+			channelToUserMap = channelToUserMap.plus(channel, users.plus(user, 0));
+			userToChannelMap = userToChannelMap.plus(user, getUserChannels(user).plus(channel, Boolean.TRUE));
+		}
+	}
+
+	/**
+	 * Give the user a level in the channel, adding them to the channel if
+	 * needed
+	 */
+	public void addUserToLevel(UserLevel level, U user, C channel) {
+		addUserToChannel(user, channel);
+		PersistentHashMap<U, Integer> users = channelToUserMap.get(channel);
+		channelToUserMap = channelToUserMap.plus(channel, users.plus(user, users.get(user) | levelBit(level)));
+	}
+
+	public void removeUserFromLevel(UserLevel level, U user, C channel) {
+		PersistentHashMap<U, Integer> users = getChannelUsers(channel);
+		Integer levels = users.get(user);
+		if (levels != null)
+			channelToUserMap = channelToUserMap.plus(channel, users.plus(user, levels & ~levelBit(level)));
 	}
 
 	public void removeUserFromChannel(U user, C channel) {
-		userToChannelMap.remove(user, channel);
-		channelToUserMap.remove(channel, user);
+		PersistentHashMap<U, Integer> users = getChannelUsers(channel);
+		if (!users.containsKey(user))
+			return;
+		users = users.minus(user);
+		channelToUserMap = users.isEmpty() ? channelToUserMap.minus(channel) : channelToUserMap.plus(channel, users);
+		PersistentHashMap<C, Boolean> channels = getUserChannels(user).minus(channel);
+		userToChannelMap = channels.isEmpty() ? userToChannelMap.minus(user) : userToChannelMap.plus(user, channels);
 	}
 
 	public void removeUser(U user) {
 		//Remove the user from each channel
-		for (Channel curChannel : userToChannelMap.removeAll(user))
-			channelToUserMap.remove(curChannel, user);
+		for (C curChannel : getUserChannels(user).keySet()) {
+			PersistentHashMap<U, Integer> users = channelToUserMap.get(curChannel).minus(user);
+			channelToUserMap = users.isEmpty() ? channelToUserMap.minus(curChannel) : channelToUserMap.plus(curChannel, users);
+		}
+		userToChannelMap = userToChannelMap.minus(user);
+	}
+
+	/**
+	 * Called after the user's nick changed, which changes their position in
+	 * the cached sets of their channels' users
+	 */
+	public void userRenamed(U user) {
+		for (C curChannel : getUserChannels(user).keySet())
+			channelToUserMap = channelToUserMap.plus(curChannel, getChannelUsers(curChannel).uncached());
+	}
+
+	/**
+	 * Remove many users at once, eg after a netsplit. Each channel is only
+	 * replaced once instead of once per user
+	 */
+	public void removeUsers(Iterable<U> users) {
+		Map<C, PersistentHashMap<U, Integer>> changedChannels = Maps.newHashMap();
+		for (U curUser : users) {
+			for (C curChannel : getUserChannels(curUser).keySet()) {
+				PersistentHashMap<U, Integer> channelUsers = changedChannels.get(curChannel);
+				if (channelUsers == null)
+					channelUsers = channelToUserMap.get(curChannel);
+				changedChannels.put(curChannel, channelUsers.minus(curUser));
+			}
+			userToChannelMap = userToChannelMap.minus(curUser);
+		}
+		for (Map.Entry<C, PersistentHashMap<U, Integer>> curEntry : changedChannels.entrySet())
+			channelToUserMap = curEntry.getValue().isEmpty()
+					? channelToUserMap.minus(curEntry.getKey())
+					: channelToUserMap.plus(curEntry.getKey(), curEntry.getValue());
 	}
 
 	public void removeChannel(C channel) {
 		//Remove the channel from each user
-		for (User curUser : channelToUserMap.removeAll(channel))
-			//This will automatically remove the user if they have no more channels
-			userToChannelMap.remove(curUser, channel);
+		for (U curUser : getChannelUsers(channel).keySet()) {
+			PersistentHashMap<C, Boolean> channels = userToChannelMap.get(curUser).minus(channel);
+			//Remove the user if they have no more channels
+			userToChannelMap = channels.isEmpty() ? userToChannelMap.minus(curUser) : userToChannelMap.plus(curUser, channels);
+		}
+		channelToUserMap = channelToUserMap.minus(channel);
 	}
 
+	/**
+	 * The set is cached until the channel's members change
+	 */
 	public ImmutableSortedSet<U> getUsers(C channel) {
-		return ImmutableSortedSet.copyOf(channelToUserMap.get(channel));
+		return getChannelUsers(channel).sortedKeys();
+	}
+
+	/**
+	 * Get users in the channel that hold the level
+	 */
+	public ImmutableSortedSet<U> getUsers(C channel, UserLevel level) {
+		return getUsers(channel, levelBit(level));
 	}
 
+	/**
+	 * Get users in the channel that don't hold any level
+	 */
+	public ImmutableSortedSet<U> getNormalUsers(C channel) {
+		return getUsers(channel, 0);
+	}
+
+	/**
+	 * @param levelMask 0 for users without a level, otherwise users holding
+	 * any of the levels in the mask
+	 */
+	protected ImmutableSortedSet<U> getUsers(C channel, int levelMask) {
+		List<U> users = Lists.newArrayList();
+		for (Map.Entry<U, Integer> curEntry : getChannelUsers(channel).entrySet())
+			if (matchesLevel(curEntry.getValue(), levelMask))
+				users.add(curEntry.getKey());
+		return ImmutableSortedSet.copyOf(users);
+	}
+
+	protected static boolean matchesLevel(int levels, int levelMask) {
+		return levelMask == 0 ? levels == 0 : (levels & levelMask) != 0;
+	}
+
+	/**
+	 * The set is cached until the user's channels change
+	 */
 	public ImmutableSortedSet<C> getChannels(U user) {
-		return ImmutableSortedSet.copyOf(userToChannelMap.get(user));
+		return getUserChannels(user).sortedKeys();
+	}
+
+	/**
+	 * Get channels where the user holds the level
+	 */
+	public ImmutableSortedSet<C> getChannels(U user, UserLevel level) {
+		return getChannels(user, levelBit(level));
+	}
+
+	/**
+	 * Get channels where the user doesn't hold any level
+	 */
+	public ImmutableSortedSet<C> getNormalChannels(U user) {
+		return getChannels(user, 0);
+	}
+
+	protected ImmutableSortedSet<C> getChannels(U user, int levelMask) {
+		List<C> channels = Lists.newArrayList();
+		PersistentHashMap<C, PersistentHashMap<U, Integer>> channelUsers = channelToUserMap;
+		for (C curChannel : getUserChannels(user).keySet()) {
+			PersistentHashMap<U, Integer> users = channelUsers.get(curChannel);
+			Integer levels = users == null ? null : users.get(user);
+			if (matchesLevel(levels == null ? 0 : levels, levelMask))
+				channels.add(curChannel);
+		}
+		return ImmutableSortedSet.copyOf(channels);
+	}
+
+	/**
+	 * @return The level bitmask of the user in the channel or 0 if they aren't
+	 * in the channel
+	 */
+	public int getLevelBits(U user, C channel) {
+		Integer levels = getChannelUsers(channel).get(user);
+		return levels == null ? 0 : levels;
+	}
+
+	public ImmutableSortedSet<UserLevel> getLevels(U user, C channel) {
+		int levels = getLevelBits(user, channel);
+		ImmutableSortedSet.Builder<UserLevel> builder = ImmutableSortedSet.naturalOrder();
+		for (UserLevel curLevel : UserLevel.values())
+			if ((levels & levelBit(curLevel)) != 0)
+				builder.add(curLevel);
+		return builder.build();
+	}
+
+	public boolean containsLevel(UserLevel level, U user, C channel) {
+		return (getLevelBits(user, channel) & levelBit(level)) != 0;
 	}
 
 	public boolean containsEntry(U user, C channel) {
-		boolean channelToUserContains = channelToUserMap.containsEntry(channel, user);
-		boolean userToChannelContains = userToChannelMap.containsEntry(user, channel);
-		if (channelToUserContains != userToChannelContains)
-			throw new RuntimeException("Map inconsistent! User: " + user + " | Channel: " + channel + " | channelToUserMap: " + channelToUserContains + " | userToChannelMap: " + userToChannelContains);
-		return channelToUserContains;
+		return getChannelUsers(channel).containsKey(user);
 	}
 
 	public boolean containsUser(User user) {
-		boolean channelToUserContains = channelToUserMap.containsValue(user);
-		boolean userToChannelContains = userToChannelMap.containsKey(user);
-		if (channelToUserContains != userToChannelContains)
-			throw new RuntimeException("Map inconsistent! User: " + user + " | channelToUserMap: " + channelToUserContains + " | userToChannelMap: " + userToChannelContains);
-		return channelToUserContains;
+		return userToChannelMap.containsKey(user);
 	}
 
 	public void clear() {
-		userToChannelMap.clear();
-		channelToUserMap.clear();
+		userToChannelMap = PersistentHashMap.of();
+		channelToUserMap = PersistentHashMap.of();
 	}
 
-	public UserChannelMapSnapshot createSnapshot(Map<U, UserSnapshot> userSnapshots, Map<C, ChannelSnapshot> channelSnapshots) {
-		//Create new multimaps replacing each user and channel with their respective snapshots
-		ImmutableMultimap.Builder<UserSnapshot, ChannelSnapshot> userToChannelSnapshotBuilder = ImmutableMultimap.builder();
-		for (Map.Entry<U, C> curEntry : userToChannelMap.entries())
-			userToChannelSnapshotBuilder.put(userSnapshots.get(curEntry.getKey()), channelSnapshots.get(curEntry.getValue()));
-		ImmutableMultimap.Builder<ChannelSnapshot, UserSnapshot> channelToUserSnapshotBuilder = ImmutableMultimap.builder();
-		for (Map.Entry<C, U> curEntry : channelToUserMap.entries())
-			channelToUserSnapshotBuilder.put(channelSnapshots.get(curEntry.getKey()), userSnapshots.get(curEntry.getValue()));
-
-		//Return a snapshot of the map
-		return new UserChannelMapSnapshot(userToChannelSnapshotBuilder.build(), channelToUserSnapshotBuilder.build());
+	/**
+	 * Create a read only copy of the current state, sharing the maps
+	 *
+	 * @return A snapshot still containing the original users and channels
+	 */
+	@SuppressWarnings("unchecked")
+	public UserChannelMapSnapshot createSnapshot() {
+		return new UserChannelMapSnapshot((PersistentHashMap<User, PersistentHashMap<Channel, Boolean>>) (Object) userToChannelMap,
+				(PersistentHashMap<Channel, PersistentHashMap<User, Integer>>) (Object) channelToUserMap);
 	}
 }
@@ -23,7 +23,6 @@ import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -61,7 +60,6 @@ public class UserHostmask implements Comparable<User> {
 	/**
 	 * Current nick of the user (nick!login@hostname).
 	 */
-	@Setter(AccessLevel.PROTECTED)
 	private String nick;
 	/**
 	 * Login of the user (nick!login@hostname).
@@ -107,8 +105,21 @@ public class UserHostmask implements Comparable<User> {
 		this.extbanPrefix = otherHostmask.getExtbanPrefix();
 	}
 	
+	protected void setNick(String nick) {
+		beforeChange();
+		this.nick = nick;
+	}
+
+	/**
+	 * Called before this hostmask is modified, see
+	 * {@link UserChannelDao#beforeChange(org.pircbotx.User) }
+	 */
+	protected void beforeChange() {
+	}
+
 	protected void updateHostmask(@NonNull UserHostmask userHostmask) {
 		if (StringUtils.isNotBlank(userHostmask.getHostname()) && !userHostmask.getHostname().equals(getHostname())) {
+			beforeChange();
 			log.trace("Updating hostname to {} for user {}!{}@{}", 
 					userHostmask.getHostname(),
 					getNick(),
@@ -117,6 +128,7 @@ public class UserHostmask implements Comparable<User> {
 			this.hostname = userHostmask.getHostname();
 		}
 		if (StringUtils.isNotBlank(userHostmask.getLogin()) && !userHostmask.getLogin().equals(getLogin())) {
+			beforeChange();
 			log.trace("Updating login to {} for user {}!{}@{}", 
 					userHostmask.getLogin(),
 					getNick(),
@@ -21,6 +21,9 @@ import com.google.common.base.CharMatcher;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import org.apache.commons.lang3.StringUtils;
 import org.pircbotx.hooks.Event;
 import org.slf4j.MDC;
@@ -76,6 +79,27 @@ public final class Utils {
 			return defaultValue;
 	}
 
+	/**
+	 * Create an executor that runs each task on a new virtual thread. Virtual
+	 * threads require Java 21 (or an earlier JVM with preview features
+	 * enabled), so they are looked up reflectively
+	 *
+	 * @param namePrefix Prefix of the thread names, followed by a counter
+	 * @return The executor or null if virtual threads aren't supported
+	 */
+	public static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+			ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+		} catch (Exception e) {
+			//Missing classes or methods on older JVMs, UnsupportedOperationException without preview features
+			return null;
+		}
+	}
+
 	public static void addBotToMDC(PircBotX bot) {
 		MDC.put("pircbotx.id", String.valueOf(bot.getBotId()));
 		MDC.put("pircbotx.connectionId", bot.getServerHostname() + "-" + bot.getBotId() + "-" + bot.getConnectionId());
@@ -96,6 +120,20 @@ public final class Utils {
 		bot.sendRawLineToServer(rawLine);
 	}
 
+	/**
+	 * @see PircBotX#sendRawLineToServer(java.lang.String, boolean)
+	 */
+	public static void sendRawLineToServer(PircBotX bot, String rawLine, boolean flush) throws IOException {
+		bot.sendRawLineToServer(rawLine, flush);
+	}
+
+	/**
+	 * @see PircBotX#flushRawLinesToServer()
+	 */
+	public static void flushRawLinesToServer(PircBotX bot) throws IOException {
+		bot.flushRawLinesToServer();
+	}
+
 	/**
 	 * Sets bot as identified to nickserv. Needed so {@link PircBotX#setNickservIdentified(boolean)
 	 * }
@@ -18,7 +18,6 @@
 package org.pircbotx.hooks;
 
 import java.util.Date;
-import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.pircbotx.Configuration;
@@ -87,8 +86,7 @@ public class CoreHooks extends ListenerAdapter {
 			Utils.setNickServIdentified(event.getBot());
 
 			if (config.isNickservDelayJoin()) {
-				for (Map.Entry<String, String> channelEntry : config.getAutoJoinChannels().entrySet())
-					event.getBot().sendIRC().joinChannel(channelEntry.getKey(), channelEntry.getValue());
+				event.getBot().sendIRC().joinChannels(config.getAutoJoinChannels());
 			}
 		}
 	}
@@ -17,6 +17,15 @@
  */
 package org.pircbotx.hooks;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.Getter;
 import org.pircbotx.hooks.events.*;
 import org.pircbotx.hooks.types.*;
 
@@ -34,145 +43,569 @@ import org.pircbotx.hooks.types.*;
  *
  * @author Leon Blakey
  */
-public abstract class ListenerAdapter implements Listener {
+public abstract class ListenerAdapter implements SubscribingListener {
+	/**
+	 * Handler methods and the event type they take. For an event only the first
+	 * matching event class is called, then every matching Generic* interface.
+	 * Handler methods are named after the type, eg
+	 * {@link #onMessage(org.pircbotx.hooks.events.MessageEvent) }
+	 */
+	protected static final Handler<?>[] HANDLERS = {
+		new Handler<ActionEvent>(ActionEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, ActionEvent event) throws Exception {
+				adapter.onAction(event);
+			}
+		},
+		new Handler<BanListEvent>(BanListEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, BanListEvent event) throws Exception {
+				adapter.onBanList(event);
+			}
+		},
+		new Handler<ChannelInfoEvent>(ChannelInfoEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, ChannelInfoEvent event) throws Exception {
+				adapter.onChannelInfo(event);
+			}
+		},
+		new Handler<ChannelSyncEvent>(ChannelSyncEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, ChannelSyncEvent event) throws Exception {
+				adapter.onChannelSync(event);
+			}
+		},
+		new Handler<ConnectEvent>(ConnectEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, ConnectEvent event) throws Exception {
+				adapter.onConnect(event);
+			}
+		},
+		new Handler<ConnectAttemptFailedEvent>(ConnectAttemptFailedEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, ConnectAttemptFailedEvent event) throws Exception {
+				adapter.onConnectAttemptFailed(event);
+			}
+		},
+		new Handler<DisconnectEvent>(DisconnectEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, DisconnectEvent event) throws Exception {
+				adapter.onDisconnect(event);
+			}
+		},
+		new Handler<FingerEvent>(FingerEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, FingerEvent event) throws Exception {
+				adapter.onFinger(event);
+			}
+		},
+		new Handler<HalfOpEvent>(HalfOpEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, HalfOpEvent event) throws Exception {
+				adapter.onHalfOp(event);
+			}
+		},
+		new Handler<IncomingChatRequestEvent>(IncomingChatRequestEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, IncomingChatRequestEvent event) throws Exception {
+				adapter.onIncomingChatRequest(event);
+			}
+		},
+		new Handler<IncomingFileTransferEvent>(IncomingFileTransferEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, IncomingFileTransferEvent event) throws Exception {
+				adapter.onIncomingFileTransfer(event);
+			}
+		},
+		new Handler<InviteEvent>(InviteEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, InviteEvent event) throws Exception {
+				adapter.onInvite(event);
+			}
+		},
+		new Handler<JoinEvent>(JoinEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, JoinEvent event) throws Exception {
+				adapter.onJoin(event);
+			}
+		},
+		new Handler<KickEvent>(KickEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, KickEvent event) throws Exception {
+				adapter.onKick(event);
+			}
+		},
+		new Handler<MessageEvent>(MessageEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, MessageEvent event) throws Exception {
+				adapter.onMessage(event);
+			}
+		},
+		new Handler<ModeEvent>(ModeEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, ModeEvent event) throws Exception {
+				adapter.onMode(event);
+			}
+		},
+		new Handler<MotdEvent>(MotdEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, MotdEvent event) throws Exception {
+				adapter.onMotd(event);
+			}
+		},
+		new Handler<NetJoinEvent>(NetJoinEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, NetJoinEvent event) throws Exception {
+				adapter.onNetJoin(event);
+			}
+		},
+		new Handler<NetSplitEvent>(NetSplitEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, NetSplitEvent event) throws Exception {
+				adapter.onNetSplit(event);
+			}
+		},
+		new Handler<NickAlreadyInUseEvent>(NickAlreadyInUseEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, NickAlreadyInUseEvent event) throws Exception {
+				adapter.onNickAlreadyInUse(event);
+			}
+		},
+		new Handler<NickChangeEvent>(NickChangeEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, NickChangeEvent event) throws Exception {
+				adapter.onNickChange(event);
+			}
+		},
+		new Handler<NoticeEvent>(NoticeEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, NoticeEvent event) throws Exception {
+				adapter.onNotice(event);
+			}
+		},
+		new Handler<OpEvent>(OpEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, OpEvent event) throws Exception {
+				adapter.onOp(event);
+			}
+		},
+		new Handler<OutputEvent>(OutputEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, OutputEvent event) throws Exception {
+				adapter.onOutput(event);
+			}
+		},
+		new Handler<OwnerEvent>(OwnerEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, OwnerEvent event) throws Exception {
+				adapter.onOwner(event);
+			}
+		},
+		new Handler<PartEvent>(PartEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, PartEvent event) throws Exception {
+				adapter.onPart(event);
+			}
+		},
+		new Handler<PingEvent>(PingEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, PingEvent event) throws Exception {
+				adapter.onPing(event);
+			}
+		},
+		new Handler<PrivateMessageEvent>(PrivateMessageEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, PrivateMessageEvent event) throws Exception {
+				adapter.onPrivateMessage(event);
+			}
+		},
+		new Handler<QuitEvent>(QuitEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, QuitEvent event) throws Exception {
+				adapter.onQuit(event);
+			}
+		},
+		new Handler<RemoveChannelBanEvent>(RemoveChannelBanEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, RemoveChannelBanEvent event) throws Exception {
+				adapter.onRemoveChannelBan(event);
+			}
+		},
+		new Handler<RemoveChannelKeyEvent>(RemoveChannelKeyEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, RemoveChannelKeyEvent event) throws Exception {
+				adapter.onRemoveChannelKey(event);
+			}
+		},
+		new Handler<RemoveChannelLimitEvent>(RemoveChannelLimitEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, RemoveChannelLimitEvent event) throws Exception {
+				adapter.onRemoveChannelLimit(event);
+			}
+		},
+		new Handler<RemoveInviteOnlyEvent>(RemoveInviteOnlyEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, RemoveInviteOnlyEvent event) throws Exception {
+				adapter.onRemoveInviteOnly(event);
+			}
+		},
+		new Handler<RemoveModeratedEvent>(RemoveModeratedEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, RemoveModeratedEvent event) throws Exception {
+				adapter.onRemoveModerated(event);
+			}
+		},
+		new Handler<RemoveNoExternalMessagesEvent>(RemoveNoExternalMessagesEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, RemoveNoExternalMessagesEvent event) throws Exception {
+				adapter.onRemoveNoExternalMessages(event);
+			}
+		},
+		new Handler<RemovePrivateEvent>(RemovePrivateEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, RemovePrivateEvent event) throws Exception {
+				adapter.onRemovePrivate(event);
+			}
+		},
+		new Handler<RemoveSecretEvent>(RemoveSecretEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, RemoveSecretEvent event) throws Exception {
+				adapter.onRemoveSecret(event);
+			}
+		},
+		new Handler<RemoveTopicProtectionEvent>(RemoveTopicProtectionEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, RemoveTopicProtectionEvent event) throws Exception {
+				adapter.onRemoveTopicProtection(event);
+			}
+		},
+		new Handler<ServerPingEvent>(ServerPingEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, ServerPingEvent event) throws Exception {
+				adapter.onServerPing(event);
+			}
+		},
+		new Handler<ServerResponseEvent>(ServerResponseEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, ServerResponseEvent event) throws Exception {
+				adapter.onServerResponse(event);
+			}
+		},
+		new Handler<SetChannelBanEvent>(SetChannelBanEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, SetChannelBanEvent event) throws Exception {
+				adapter.onSetChannelBan(event);
+			}
+		},
+		new Handler<SetChannelKeyEvent>(SetChannelKeyEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, SetChannelKeyEvent event) throws Exception {
+				adapter.onSetChannelKey(event);
+			}
+		},
+		new Handler<SetChannelLimitEvent>(SetChannelLimitEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, SetChannelLimitEvent event) throws Exception {
+				adapter.onSetChannelLimit(event);
+			}
+		},
+		new Handler<SetInviteOnlyEvent>(SetInviteOnlyEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, SetInviteOnlyEvent event) throws Exception {
+				adapter.onSetInviteOnly(event);
+			}
+		},
+		new Handler<SetModeratedEvent>(SetModeratedEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, SetModeratedEvent event) throws Exception {
+				adapter.onSetModerated(event);
+			}
+		},
+		new Handler<SetNoExternalMessagesEvent>(SetNoExternalMessagesEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, SetNoExternalMessagesEvent event) throws Exception {
+				adapter.onSetNoExternalMessages(event);
+			}
+		},
+		new Handler<SetPrivateEvent>(SetPrivateEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, SetPrivateEvent event) throws Exception {
+				adapter.onSetPrivate(event);
+			}
+		},
+		new Handler<SetSecretEvent>(SetSecretEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, SetSecretEvent event) throws Exception {
+				adapter.onSetSecret(event);
+			}
+		},
+		new Handler<SetTopicProtectionEvent>(SetTopicProtectionEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, SetTopicProtectionEvent event) throws Exception {
+				adapter.onSetTopicProtection(event);
+			}
+		},
+		new Handler<SocketConnectEvent>(SocketConnectEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, SocketConnectEvent event) throws Exception {
+				adapter.onSocketConnect(event);
+			}
+		},
+		new Handler<SuperOpEvent>(SuperOpEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, SuperOpEvent event) throws Exception {
+				adapter.onSuperOp(event);
+			}
+		},
+		new Handler<TimeEvent>(TimeEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, TimeEvent event) throws Exception {
+				adapter.onTime(event);
+			}
+		},
+		new Handler<TopicEvent>(TopicEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, TopicEvent event) throws Exception {
+				adapter.onTopic(event);
+			}
+		},
+		new Handler<UnknownEvent>(UnknownEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, UnknownEvent event) throws Exception {
+				adapter.onUnknown(event);
+			}
+		},
+		new Handler<UserListEvent>(UserListEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, UserListEvent event) throws Exception {
+				adapter.onUserList(event);
+			}
+		},
+		new Handler<UserModeEvent>(UserModeEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, UserModeEvent event) throws Exception {
+				adapter.onUserMode(event);
+			}
+		},
+		new Handler<VersionEvent>(VersionEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, VersionEvent event) throws Exception {
+				adapter.onVersion(event);
+			}
+		},
+		new Handler<VoiceEvent>(VoiceEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, VoiceEvent event) throws Exception {
+				adapter.onVoice(event);
+			}
+		},
+		new Handler<WhoisEvent>(WhoisEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, WhoisEvent event) throws Exception {
+				adapter.onWhois(event);
+			}
+		},
+		new Handler<GenericCTCPEvent>(GenericCTCPEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, GenericCTCPEvent event) throws Exception {
+				adapter.onGenericCTCP(event);
+			}
+		},
+		new Handler<GenericUserModeEvent>(GenericUserModeEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, GenericUserModeEvent event) throws Exception {
+				adapter.onGenericUserMode(event);
+			}
+		},
+		new Handler<GenericChannelModeEvent>(GenericChannelModeEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, GenericChannelModeEvent event) throws Exception {
+				adapter.onGenericChannelMode(event);
+			}
+		},
+		new Handler<GenericChannelModeRecipientEvent>(GenericChannelModeRecipientEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, GenericChannelModeRecipientEvent event) throws Exception {
+				adapter.onGenericChannelModeRecipient(event);
+			}
+		},
+		new Handler<GenericDCCEvent>(GenericDCCEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, GenericDCCEvent event) throws Exception {
+				adapter.onGenericDCC(event);
+			}
+		},
+		new Handler<GenericMessageEvent>(GenericMessageEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, GenericMessageEvent event) throws Exception {
+				adapter.onGenericMessage(event);
+			}
+		},
+		new Handler<GenericUserEvent>(GenericUserEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, GenericUserEvent event) throws Exception {
+				adapter.onGenericUser(event);
+			}
+		},
+		new Handler<GenericChannelEvent>(GenericChannelEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, GenericChannelEvent event) throws Exception {
+				adapter.onGenericChannel(event);
+			}
+		},
+		new Handler<GenericChannelUserEvent>(GenericChannelUserEvent.class) {
+			@Override
+			protected void call(ListenerAdapter adapter, GenericChannelUserEvent event) throws Exception {
+				adapter.onGenericChannelUser(event);
+			}
+		}
+	};
+	/**
+	 * Dispatch tables of each adapter subclass. Weak keys so unloaded listener
+	 * classes can be collected
+	 */
+	protected static final LoadingCache<Class<?>, DispatchTable> DISPATCH_TABLES = CacheBuilder.newBuilder()
+			.weakKeys()
+			.build(new CacheLoader<Class<?>, DispatchTable>() {
+				@Override
+				public DispatchTable load(Class<?> listenerClass) {
+					return new DispatchTable(listenerClass);
+				}
+			});
+	/**
+	 * Cached from {@link #DISPATCH_TABLES}. The table is immutable apart from
+	 * its concurrent event map so a racy initialization is harmless
+	 */
+	private DispatchTable dispatchTable;
+
+	/**
+	 * Call the handler methods for this event. Handlers are looked up once per
+	 * event class in a table built for this adapter subclass that only contains
+	 * methods the subclass actually overrides, so an event costs a single map
+	 * lookup plus a call for each overridden handler instead of a chain of
+	 * instanceof checks.
+	 *
+	 * @param event The event to dispatch
+	 * @throws Exception From the handler methods
+	 */
 	public void onEvent(Event event) throws Exception {
-		//While reflection would make this significantly shorter, 
-		//nothing beats if statements in performance.
-		//Also polymorphism, while theoretically correct, just means that this code
-		//would be in every single Event and make an explicit dependency on this.
-		//This is just simple and fast
-		if (event instanceof ActionEvent)
-			onAction((ActionEvent) event);
-		else if (event instanceof BanListEvent)
-			onBanList((BanListEvent) event);
-		else if (event instanceof ChannelInfoEvent)
-			onChannelInfo((ChannelInfoEvent) event);
-		else if (event instanceof ConnectEvent)
-			onConnect((ConnectEvent) event);
-		else if (event instanceof ConnectAttemptFailedEvent)
-			onConnectAttemptFailed((ConnectAttemptFailedEvent) event);
-		else if (event instanceof DisconnectEvent)
-			onDisconnect((DisconnectEvent) event);
-		else if (event instanceof FingerEvent)
-			onFinger((FingerEvent) event);
-		else if (event instanceof HalfOpEvent)
-			onHalfOp((HalfOpEvent) event);
-		else if (event instanceof IncomingChatRequestEvent)
-			onIncomingChatRequest((IncomingChatRequestEvent) event);
-		else if (event instanceof IncomingFileTransferEvent)
-			onIncomingFileTransfer((IncomingFileTransferEvent) event);
-		else if (event instanceof InviteEvent)
-			onInvite((InviteEvent) event);
-		else if (event instanceof JoinEvent)
-			onJoin((JoinEvent) event);
-		else if (event instanceof KickEvent)
-			onKick((KickEvent) event);
-		else if (event instanceof MessageEvent)
-			onMessage((MessageEvent) event);
-		else if (event instanceof ModeEvent)
-			onMode((ModeEvent) event);
-		else if (event instanceof MotdEvent)
-			onMotd((MotdEvent) event);
-		else if (event instanceof NickAlreadyInUseEvent)
-			onNickAlreadyInUse((NickAlreadyInUseEvent) event);
-		else if (event instanceof NickChangeEvent)
-			onNickChange((NickChangeEvent) event);
-		else if (event instanceof NoticeEvent)
-			onNotice((NoticeEvent) event);
-		else if (event instanceof OpEvent)
-			onOp((OpEvent) event);
-		else if (event instanceof OutputEvent)
-			onOutput((OutputEvent) event);
-		else if (event instanceof OwnerEvent)
-			onOwner((OwnerEvent) event);
-		else if (event instanceof PartEvent)
-			onPart((PartEvent) event);
-		else if (event instanceof PingEvent)
-			onPing((PingEvent) event);
-		else if (event instanceof PrivateMessageEvent)
-			onPrivateMessage((PrivateMessageEvent) event);
-		else if (event instanceof QuitEvent)
-			onQuit((QuitEvent) event);
-		else if (event instanceof RemoveChannelBanEvent)
-			onRemoveChannelBan((RemoveChannelBanEvent) event);
-		else if (event instanceof RemoveChannelKeyEvent)
-			onRemoveChannelKey((RemoveChannelKeyEvent) event);
-		else if (event instanceof RemoveChannelLimitEvent)
-			onRemoveChannelLimit((RemoveChannelLimitEvent) event);
-		else if (event instanceof RemoveInviteOnlyEvent)
-			onRemoveInviteOnly((RemoveInviteOnlyEvent) event);
-		else if (event instanceof RemoveModeratedEvent)
-			onRemoveModerated((RemoveModeratedEvent) event);
-		else if (event instanceof RemoveNoExternalMessagesEvent)
-			onRemoveNoExternalMessages((RemoveNoExternalMessagesEvent) event);
-		else if (event instanceof RemovePrivateEvent)
-			onRemovePrivate((RemovePrivateEvent) event);
-		else if (event instanceof RemoveSecretEvent)
-			onRemoveSecret((RemoveSecretEvent) event);
-		else if (event instanceof RemoveTopicProtectionEvent)
-			onRemoveTopicProtection((RemoveTopicProtectionEvent) event);
-		else if (event instanceof ServerPingEvent)
-			onServerPing((ServerPingEvent) event);
-		else if (event instanceof ServerResponseEvent)
-			onServerResponse((ServerResponseEvent) event);
-		else if (event instanceof SetChannelBanEvent)
-			onSetChannelBan((SetChannelBanEvent) event);
-		else if (event instanceof SetChannelKeyEvent)
-			onSetChannelKey((SetChannelKeyEvent) event);
-		else if (event instanceof SetChannelLimitEvent)
-			onSetChannelLimit((SetChannelLimitEvent) event);
-		else if (event instanceof SetInviteOnlyEvent)
-			onSetInviteOnly((SetInviteOnlyEvent) event);
-		else if (event instanceof SetModeratedEvent)
-			onSetModerated((SetModeratedEvent) event);
-		else if (event instanceof SetNoExternalMessagesEvent)
-			onSetNoExternalMessages((SetNoExternalMessagesEvent) event);
-		else if (event instanceof SetPrivateEvent)
-			onSetPrivate((SetPrivateEvent) event);
-		else if (event instanceof SetSecretEvent)
-			onSetSecret((SetSecretEvent) event);
-		else if (event instanceof SetTopicProtectionEvent)
-			onSetTopicProtection((SetTopicProtectionEvent) event);
-		else if (event instanceof SocketConnectEvent)
-			onSocketConnect((SocketConnectEvent) event);
-		else if (event instanceof SuperOpEvent)
-			onSuperOp((SuperOpEvent) event);
-		else if (event instanceof TimeEvent)
-			onTime((TimeEvent) event);
-		else if (event instanceof TopicEvent)
-			onTopic((TopicEvent) event);
-		else if (event instanceof UnknownEvent)
-			onUnknown((UnknownEvent) event);
-		else if (event instanceof UserListEvent)
-			onUserList((UserListEvent) event);
-		else if (event instanceof UserModeEvent)
-			onUserMode((UserModeEvent) event);
-		else if (event instanceof VersionEvent)
-			onVersion((VersionEvent) event);
-		else if (event instanceof VoiceEvent)
-			onVoice((VoiceEvent) event);
-		else if (event instanceof WhoisEvent)
-			onWhois((WhoisEvent) event);
-
-		//Generic methods
-		if (event instanceof GenericCTCPEvent)
-			onGenericCTCP((GenericCTCPEvent) event);
-		if (event instanceof GenericUserModeEvent)
-			onGenericUserMode((GenericUserModeEvent) event);
-		if (event instanceof GenericChannelModeEvent)
-			onGenericChannelMode((GenericChannelModeEvent) event);
-		if (event instanceof GenericChannelModeRecipientEvent)
-			onGenericChannelModeRecipient((GenericChannelModeRecipientEvent) event);
-		if (event instanceof GenericDCCEvent)
-			onGenericDCC((GenericDCCEvent) event);
-		if (event instanceof GenericMessageEvent)
-			onGenericMessage((GenericMessageEvent) event);
-		if (event instanceof GenericUserEvent)
-			onGenericUser((GenericUserEvent) event);
-		if (event instanceof GenericChannelEvent)
-			onGenericChannel((GenericChannelEvent) event);
-		if (event instanceof GenericChannelUserEvent)
-			onGenericChannelUser((GenericChannelUserEvent) event);
+		DispatchTable table = dispatchTable;
+		if (table == null)
+			dispatchTable = table = DISPATCH_TABLES.getUnchecked(getClass());
+		for (Handler<?> curHandler : table.getHandlers(event.getClass()))
+			curHandler.dispatch(this, event);
+	}
+
+	/**
+	 * Subscribe to the event types of the overridden handler methods so listener
+	 * managers can skip this listener for anything else. If a subclass
+	 * overrides {@link #onEvent(org.pircbotx.hooks.Event) } it receives every
+	 * event.
+	 *
+	 * @return The handled event types
+	 */
+	public ImmutableSet<Class<?>> getSubscribedEvents() {
+		DispatchTable table = dispatchTable;
+		if (table == null)
+			dispatchTable = table = DISPATCH_TABLES.getUnchecked(getClass());
+		return table.getSubscribedEvents();
+	}
+
+	/**
+	 * Calls the handler method of a single event type. Calls are direct instead
+	 * of through reflection so exceptions aren't wrapped
+	 */
+	protected abstract static class Handler<E> {
+		@Getter
+		protected final Class<E> type;
+		@Getter
+		protected final String methodName;
+
+		public Handler(Class<E> type) {
+			this.type = type;
+			String typeName = type.getSimpleName();
+			this.methodName = "on" + typeName.substring(0, typeName.length() - "Event".length());
+		}
+
+		protected abstract void call(ListenerAdapter adapter, E event) throws Exception;
+
+		@SuppressWarnings("unchecked")
+		public void dispatch(ListenerAdapter adapter, Event event) throws Exception {
+			call(adapter, (E) event);
+		}
+	}
+
+	/**
+	 * The overridden handler methods of an adapter subclass and the handlers to
+	 * call for each event class seen so far
+	 */
+	protected static class DispatchTable {
+		protected static final Handler<?>[] NO_HANDLERS = new Handler<?>[0];
+		protected final boolean[] overridden = new boolean[HANDLERS.length];
+		protected final ConcurrentMap<Class<?>, Handler<?>[]> eventHandlers = new ConcurrentHashMap<Class<?>, Handler<?>[]>();
+		@Getter
+		protected final ImmutableSet<Class<?>> subscribedEvents;
+
+		public DispatchTable(Class<?> listenerClass) {
+			boolean overridesOnEvent = false;
+			//Walk up to the adapter so methods overridden in any subclass count,
+			//including generated subclasses like mocks
+			for (Class<?> curClass = listenerClass; curClass != null && curClass != ListenerAdapter.class; curClass = curClass.getSuperclass())
+				for (Method curMethod : curClass.getDeclaredMethods()) {
+					if (curMethod.isSynthetic() || curMethod.getParameterTypes().length != 1)
+						continue;
+					if (curMethod.getName().equals("onEvent") && curMethod.getParameterTypes()[0] == Event.class) {
+						overridesOnEvent = true;
+						continue;
+					}
+					int handler = handlerId(curMethod.getName(), curMethod.getParameterTypes()[0]);
+					if (handler != -1)
+						overridden[handler] = true;
+				}
+
+			if (overridesOnEvent)
+				subscribedEvents = ImmutableSet.<Class<?>>of(Event.class);
+			else {
+				ImmutableSet.Builder<Class<?>> builder = ImmutableSet.builder();
+				for (int i = 0; i < HANDLERS.length; i++)
+					if (overridden[i])
+						builder.add(HANDLERS[i].getType());
+				subscribedEvents = builder.build();
+			}
+		}
+
+		protected static int handlerId(String methodName, Class<?> parameterType) {
+			for (int i = 0; i < HANDLERS.length; i++)
+				if (HANDLERS[i].getType() == parameterType)
+					return methodName.equals(HANDLERS[i].getMethodName()) ? i : -1;
+			return -1;
+		}
+
+		public Handler<?>[] getHandlers(Class<?> eventClass) {
+			Handler<?>[] handlers = eventHandlers.get(eventClass);
+			if (handlers == null) {
+				handlers = buildHandlers(eventClass);
+				eventHandlers.put(eventClass, handlers);
+			}
+			return handlers;
+		}
+
+		protected Handler<?>[] buildHandlers(Class<?> eventClass) {
+			Handler<?>[] handlers = new Handler<?>[HANDLERS.length];
+			int count = 0;
+			boolean concreteFound = false;
+			for (int i = 0; i < HANDLERS.length; i++) {
+				Class<?> curType = HANDLERS[i].getType();
+				boolean concrete = !curType.isInterface();
+				if ((concrete && concreteFound) || !curType.isAssignableFrom(eventClass))
+					continue;
+				if (concrete)
+					concreteFound = true;
+				if (overridden[i])
+					handlers[count++] = HANDLERS[i];
+			}
+			return count == 0 ? NO_HANDLERS : Arrays.copyOf(handlers, count);
+		}
 	}
 
 	public void onAction(ActionEvent event) throws Exception {
@@ -184,6 +617,9 @@ public abstract class ListenerAdapter implements Listener {
 	public void onChannelInfo(ChannelInfoEvent event) throws Exception {
 	}
 
+	public void onChannelSync(ChannelSyncEvent event) throws Exception {
+	}
+
 	public void onConnect(ConnectEvent event) throws Exception {
 	}
 
@@ -223,6 +659,12 @@ public abstract class ListenerAdapter implements Listener {
 	public void onMotd(MotdEvent event) throws Exception {
 	}
 
+	public void onNetJoin(NetJoinEvent event) throws Exception {
+	}
+
+	public void onNetSplit(NetSplitEvent event) throws Exception {
+	}
+
 	public void onNickAlreadyInUse(NickAlreadyInUseEvent event) throws Exception {
 	}
 
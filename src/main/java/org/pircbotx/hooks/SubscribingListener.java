@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.hooks;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A listener that only handles some events. Listener managers use the
+ * subscribed types to skip this listener entirely for other events instead of
+ * calling (or scheduling) it only for it to ignore the event.
+ * <p>
+ * {@link ListenerAdapter} implements this automatically based on which
+ * methods are overridden
+ *
+ * @author Leon Blakey
+ */
+public interface SubscribingListener extends Listener {
+	/**
+	 * Get the event types this listener handles. An event is dispatched if it
+	 * is an instance of any of the types, so event interfaces like
+	 * {@link org.pircbotx.hooks.types.GenericMessageEvent} subscribe to every
+	 * event that implements it. The result must not change after the listener
+	 * is added to a listener manager
+	 *
+	 * @return The event classes or interfaces to receive, or null to receive
+	 * all events
+	 */
+	public ImmutableSet<Class<?>> getSubscribedEvents();
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.hooks.events;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import org.pircbotx.Channel;
+import org.pircbotx.ChannelSyncManager;
+import org.pircbotx.PircBotX;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.types.GenericChannelEvent;
+
+/**
+ * Dispatched when the {@link ChannelSyncManager} receives the end of the WHO
+ * reply it requested after joining a channel, meaning the channel's users and
+ * their details are known. With
+ * {@link org.pircbotx.Configuration#isLazyChannelSync() } this is dispatched
+ * at the end of the NAMES reply instead, when only the users are known, and
+ * not again when a WHO is requested later with
+ * {@link ChannelSyncManager#requestSync(java.lang.String) }.
+ * Dispatched after the matching {@link UserListEvent}
+ *
+ * @author Leon Blakey
+ * @see ChannelSyncManager
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class ChannelSyncEvent extends Event implements GenericChannelEvent {
+	/**
+	 * The channel that finished syncing
+	 */
+	@Getter(onMethod = @_({
+		@Override}))
+	protected final Channel channel;
+
+	public ChannelSyncEvent(PircBotX bot, @NonNull Channel channel) {
+		super(bot);
+		this.channel = channel;
+	}
+
+	/**
+	 * Respond with a message to the channel
+	 *
+	 * @param response The response to send
+	 */
+	@Override
+	public void respond(String response) {
+		getChannel().send().message(response);
+	}
+}
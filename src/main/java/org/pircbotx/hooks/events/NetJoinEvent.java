@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.hooks.events;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import org.pircbotx.Channel;
+import org.pircbotx.PircBotX;
+import org.pircbotx.User;
+import org.pircbotx.hooks.Event;
+
+/**
+ * Dispatched after a series of JOINs from users that previously quit in a
+ * {@link NetSplitEvent}, meaning the split server has reconnected to the
+ * network. The users have already been added to their channels. Only
+ * dispatched when {@link org.pircbotx.Configuration#isNetSplitDetection() }
+ * is enabled
+ *
+ * @author Leon Blakey
+ * @see NetSplitEvent
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class NetJoinEvent extends Event {
+	/**
+	 * The server that stayed connected to the network during the netsplit
+	 */
+	protected final String server;
+	/**
+	 * The server that rejoined the network
+	 */
+	protected final String splitServer;
+	/**
+	 * The channels each user rejoined
+	 */
+	protected final ImmutableSetMultimap<User, Channel> userChannels;
+
+	public NetJoinEvent(PircBotX bot, @NonNull String server, @NonNull String splitServer, @NonNull ImmutableSetMultimap<User, Channel> userChannels) {
+		super(bot);
+		this.server = server;
+		this.splitServer = splitServer;
+		this.userChannels = userChannels;
+	}
+
+	/**
+	 * Get all users that rejoined
+	 *
+	 * @return An immutable set of users
+	 */
+	public ImmutableSet<User> getUsers() {
+		return userChannels.keySet();
+	}
+
+	/**
+	 * Does NOT respond! This will throw an
+	 * {@link UnsupportedOperationException} since there is no single user or
+	 * channel to respond to
+	 *
+	 * @param response The response to send
+	 */
+	@Override
+	public void respond(String response) {
+		throw new UnsupportedOperationException("Attempting to respond to a netjoin");
+	}
+}
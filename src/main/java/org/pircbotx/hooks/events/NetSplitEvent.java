@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.hooks.events;
+
+import com.google.common.collect.ImmutableList;
+import javax.annotation.Nullable;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import org.pircbotx.PircBotX;
+import org.pircbotx.UserHostmask;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.types.GenericSnapshotEvent;
+import org.pircbotx.snapshot.UserChannelDaoSnapshot;
+import org.pircbotx.snapshot.UserSnapshot;
+
+/**
+ * Dispatched after a series of QUITs caused by a netsplit, where the quit
+ * reason is the name of the two servers that lost their connection. All of
+ * the users have already been removed. Only dispatched when
+ * {@link org.pircbotx.Configuration#isNetSplitDetection() } is enabled
+ *
+ * @author Leon Blakey
+ * @see NetJoinEvent
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class NetSplitEvent extends Event implements GenericSnapshotEvent {
+	@Getter(onMethod = @_(
+			@Override,
+			@Nullable))
+	protected final UserChannelDaoSnapshot userChannelDaoSnapshot;
+	/**
+	 * The server that is still connected to the network, the first server in
+	 * the quit reason
+	 */
+	protected final String server;
+	/**
+	 * The server that split from the network, the second server in the quit
+	 * reason
+	 */
+	protected final String splitServer;
+	/**
+	 * The hostmasks of all users that quit in this netsplit
+	 */
+	protected final ImmutableList<UserHostmask> userHostmasks;
+	/**
+	 * Snapshots of all users that quit in this netsplit, empty if snapshots are
+	 * disabled
+	 */
+	protected final ImmutableList<UserSnapshot> users;
+
+	public NetSplitEvent(PircBotX bot, UserChannelDaoSnapshot userChannelDaoSnapshot, @NonNull String server, @NonNull String splitServer,
+			@NonNull ImmutableList<UserHostmask> userHostmasks, @NonNull ImmutableList<UserSnapshot> users) {
+		super(bot);
+		this.userChannelDaoSnapshot = userChannelDaoSnapshot;
+		this.server = server;
+		this.splitServer = splitServer;
+		this.userHostmasks = userHostmasks;
+		this.users = users;
+	}
+
+	/**
+	 * Does NOT respond! This will throw an
+	 * {@link UnsupportedOperationException} since there is no single user or
+	 * channel to respond to
+	 *
+	 * @param response The response to send
+	 */
+	@Override
+	public void respond(String response) {
+		throw new UnsupportedOperationException("Attempting to respond to a netsplit");
+	}
+}
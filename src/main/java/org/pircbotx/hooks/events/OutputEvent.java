@@ -17,10 +17,14 @@
  */
 package org.pircbotx.hooks.events;
 
+import com.google.common.collect.ImmutableList;
 import java.util.List;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Setter;
 import org.pircbotx.PircBotX;
+import org.pircbotx.Utils;
 import org.pircbotx.hooks.Event;
 
 /**
@@ -33,18 +37,35 @@ import org.pircbotx.hooks.Event;
 public class OutputEvent extends Event {
 	private final String rawLine;
 	/**
-	 * Raw line split into its individual parts
-	 *
-	 * @see org.pircbotx.Utils#tokenizeLine(java.lang.String)
+	 * Raw line split into its individual parts, only tokenized when first
+	 * requested
 	 */
-	private final List<String> lineParsed;
+	@Setter(AccessLevel.NONE)
+	private volatile List<String> lineParsed;
 
+	/**
+	 * @param lineParsed The tokenized line or null to tokenize it when first
+	 * requested
+	 */
 	public OutputEvent(PircBotX bot, String rawLine, List<String> lineParsed) {
 		super(bot);
 		this.rawLine = rawLine;
 		this.lineParsed = lineParsed;
 	}
 
+	/**
+	 * Raw line split into its individual parts
+	 *
+	 * @see org.pircbotx.Utils#tokenizeLine(java.lang.String)
+	 */
+	public List<String> getLineParsed() {
+		List<String> parsed = lineParsed;
+		if (parsed == null)
+			//Tokenizing twice from different listener threads is harmless
+			lineParsed = parsed = ImmutableList.copyOf(Utils.tokenizeLine(rawLine));
+		return parsed;
+	}
+
 	/**
 	 * @param response
 	 * @deprecated Cannot respond to output
@@ -42,7 +42,7 @@ import org.pircbotx.hooks.Listener;
  * @author Leon Blakey
  */
 public class BackgroundListenerManager extends ThreadedListenerManager {
-	protected Map<Listener, ExecutorService> backgroundListeners = Maps.newHashMap();
+	protected Map<Listener, ExecutorService> backgroundListeners = Maps.newConcurrentMap();
 	protected final AtomicInteger backgroundCount = new AtomicInteger();
 
 	public void addListener(Listener listener, boolean isBackground) {
@@ -62,13 +62,24 @@ public class BackgroundListenerManager extends ThreadedListenerManager {
 		//Dispatch to both standard listeners and background listeners
 		super.dispatchEvent(event);
 		for (Map.Entry<Listener, ExecutorService> curEntry : backgroundListeners.entrySet())
-			submitEvent(curEntry.getValue(), curEntry.getKey(), event);
+			if (SubscriptionIndex.isSubscribed(curEntry.getKey(), event.getClass()))
+				submitEvent(curEntry.getValue(), curEntry.getKey(), event);
+	}
+
+	@Override
+	public boolean hasSubscribers(Class<? extends Event> eventClass) {
+		if (super.hasSubscribers(eventClass))
+			return true;
+		for (Listener curListener : backgroundListeners.keySet())
+			if (SubscriptionIndex.isSubscribed(curListener, eventClass))
+				return true;
+		return false;
 	}
 
 	@Override
 	public ImmutableSet<Listener> getListeners() {
 		return ImmutableSet.<Listener>builder()
-				.addAll(listeners)
+				.addAll(super.getListeners())
 				.addAll(backgroundListeners.keySet())
 				.build();
 	}
@@ -49,14 +49,15 @@ import org.pircbotx.hooks.WaitForQueue;
 @Slf4j
 public class GenericListenerManager extends ListenerManager {
 	protected Set<Listener> listeners = new HashSet<Listener>();
-	protected ImmutableSet<Listener> listenersImmutable = ImmutableSet.copyOf(listeners);
+	protected volatile ImmutableSet<Listener> listenersImmutable = ImmutableSet.copyOf(listeners);
+	protected volatile SubscriptionIndex subscriptionIndex = new SubscriptionIndex(listenersImmutable);
 
-	public void addListener(Listener listener) {
+	public synchronized void addListener(Listener listener) {
 		listeners.add(listener);
 		rebuildListeners();
 	}
 
-	public boolean removeListener(Listener listener) {
+	public synchronized boolean removeListener(Listener listener) {
 		boolean result = listeners.remove(listener);
 		rebuildListeners();
 		return result;
@@ -70,7 +71,7 @@ public class GenericListenerManager extends ListenerManager {
 		if (event.getBot() != null)
 			Utils.addBotToMDC(event.getBot());
 		//Make copy in case listener removes itself causing ConcurrentModificationException's
-		for (Listener curListener : listenersImmutable)
+		for (Listener curListener : subscriptionIndex.getListeners(event.getClass()))
 			try {
 				curListener.onEvent(event);
 			} catch (Throwable e) {
@@ -78,6 +79,11 @@ public class GenericListenerManager extends ListenerManager {
 			}
 	}
 
+	@Override
+	public boolean hasSubscribers(Class<? extends Event> eventClass) {
+		return !subscriptionIndex.getListeners(eventClass).isEmpty();
+	}
+
 	public boolean listenerExists(Listener listener) {
 		return listenersImmutable.contains(listener);
 	}
@@ -88,5 +94,6 @@ public class GenericListenerManager extends ListenerManager {
 
 	protected void rebuildListeners() {
 		listenersImmutable = ImmutableSet.copyOf(listeners);
+		subscriptionIndex = new SubscriptionIndex(listenersImmutable);
 	}
 }
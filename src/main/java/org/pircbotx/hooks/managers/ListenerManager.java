@@ -79,6 +79,21 @@ public abstract class ListenerManager {
 	 */
 	public abstract ImmutableSet<Listener> getListeners();
 
+	/**
+	 * Check if any listener would receive events of the specified class so
+	 * callers can skip creating events nobody wants
+	 *
+	 * @param eventClass The class of the event
+	 * @return True if at least one listener is subscribed to the event
+	 * @see SubscriptionIndex#isSubscribed(org.pircbotx.hooks.Listener, java.lang.Class)
+	 */
+	public boolean hasSubscribers(@NonNull Class<? extends Event> eventClass) {
+		for (Listener curListener : getListeners())
+			if (SubscriptionIndex.isSubscribed(curListener, eventClass))
+				return true;
+		return false;
+	}
+
 	/**
 	 * Reset the current id to the specified value for the next event
 	 *
@@ -0,0 +1,338 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.hooks.managers;
+
+import static com.google.common.base.Preconditions.*;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.pircbotx.Channel;
+import org.pircbotx.PircBotX;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.Listener;
+import org.pircbotx.hooks.types.GenericChannelEvent;
+
+/**
+ * ThreadedListenerManager that executes events in order. Events are queued
+ * per bot (or per bot and channel) and each queue is executed serially on a
+ * bounded shared thread pool, so events for the same key are handled one at a
+ * time in the order they were dispatched while different bots or channels
+ * still run in parallel. All subscribed listeners for an event are executed
+ * before the next event.
+ * <p>
+ * Each queue holds at most {@code queueCapacity} events. When a queue is full
+ * the {@link OverflowPolicy} decides what happens, after first trying to drop
+ * one of the droppable event types. Events dispatched from a listener
+ * running in the same queue are always accepted so a listener can't deadlock
+ * its own queue.
+ *
+ * @author Leon Blakey
+ */
+@Slf4j
+public class OrderedListenerManager extends ThreadedListenerManager {
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+	/**
+	 * Max events to handle from one queue before letting other queues use the
+	 * thread
+	 */
+	protected static final int MAX_BATCH = 64;
+	protected static final Object NO_BOT = new Object();
+	protected static final ThreadLocal<EventQueue> CURRENT_QUEUE = new ThreadLocal<EventQueue>();
+	@Getter
+	protected final DispatchKey dispatchKey;
+	@Getter
+	protected final int queueCapacity;
+	@Getter
+	protected final OverflowPolicy overflowPolicy;
+	/**
+	 * Event types that are dropped first when a queue is full
+	 */
+	@Getter
+	protected final ImmutableSet<Class<?>> droppableEvents;
+	protected final ConcurrentMap<Object, EventQueue> queues = new ConcurrentHashMap<Object, EventQueue>();
+	protected final AtomicLong droppedEvents = new AtomicLong();
+
+	/**
+	 * Queue events per bot on a pool with a thread per processor, blocking the
+	 * dispatching thread when a bot has {@link #DEFAULT_QUEUE_CAPACITY} queued
+	 * events
+	 */
+	public OrderedListenerManager() {
+		this(DispatchKey.BOT, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.BLOCK, ImmutableSet.<Class<?>>of());
+	}
+
+	/**
+	 * Configures with a fixed thread pool with a thread per processor
+	 *
+	 * @see #OrderedListenerManager(java.util.concurrent.ExecutorService,
+	 * org.pircbotx.hooks.managers.OrderedListenerManager.DispatchKey, int,
+	 * org.pircbotx.hooks.managers.OrderedListenerManager.OverflowPolicy,
+	 * java.util.Set)
+	 */
+	public OrderedListenerManager(DispatchKey dispatchKey, int queueCapacity, OverflowPolicy overflowPolicy, Set<Class<?>> droppableEvents) {
+		this(createDefaultPool(), dispatchKey, queueCapacity, overflowPolicy, droppableEvents);
+	}
+
+	/**
+	 * Configures with the specified thread pool, which should be bounded.
+	 *
+	 * @param pool Thread pool to run the queues in
+	 * @param dispatchKey What events are ordered by
+	 * @param queueCapacity Max number of events waiting in each queue
+	 * @param overflowPolicy What to do when a queue is full
+	 * @param droppableEvents Event classes or interfaces to drop first when a
+	 * queue is full
+	 */
+	public OrderedListenerManager(ExecutorService pool, @NonNull DispatchKey dispatchKey, int queueCapacity, @NonNull OverflowPolicy overflowPolicy, @NonNull Set<Class<?>> droppableEvents) {
+		super(pool);
+		checkArgument(queueCapacity > 0, "Queue capacity must be positive");
+		this.dispatchKey = dispatchKey;
+		this.queueCapacity = queueCapacity;
+		this.overflowPolicy = overflowPolicy;
+		this.droppableEvents = ImmutableSet.copyOf(droppableEvents);
+	}
+
+	protected static ExecutorService createDefaultPool() {
+		BasicThreadFactory factory = new BasicThreadFactory.Builder()
+				.namingPattern("orderedListenerPool-thread%d")
+				.daemon(true)
+				.build();
+		return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), factory);
+	}
+
+	/**
+	 * Queue the event for all subscribed listeners. Depending on the
+	 * {@link OverflowPolicy} this may block until there is room in the queue
+	 */
+	@Override
+	public void dispatchEvent(Event event) {
+		ImmutableList<Listener> listeners = getSubscriptionIndex().getListeners(event.getClass());
+		if (listeners.isEmpty())
+			return;
+		Object key = getKey(event);
+		try {
+			while (true) {
+				EventQueue queue = queues.get(key);
+				if (queue == null) {
+					EventQueue newQueue = new EventQueue(key);
+					queue = queues.putIfAbsent(key, newQueue);
+					if (queue == null)
+						queue = newQueue;
+				}
+				if (queue.offer(event, listeners))
+					return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			droppedEvents.incrementAndGet();
+			log.warn("Interrupted while waiting to queue event " + event);
+		}
+	}
+
+	protected Object getKey(Event event) {
+		PircBotX bot = event.getBot();
+		if (bot == null)
+			return NO_BOT;
+		if (dispatchKey == DispatchKey.CHANNEL && event instanceof GenericChannelEvent) {
+			Channel channel = ((GenericChannelEvent) event).getChannel();
+			if (channel != null)
+				return ImmutableList.of(bot, channel.getName());
+		}
+		return bot;
+	}
+
+	protected boolean isDroppable(Event event) {
+		for (Class<?> curType : droppableEvents)
+			if (curType.isInstance(event))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Get the number of events dropped because a queue was full
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+
+	/**
+	 * What to do when an event is dispatched to a full queue and no droppable
+	 * events could be removed
+	 */
+	public static enum OverflowPolicy {
+		/**
+		 * Block the dispatching thread (usually the thread reading from the
+		 * server) until there is room
+		 */
+		BLOCK,
+		/**
+		 * Drop the oldest queued event
+		 */
+		DROP_OLDEST,
+		/**
+		 * Drop the new event
+		 */
+		DROP_NEWEST
+	}
+
+	/**
+	 * What events are ordered by
+	 */
+	public static enum DispatchKey {
+		/**
+		 * All events of a bot are executed in order
+		 */
+		BOT,
+		/**
+		 * Channel events are executed in order per channel, all other events
+		 * of the bot are executed in order separately
+		 */
+		CHANNEL
+	}
+
+	protected class QueuedEvent {
+		protected final Event event;
+		protected final ImmutableList<ManagedFutureTask> tasks;
+
+		public QueuedEvent(Event event, ImmutableList<Listener> listeners) {
+			this.event = event;
+			ImmutableList.Builder<ManagedFutureTask> builder = ImmutableList.builder();
+			for (Listener curListener : listeners)
+				builder.add(createTask(curListener, event));
+			this.tasks = builder.build();
+		}
+
+		public void run() {
+			for (ManagedFutureTask curTask : tasks)
+				curTask.run();
+		}
+
+		public void drop() {
+			droppedEvents.incrementAndGet();
+			log.debug("Dropping event " + event + ", queue is full");
+			for (ManagedFutureTask curTask : tasks)
+				curTask.cancel(false);
+		}
+	}
+
+	/**
+	 * Events waiting to be executed for a key. Scheduled on the pool while it
+	 * has events and removed from {@link #queues} once empty
+	 */
+	protected class EventQueue implements Runnable {
+		protected final Object key;
+		protected final Deque<QueuedEvent> events = new ArrayDeque<QueuedEvent>();
+		protected boolean scheduled = false;
+		protected boolean retired = false;
+
+		public EventQueue(Object key) {
+			this.key = key;
+		}
+
+		/**
+		 * @return False if this queue was retired and a new one needs to be
+		 * created
+		 */
+		public synchronized boolean offer(Event event, ImmutableList<Listener> listeners) throws InterruptedException {
+			while (events.size() >= queueCapacity && CURRENT_QUEUE.get() != this) {
+				if (retired)
+					return false;
+				if (isDroppable(event)) {
+					droppedEvents.incrementAndGet();
+					log.debug("Dropping event " + event + ", queue is full");
+					return true;
+				}
+				if (dropDroppable())
+					break;
+				if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+					events.poll().drop();
+					break;
+				} else if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+					droppedEvents.incrementAndGet();
+					log.debug("Dropping event " + event + ", queue is full");
+					return true;
+				}
+				wait();
+			}
+			if (retired)
+				return false;
+
+			events.add(new QueuedEvent(event, listeners));
+			if (!scheduled) {
+				scheduled = true;
+				pool.execute(this);
+			}
+			return true;
+		}
+
+		protected boolean dropDroppable() {
+			if (droppableEvents.isEmpty())
+				return false;
+			for (Iterator<QueuedEvent> itr = events.iterator(); itr.hasNext();) {
+				QueuedEvent curEvent = itr.next();
+				if (isDroppable(curEvent.event)) {
+					itr.remove();
+					curEvent.drop();
+					return true;
+				}
+			}
+			return false;
+		}
+
+		protected synchronized QueuedEvent poll() {
+			boolean wasFull = events.size() >= queueCapacity;
+			QueuedEvent next = events.poll();
+			if (next == null) {
+				scheduled = false;
+				retired = true;
+				queues.remove(key, this);
+			}
+			if (wasFull || retired)
+				notifyAll();
+			return next;
+		}
+
+		public void run() {
+			CURRENT_QUEUE.set(this);
+			try {
+				for (int i = 0; i < MAX_BATCH; i++) {
+					QueuedEvent next = poll();
+					if (next == null)
+						return;
+					next.run();
+				}
+			} finally {
+				CURRENT_QUEUE.remove();
+			}
+			//Give other queues a chance to run
+			pool.execute(this);
+		}
+	}
+}
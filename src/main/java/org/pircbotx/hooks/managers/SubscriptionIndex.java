@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.hooks.managers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.Getter;
+import lombok.NonNull;
+import org.pircbotx.hooks.Listener;
+import org.pircbotx.hooks.SubscribingListener;
+
+/**
+ * Immutable snapshot of a set of listeners indexed by the event classes they
+ * are subscribed to. The listeners for an event class are resolved the first
+ * time that class is dispatched and cached, so dispatching only costs a map
+ * lookup. Rebuild the index whenever the listeners change.
+ *
+ * @see SubscribingListener
+ * @author Leon Blakey
+ */
+public class SubscriptionIndex {
+	@Getter
+	protected final ImmutableSet<Listener> listeners;
+	protected final ConcurrentMap<Class<?>, ImmutableList<Listener>> eventListeners = new ConcurrentHashMap<Class<?>, ImmutableList<Listener>>();
+
+	public SubscriptionIndex(@NonNull Iterable<? extends Listener> listeners) {
+		this.listeners = ImmutableSet.copyOf(listeners);
+	}
+
+	/**
+	 * Get the listeners subscribed to the event class in iteration order of
+	 * {@link #getListeners() }
+	 *
+	 * @param eventClass The class of the dispatched event
+	 * @return An immutable list of listeners
+	 */
+	public ImmutableList<Listener> getListeners(@NonNull Class<?> eventClass) {
+		ImmutableList<Listener> subscribed = eventListeners.get(eventClass);
+		if (subscribed == null) {
+			ImmutableList.Builder<Listener> builder = ImmutableList.builder();
+			for (Listener curListener : listeners)
+				if (isSubscribed(curListener, eventClass))
+					builder.add(curListener);
+			subscribed = builder.build();
+			eventListeners.put(eventClass, subscribed);
+		}
+		return subscribed;
+	}
+
+	/**
+	 * Check if the listener wants to receive events of the specified class.
+	 * Listeners that don't implement {@link SubscribingListener} receive all
+	 * events
+	 */
+	public static boolean isSubscribed(@NonNull Listener listener, @NonNull Class<?> eventClass) {
+		if (!(listener instanceof SubscribingListener))
+			return true;
+		ImmutableSet<Class<?>> subscribedEvents = ((SubscribingListener) listener).getSubscribedEvents();
+		if (subscribedEvents == null)
+			return true;
+		for (Class<?> curType : subscribedEvents)
+			if (curType.isAssignableFrom(eventClass))
+				return true;
+		return false;
+	}
+}
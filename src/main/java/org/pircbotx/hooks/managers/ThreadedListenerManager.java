@@ -21,7 +21,6 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -50,7 +49,16 @@ public class ThreadedListenerManager extends ListenerManager {
 	protected static final AtomicInteger MANAGER_COUNT = new AtomicInteger();
 	protected final int managerNumber;
 	protected ExecutorService pool;
-	protected Set<Listener> listeners = Collections.synchronizedSet(new HashSet<Listener>());
+	/**
+	 * Registered listeners, only modified while synchronized on it. Readers
+	 * use {@link #subscriptionIndex} instead
+	 */
+	protected Set<Listener> listeners = new HashSet<Listener>();
+	/**
+	 * Immutable snapshot of {@link #listeners}, replaced when a listener is
+	 * added or removed so dispatching never needs a lock
+	 */
+	protected volatile SubscriptionIndex subscriptionIndex = new SubscriptionIndex(ImmutableSet.<Listener>of());
 	protected final Multimap<PircBotX, ManagedFutureTask> runningListeners = LinkedListMultimap.create();
 
 	/**
@@ -73,23 +81,40 @@ public class ThreadedListenerManager extends ListenerManager {
 	 * @param pool Thread pool to run listeners in
 	 */
 	public ThreadedListenerManager(ExecutorService pool) {
-		managerNumber = MANAGER_COUNT.getAndIncrement();
+		this(MANAGER_COUNT.getAndIncrement(), pool);
+	}
+
+	/**
+	 * Configures with a thread pool whose thread names already contain the
+	 * given manager number
+	 *
+	 * @param managerNumber Number from {@link #MANAGER_COUNT}
+	 * @param pool Thread pool to run listeners in
+	 */
+	protected ThreadedListenerManager(int managerNumber, ExecutorService pool) {
+		this.managerNumber = managerNumber;
 		this.pool = pool;
 	}
 
 	@Override
+	@Synchronized("listeners")
 	public void addListener(Listener listener) {
-		getListenersReal().add(listener);
+		if (getListenersReal().add(listener))
+			subscriptionIndex = new SubscriptionIndex(getListenersReal());
 	}
 
 	@Override
+	@Synchronized("listeners")
 	public boolean removeListener(Listener listener) {
-		return getListenersReal().remove(listener);
+		if (!getListenersReal().remove(listener))
+			return false;
+		subscriptionIndex = new SubscriptionIndex(getListenersReal());
+		return true;
 	}
 
 	@Override
 	public ImmutableSet<Listener> getListeners() {
-		return ImmutableSet.copyOf(getListenersReal());
+		return getSubscriptionIndex().getListeners();
 	}
 
 	protected Set<Listener> getListenersReal() {
@@ -102,15 +127,32 @@ public class ThreadedListenerManager extends ListenerManager {
 	}
 
 	@Override
-	@Synchronized("listeners")
 	public void dispatchEvent(Event event) {
-		//For each Listener, add a new Runnable
-		for (Listener curListener : getListenersReal())
+		//For each subscribed Listener, add a new Runnable
+		for (Listener curListener : getSubscriptionIndex().getListeners(event.getClass()))
 			submitEvent(pool, curListener, event);
 	}
 
-	protected void submitEvent(ExecutorService pool, final Listener listener, final Event event) {
-		pool.execute(new ManagedFutureTask(listener, event, new Callable<Void>() {
+	@Override
+	public boolean hasSubscribers(Class<? extends Event> eventClass) {
+		return !getSubscriptionIndex().getListeners(eventClass).isEmpty();
+	}
+
+	protected SubscriptionIndex getSubscriptionIndex() {
+		return subscriptionIndex;
+	}
+
+	protected void submitEvent(ExecutorService pool, Listener listener, Event event) {
+		pool.execute(createTask(listener, event));
+	}
+
+	/**
+	 * Create a task that executes the listener, reporting any exceptions to
+	 * the {@link #getExceptionHandler() }. The task is tracked for
+	 * {@link #shutdown(org.pircbotx.PircBotX) } until it is run or cancelled
+	 */
+	protected ManagedFutureTask createTask(final Listener listener, final Event event) {
+		return new ManagedFutureTask(listener, event, new Callable<Void>() {
 			public Void call() {
 				try {
 					if (event.getBot() != null)
@@ -121,7 +163,7 @@ public class ThreadedListenerManager extends ListenerManager {
 				}
 				return null;
 			}
-		}));
+		});
 	}
 
 	/**
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.hooks.managers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.pircbotx.Utils;
+
+/**
+ * ThreadedListenerManager that runs each listener invocation on its own
+ * virtual thread, so listeners that block (eg on
+ * {@link org.pircbotx.User#isVerified() } or
+ * {@link org.pircbotx.hooks.WaitForQueue}) don't tie up a platform thread.
+ * On JVMs without virtual threads this falls back to the same cached thread
+ * pool as {@link ThreadedListenerManager}.
+ *
+ * @see Utils#newVirtualThreadExecutor(java.lang.String)
+ * @author Leon Blakey
+ */
+@Slf4j
+public class VirtualThreadListenerManager extends ThreadedListenerManager {
+	/**
+	 * True if listeners run on virtual threads, false if the JVM doesn't
+	 * support them
+	 */
+	@Getter
+	protected final boolean virtual;
+
+	public VirtualThreadListenerManager() {
+		this(MANAGER_COUNT.getAndIncrement());
+	}
+
+	protected VirtualThreadListenerManager(int managerNumber) {
+		this(managerNumber, Utils.newVirtualThreadExecutor("virtualListener" + managerNumber + "-thread"));
+	}
+
+	protected VirtualThreadListenerManager(int managerNumber, ExecutorService virtualPool) {
+		super(managerNumber, virtualPool != null ? virtualPool : createFallbackPool(managerNumber));
+		this.virtual = virtualPool != null;
+		if (!virtual)
+			log.info("Virtual threads are not supported by this JVM, using a cached thread pool");
+	}
+
+	protected static ExecutorService createFallbackPool(int managerNumber) {
+		BasicThreadFactory factory = new BasicThreadFactory.Builder()
+				.namingPattern("virtualListenerFallback" + managerNumber + "-thread%d")
+				.daemon(true)
+				.build();
+		ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newCachedThreadPool(factory);
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+}
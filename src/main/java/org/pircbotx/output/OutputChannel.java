@@ -17,6 +17,7 @@
  */
 package org.pircbotx.output;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
@@ -63,6 +64,16 @@ public class OutputChannel implements GenericChannelUserOutput {
 		bot.sendIRC().message(channel.getName(), message);
 	}
 
+	/**
+	 * Queue a message to the channel without waiting for it to be sent
+	 *
+	 * @param message The message to send
+	 * @return A future that completes once the message is sent
+	 */
+	public ListenableFuture<Void> messageAsync(String message) {
+		return bot.sendIRC().messageAsync(channel.getName(), message);
+	}
+
 	/**
 	 * Send a message to the given user in the given channel in this format:
 	 * <code>user: message</code>. Very useful for responding directly to a
@@ -86,6 +97,16 @@ public class OutputChannel implements GenericChannelUserOutput {
 		bot.sendIRC().action(channel.getName(), action);
 	}
 
+	/**
+	 * Queue a action to the channel without waiting for it to be sent
+	 *
+	 * @param action The action to send
+	 * @return A future that completes once the action is sent
+	 */
+	public ListenableFuture<Void> actionAsync(String action) {
+		return bot.sendIRC().actionAsync(channel.getName(), action);
+	}
+
 	/**
 	 * Send a notice to the channel.
 	 *
@@ -95,6 +116,16 @@ public class OutputChannel implements GenericChannelUserOutput {
 		bot.sendIRC().notice(channel.getName(), notice);
 	}
 
+	/**
+	 * Queue a notice to the channel without waiting for it to be sent
+	 *
+	 * @param notice The notice to send
+	 * @return A future that completes once the notice is sent
+	 */
+	public ListenableFuture<Void> noticeAsync(String notice) {
+		return bot.sendIRC().noticeAsync(channel.getName(), notice);
+	}
+
 	/**
 	 * Send an invite for this channel to another channel.
 	 *
@@ -17,9 +17,16 @@
  */
 package org.pircbotx.output;
 
+import com.google.common.base.Functions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.List;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.pircbotx.Colors;
 import org.pircbotx.PircBotX;
+import org.pircbotx.ServerInfo;
 import org.pircbotx.hooks.CoreHooks;
 import org.pircbotx.hooks.events.ChannelInfoEvent;
 import org.pircbotx.hooks.events.DisconnectEvent;
@@ -59,6 +66,78 @@ public class OutputIRC {
 		joinChannel(channel + " " + key);
 	}
 
+	/**
+	 * Joins multiple channels with as few lines as possible. Channels and
+	 * their keys are combined into <code>JOIN #a,#b,#c keyA,keyB</code> lines
+	 * that fit in the max line length and the server's TARGMAX limit for JOIN
+	 * if any
+	 *
+	 * @param channels Map of channel names to keys, empty or null if the
+	 * channel has no key
+	 */
+	public void joinChannels(Map<String, String> channels) {
+		for (String curLine : joinLines(channels))
+			bot.sendRaw().rawLine(curLine);
+	}
+
+	/**
+	 * Build the JOIN lines for {@link #joinChannels(java.util.Map) }. Keys
+	 * are matched to channels by position so channels with keys are listed
+	 * first
+	 */
+	protected List<String> joinLines(Map<String, String> channels) {
+		checkNotNull(channels, "Channels cannot be null");
+		List<Map.Entry<String, String>> keyedChannels = Lists.newArrayList();
+		List<Map.Entry<String, String>> unkeyedChannels = Lists.newArrayList();
+		for (Map.Entry<String, String> curEntry : channels.entrySet()) {
+			checkArgument(StringUtils.isNotBlank(curEntry.getKey()), "Channel '%s' is blank", curEntry.getKey());
+			if (StringUtils.isEmpty(curEntry.getValue()))
+				unkeyedChannels.add(curEntry);
+			else
+				keyedChannels.add(curEntry);
+		}
+		keyedChannels.addAll(unkeyedChannels);
+
+		//JOIN has always accepted a list, so only limit it if the server asks
+		Integer maxTargets = bot.getServerInfo().getTargetMax().get("JOIN");
+		if (maxTargets == null)
+			maxTargets = Integer.MAX_VALUE;
+		int maxLineLength = bot.getConfiguration().getMaxLineLength() - 2;
+
+		List<String> lines = Lists.newArrayList();
+		StringBuilder names = new StringBuilder();
+		StringBuilder keys = new StringBuilder();
+		int count = 0;
+		for (Map.Entry<String, String> curEntry : keyedChannels) {
+			String key = StringUtils.defaultString(curEntry.getValue());
+			int lineLength = 5 + names.length() + (keys.length() == 0 ? 0 : 1 + keys.length());
+			//Either a comma or a space before the first key
+			int addedLength = (count == 0 ? 0 : 1) + curEntry.getKey().length() + (key.length() == 0 ? 0 : 1 + key.length());
+			if (count != 0 && (count == maxTargets || lineLength + addedLength > maxLineLength)) {
+				lines.add(joinLine(names, keys));
+				names.setLength(0);
+				keys.setLength(0);
+				count = 0;
+			}
+			if (count != 0)
+				names.append(',');
+			names.append(curEntry.getKey());
+			if (key.length() != 0) {
+				if (keys.length() != 0)
+					keys.append(',');
+				keys.append(key);
+			}
+			count++;
+		}
+		if (count != 0)
+			lines.add(joinLine(names, keys));
+		return lines;
+	}
+
+	protected static String joinLine(CharSequence names, CharSequence keys) {
+		return keys.length() == 0 ? "JOIN " + names : "JOIN " + names + " " + keys;
+	}
+
 	/**
 	 * Quits from the IRC server. Providing we are actually connected to an IRC
 	 * server, a {@link DisconnectEvent} will be dispatched as soon as the IRC
@@ -100,6 +179,18 @@ public class OutputIRC {
 		bot.sendRaw().rawLineSplit("PRIVMSG " + target + " :\u0001", command, "\u0001");
 	}
 
+	/**
+	 * Queue a CTCP command without waiting for it to be sent
+	 *
+	 * @return A future that completes once the command is sent
+	 * @see #ctcpCommand(java.lang.String, java.lang.String)
+	 */
+	public ListenableFuture<Void> ctcpCommandAsync(String target, String command) {
+		checkArgument(StringUtils.isNotBlank(target), "Target '%s' is blank", target, command);
+		checkArgument(StringUtils.isNotBlank(command), "CTCP command '%s' is blank", command, target);
+		return bot.sendRaw().rawLineSplitAsync("PRIVMSG " + target + " :\u0001", command, "\u0001");
+	}
+
 	/**
 	 * Send a CTCP response to the target channel or user. Note that the
 	 * {@link CoreHooks} class already handles responding to the most common
@@ -138,6 +229,20 @@ public class OutputIRC {
 		bot.sendRaw().rawLineSplit("PRIVMSG " + target + " :", message);
 	}
 
+	/**
+	 * Queue a message to a channel or user without waiting for it to be
+	 * sent, so the calling thread isn't blocked by flood control
+	 *
+	 * @param target The name of the channel or user nick to send to.
+	 * @param message The message to send.
+	 * @return A future that completes once the message is sent
+	 * @see #message(java.lang.String, java.lang.String)
+	 */
+	public ListenableFuture<Void> messageAsync(String target, String message) {
+		checkArgument(StringUtils.isNotBlank(target), "Target '%s' is blank", target);
+		return bot.sendRaw().rawLineSplitAsync("PRIVMSG " + target + " :", message);
+	}
+
 	/**
 	 * Sends an action to the channel or to a user.
 	 *
@@ -151,6 +256,17 @@ public class OutputIRC {
 		ctcpCommand(target, "ACTION " + action);
 	}
 
+	/**
+	 * Queue an action without waiting for it to be sent
+	 *
+	 * @return A future that completes once the action is sent
+	 * @see #action(java.lang.String, java.lang.String)
+	 */
+	public ListenableFuture<Void> actionAsync(String target, String action) {
+		checkArgument(StringUtils.isNotBlank(target), "Target '%s' is blank", target);
+		return ctcpCommandAsync(target, "ACTION " + action);
+	}
+
 	/**
 	 * Sends a notice to the channel or to a user.
 	 *
@@ -162,6 +278,105 @@ public class OutputIRC {
 		bot.sendRaw().rawLineSplit("NOTICE " + target + " :", notice);
 	}
 
+	/**
+	 * Queue a notice without waiting for it to be sent
+	 *
+	 * @return A future that completes once the notice is sent
+	 * @see #notice(java.lang.String, java.lang.String)
+	 */
+	public ListenableFuture<Void> noticeAsync(String target, String notice) {
+		checkArgument(StringUtils.isNotBlank(target), "Target '%s' is blank", target);
+		return bot.sendRaw().rawLineSplitAsync("NOTICE " + target + " :", notice);
+	}
+
+	/**
+	 * Sends the same message to multiple channels or users. Targets are
+	 * combined into comma separated lists as large as the server's TARGMAX or
+	 * MAXTARGETS and the max line length allow, so fewer lines go through
+	 * flood control
+	 *
+	 * @param targets The names of the channels or user nicks to send to
+	 * @param message The message to send
+	 * @see ServerInfo#getMaxTargets(java.lang.String)
+	 */
+	public void broadcast(Iterable<String> targets, String message) {
+		bot.sendRaw().waitForSend(broadcastAsync(targets, message));
+	}
+
+	/**
+	 * Queue a message to multiple targets without waiting for it to be sent
+	 *
+	 * @return A future that completes once the message is sent to all targets
+	 * @see #broadcast(java.lang.Iterable, java.lang.String)
+	 */
+	public ListenableFuture<Void> broadcastAsync(Iterable<String> targets, String message) {
+		return broadcastAsync("PRIVMSG", targets, message);
+	}
+
+	/**
+	 * Sends the same notice to multiple channels or users, combining targets
+	 * like {@link #broadcast(java.lang.Iterable, java.lang.String) }
+	 *
+	 * @param targets The names of the channels or user nicks to send to
+	 * @param notice The notice to send
+	 */
+	public void broadcastNotice(Iterable<String> targets, String notice) {
+		bot.sendRaw().waitForSend(broadcastNoticeAsync(targets, notice));
+	}
+
+	/**
+	 * Queue a notice to multiple targets without waiting for it to be sent
+	 *
+	 * @return A future that completes once the notice is sent to all targets
+	 * @see #broadcastNotice(java.lang.Iterable, java.lang.String)
+	 */
+	public ListenableFuture<Void> broadcastNoticeAsync(Iterable<String> targets, String notice) {
+		return broadcastAsync("NOTICE", targets, notice);
+	}
+
+	protected ListenableFuture<Void> broadcastAsync(String command, Iterable<String> targets, String message) {
+		checkNotNull(targets, "Targets cannot be null");
+		checkNotNull(message, "Message cannot be null");
+		List<ListenableFuture<Void>> futures = Lists.newArrayList();
+		for (String curTargets : groupTargets(command, targets, message))
+			futures.add(bot.sendRaw().rawLineSplitAsync(command + " " + curTargets + " :", message));
+		return Futures.transform(Futures.allAsList(futures), Functions.<Void>constant(null));
+	}
+
+	/**
+	 * Combine targets into comma separated lists that don't exceed the
+	 * server's target limit for the command. A list is also ended early if
+	 * adding another target would force the message to be split
+	 *
+	 * @return The target lists in order
+	 */
+	protected List<String> groupTargets(String command, Iterable<String> targets, String message) {
+		int maxTargets = bot.getServerInfo().getMaxTargets(command);
+		//Length of everything but the targets
+		int lineLength = command.length() + 3 + message.length();
+		int maxLineLength = bot.getConfiguration().getMaxLineLength() - 2;
+
+		List<String> groups = Lists.newArrayList();
+		StringBuilder group = new StringBuilder();
+		int groupSize = 0;
+		for (String curTarget : targets) {
+			checkArgument(StringUtils.isNotBlank(curTarget), "Target '%s' is blank", curTarget);
+			if (groupSize != 0 && (groupSize == maxTargets
+					|| lineLength + group.length() + 1 + curTarget.length() >= maxLineLength)) {
+				groups.add(group.toString());
+				group.setLength(0);
+				groupSize = 0;
+			}
+			if (groupSize != 0)
+				group.append(',');
+			group.append(curTarget);
+			groupSize++;
+		}
+		if (groupSize != 0)
+			groups.add(group.toString());
+		return groups;
+	}
+
 	/**
 	 * Attempt to change the current nick (nickname) of the bot when it is
 	 * connected to an IRC server. After confirmation of a successful nick
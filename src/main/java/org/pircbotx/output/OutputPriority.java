@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.output;
+
+/**
+ * Priority class of a line sent through {@link OutputRaw}. Lines are sent in
+ * priority order, then in the order they were queued. All priorities share
+ * the same message delay
+ *
+ * @author Leon Blakey
+ */
+public enum OutputPriority {
+	/**
+	 * Lines the connection depends on like PONG, NICK, JOIN, and QUIT. These
+	 * are sent before anything else so the bot isn't disconnected because of a
+	 * large amount of queued messages
+	 */
+	CRITICAL,
+	/**
+	 * Default for everything else, eg replies to users
+	 */
+	INTERACTIVE,
+	/**
+	 * Large amounts of messages that can wait, eg announcements
+	 */
+	BULK;
+}
@@ -18,14 +18,27 @@
 package org.pircbotx.output;
 
 import static com.google.common.base.Preconditions.*;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.text.WordUtils;
 import org.pircbotx.PircBotX;
 import org.pircbotx.Utils;
@@ -33,90 +46,213 @@ import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 
 /**
- * Send raw lines to the server with locking and message delay support.
+ * Send raw lines to the server with priority queueing and flood control.
+ * <p>
+ * Lines are queued in a lane for their {@link OutputPriority} and sent by a
+ * single writer task, which always sends the oldest line of the highest
+ * priority lane next. Flood control applies to every line regardless of
+ * priority, so protocol-critical lines preempt bulk messages without
+ * flooding the server. How long to wait is decided by the bot's
+ * {@link RateLimiter}. Sending methods block until the line is sent, the
+ * async variants return a future instead.
  * <p>
  * @author Leon Blakey
  */
-@RequiredArgsConstructor
 @Slf4j
 public class OutputRaw {
 	public static final Marker OUTPUT_MARKER = MarkerFactory.getMarker("pircbotx.output");
+	/**
+	 * Commands sent with {@link OutputPriority#CRITICAL} by
+	 * {@link #rawLine(java.lang.String) }
+	 */
+	public static final ImmutableSet<String> CRITICAL_COMMANDS = ImmutableSet.of("PONG", "PING", "QUIT", "NICK",
+			"JOIN", "PART", "PASS", "USER", "CAP", "AUTHENTICATE", "WEBIRC", "STARTTLS");
+	/**
+	 * Shared pool that runs the writer task of each bot while it has queued
+	 * lines
+	 */
+	protected static final ExecutorService WRITER_POOL = Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
+			.namingPattern("outputWriter-thread%d")
+			.daemon(true)
+			.build());
 	@NonNull
 	protected final PircBotX bot;
 	protected final ReentrantLock writeLock = new ReentrantLock(true);
 	protected final Condition writeNowCondition = writeLock.newCondition();
-	protected final long delayNanos;
-	protected long lastSentLine = 0;
+	protected final RateLimiter rateLimiter;
+	/**
+	 * Queued lines, indexed by {@link OutputPriority#ordinal() }
+	 */
+	protected final Queue<QueuedLine>[] lanes;
+	protected final Writer writer = new Writer();
+	protected boolean writerRunning = false;
+	protected volatile Thread writerThread;
+	/**
+	 * Lines sent by the writer that haven't been flushed yet
+	 */
+	protected final List<QueuedLine> unflushedLines = Lists.newArrayList();
 
-	public OutputRaw(PircBotX bot) {
+	@SuppressWarnings("unchecked")
+	public OutputRaw(@NonNull PircBotX bot) {
 		this.bot = bot;
-		this.delayNanos = bot.getConfiguration().getMessageDelay() * 1000000;
+		this.rateLimiter = bot.getConfiguration().getBotFactory().createRateLimiter(bot);
+		this.lanes = new Queue[OutputPriority.values().length];
+		for (int i = 0; i < lanes.length; i++)
+			lanes[i] = new ArrayDeque<QueuedLine>();
 	}
 
 	/**
-	 * Sends a raw line through the outgoing message queue.
+	 * Sends a raw line through the outgoing message queue. Commands in
+	 * {@link #CRITICAL_COMMANDS} are sent with
+	 * {@link OutputPriority#CRITICAL}, everything else with
+	 * {@link OutputPriority#INTERACTIVE}
 	 *
 	 * @param line The raw line to send to the IRC server.
 	 */
 	public void rawLine(String line) {
+		rawLine(line, getPriority(line));
+	}
+
+	/**
+	 * Sends a raw line through the outgoing message queue with the specified
+	 * priority, blocking until its sent
+	 *
+	 * @param line The raw line to send to the IRC server
+	 * @param priority The lane to queue the line in
+	 */
+	public void rawLine(String line, OutputPriority priority) {
+		waitForSend(rawLineAsync(line, priority));
+	}
+
+	/**
+	 * Queue a raw line without waiting for it to be sent. Commands in
+	 * {@link #CRITICAL_COMMANDS} are sent with
+	 * {@link OutputPriority#CRITICAL}, everything else with
+	 * {@link OutputPriority#INTERACTIVE}
+	 *
+	 * @param line The raw line to send to the IRC server
+	 * @return A future that completes once the line is written to the
+	 * connection or fails with the exception that prevented it
+	 * @see #rawLineAsync(java.lang.String, org.pircbotx.output.OutputPriority)
+	 */
+	public ListenableFuture<Void> rawLineAsync(String line) {
+		return rawLineAsync(line, getPriority(line));
+	}
+
+	/**
+	 * Queue a raw line with the specified priority without waiting for it to
+	 * be sent, so the calling thread isn't blocked by flood control
+	 *
+	 * @param line The raw line to send to the IRC server
+	 * @param priority The lane to queue the line in
+	 * @return A future that completes once the line is written to the
+	 * connection or fails with the exception that prevented it
+	 */
+	public ListenableFuture<Void> rawLineAsync(String line, @NonNull OutputPriority priority) {
 		checkArgument(StringUtils.isNotBlank(line), "Cannot send empty line to server: '%s'", line);
 		checkArgument(bot.isConnected(), "Not connected to server");
+		if (Thread.currentThread() == writerThread) {
+			//Sent from an OutputEvent listener running on the writer, which can't
+			//wait for itself. Flush now so the returned future is already done
+			QueuedLine queuedLine = new QueuedLine(line);
+			try {
+				sendLine(line);
+				unflushedLines.add(queuedLine);
+				flushLines();
+			} catch (IOException e) {
+				queuedLine.future.setException(e);
+			}
+			return queuedLine.getFuture();
+		}
+
+		QueuedLine queuedLine = new QueuedLine(line);
 		writeLock.lock();
 		try {
-			//Block until we can send, taking into account a changing lastSentLine
-			long curNanos = System.nanoTime();
-			while (lastSentLine + delayNanos > curNanos) {
-				writeNowCondition.await(lastSentLine + delayNanos - curNanos, TimeUnit.NANOSECONDS);
-				curNanos = System.nanoTime();
+			lanes[priority.ordinal()].add(queuedLine);
+			if (!writerRunning) {
+				writerRunning = true;
+				WRITER_POOL.execute(writer);
 			}
-			log.info(OUTPUT_MARKER, line);
-			Utils.sendRawLineToServer(bot, line);
-			lastSentLine = System.nanoTime();
-		} catch (IOException e) {
-			throw new RuntimeException("IO exception when sending line to server, is the network still up? " + exceptionDebug(), e);
-		} catch (InterruptedException e) {
-			throw new RuntimeException("Couldn't pause thread for message delay. " + exceptionDebug(), e);
-		} catch (Exception e) {
-			throw new RuntimeException("Could not send line to server. " + exceptionDebug(), e);
 		} finally {
 			writeLock.unlock();
 		}
+		return queuedLine.getFuture();
+	}
+
+	/**
+	 * Block until the future of an async send completes
+	 */
+	protected void waitForSend(ListenableFuture<Void> future) {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Couldn't pause thread for message delay. " + exceptionDebug(), e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw new RuntimeException("IO exception when sending line to server, is the network still up? " + exceptionDebug(), e.getCause());
+			throw new RuntimeException("Could not send line to server. " + exceptionDebug(), e.getCause());
+		}
 	}
 
 	/**
-	 * Sends a raw line to the IRC server as soon as possible without resetting
-	 * the message delay for messages waiting to send
+	 * Sends a raw line to the IRC server as soon as possible with
+	 * {@link OutputPriority#CRITICAL}, ahead of any non-critical lines waiting
+	 * to send. The {@link RateLimiter} still applies.
 	 *
 	 * @param line The raw line to send to the IRC server.
-	 * @see #rawLineNow(java.lang.String, boolean)
 	 */
 	public void rawLineNow(String line) {
-		rawLineNow(line, false);
+		checkNotNull(line, "Line cannot be null");
+		rawLine(line, OutputPriority.CRITICAL);
 	}
 
 	/**
-	 * Sends a raw line to the IRC server as soon as possible
-	 * <p>
-	 * @param line The raw line to send to the IRC server
-	 * @param resetDelay If true, pending messages will reset their delay.
+	 * @deprecated The message delay is now handled by the {@link RateLimiter}
+	 * which always applies, so resetDelay does nothing. Use
+	 * {@link #rawLineNow(java.lang.String) }
 	 */
+	@Deprecated
 	public void rawLineNow(String line, boolean resetDelay) {
-		checkNotNull(line, "Line cannot be null");
-		checkArgument(bot.isConnected(), "Not connected to server");
-		writeLock.lock();
+		rawLineNow(line);
+	}
+
+	/**
+	 * Get the priority of a line sent with
+	 * {@link #rawLine(java.lang.String) }
+	 */
+	protected OutputPriority getPriority(String line) {
+		int commandEnd = line.indexOf(' ');
+		String command = (commandEnd == -1) ? line : line.substring(0, commandEnd);
+		return CRITICAL_COMMANDS.contains(command.toUpperCase(Locale.ENGLISH)) ? OutputPriority.CRITICAL : OutputPriority.INTERACTIVE;
+	}
+
+	/**
+	 * Send the line without flushing and record it for flood control. Only
+	 * called by the writer
+	 */
+	protected void sendLine(String line) throws IOException {
+		log.info(OUTPUT_MARKER, line);
 		try {
-			log.info(OUTPUT_MARKER, line);
-			Utils.sendRawLineToServer(bot, line);
-			lastSentLine = System.nanoTime();
-			if (resetDelay)
-				//Reset the 
-				writeNowCondition.signalAll();
-		} catch (IOException e) {
-			throw new RuntimeException("IO exception when sending line to server, is the network still up? " + exceptionDebug(), e);
-		} catch (Exception e) {
-			throw new RuntimeException("Could not send line to server. " + exceptionDebug(), e);
+			Utils.sendRawLineToServer(bot, line, false);
 		} finally {
-			writeLock.unlock();
+			rateLimiter.lineSent(line, System.nanoTime());
+		}
+	}
+
+	/**
+	 * Flush the lines sent since the last flush and complete their futures.
+	 * Only called by the writer
+	 */
+	protected void flushLines() {
+		try {
+			Utils.flushRawLinesToServer(bot);
+			for (QueuedLine curLine : unflushedLines)
+				curLine.future.set(null);
+		} catch (Throwable e) {
+			for (QueuedLine curLine : unflushedLines)
+				curLine.future.setException(e);
+		} finally {
+			unflushedLines.clear();
 		}
 	}
 
@@ -125,6 +261,38 @@ public class OutputRaw {
 	}
 
 	public void rawLineSplit(String prefix, String message, String suffix) {
+		for (String curLine : splitLine(prefix, message, suffix))
+			rawLine(curLine);
+	}
+
+	public ListenableFuture<Void> rawLineSplitAsync(String prefix, String message) {
+		return rawLineSplitAsync(prefix, message, "");
+	}
+
+	/**
+	 * Queue a message that might be split into multiple lines without waiting
+	 * for it to be sent
+	 *
+	 * @return A future that completes once all lines are written or fails
+	 * if any line couldn't be sent
+	 * @see #rawLineAsync(java.lang.String)
+	 */
+	public ListenableFuture<Void> rawLineSplitAsync(String prefix, String message, String suffix) {
+		List<String> lines = splitLine(prefix, message, suffix);
+		if (lines.size() == 1)
+			return rawLineAsync(lines.get(0));
+		List<ListenableFuture<Void>> futures = Lists.newArrayListWithCapacity(lines.size());
+		for (String curLine : lines)
+			futures.add(rawLineAsync(curLine));
+		return Futures.transform(Futures.allAsList(futures), Functions.<Void>constant(null));
+	}
+
+	/**
+	 * Split the message into lines that fit in
+	 * {@link org.pircbotx.Configuration#getMaxLineLength() } if
+	 * {@link org.pircbotx.Configuration#isAutoSplitMessage() }
+	 */
+	protected List<String> splitLine(String prefix, String message, String suffix) {
 		checkNotNull(prefix, "Prefix cannot be null");
 		checkNotNull(message, "Message cannot be null");
 		checkNotNull(suffix, "Suffix cannot be null");
@@ -132,18 +300,17 @@ public class OutputRaw {
 		//Find if final line is going to be shorter than the max line length
 		String finalMessage = prefix + message + suffix;
 		int realMaxLineLength = bot.getConfiguration().getMaxLineLength() - 2;
-		if (!bot.getConfiguration().isAutoSplitMessage() || finalMessage.length() < realMaxLineLength) {
+		if (!bot.getConfiguration().isAutoSplitMessage() || finalMessage.length() < realMaxLineLength)
 			//Length is good (or auto split message is false), just go ahead and send it
-			rawLine(finalMessage);
-			return;
-		}
+			return Lists.newArrayList(finalMessage);
 
 		//Too long, split it up
 		int maxMessageLength = realMaxLineLength - (prefix + suffix).length();
 		//v3 word split, just use Apache commons lang
-		for (String curPart : StringUtils.split(WordUtils.wrap(message, maxMessageLength, "\r\n", true), "\r\n")) {
-			rawLine(prefix + curPart + suffix);
-		}
+		List<String> lines = Lists.newArrayList();
+		for (String curPart : StringUtils.split(WordUtils.wrap(message, maxMessageLength, "\r\n", true), "\r\n"))
+			lines.add(prefix + curPart + suffix);
+		return lines;
 	}
 
 	/**
@@ -156,10 +323,120 @@ public class OutputRaw {
 	 * @return The number of lines in the outgoing message Queue.
 	 */
 	public int getOutgoingQueueSize() {
-		return writeLock.getHoldCount();
+		writeLock.lock();
+		try {
+			int size = 0;
+			for (Queue<QueuedLine> curLane : lanes)
+				size += curLane.size();
+			return size;
+		} finally {
+			writeLock.unlock();
+		}
 	}
 
 	protected String exceptionDebug() {
 		return "Connected: " + bot.isConnected() + " | Bot State: " + bot.getState();
 	}
+
+	/**
+	 * Get the next line to send, waiting for the {@link RateLimiter}
+	 *
+	 * @param mayStop If false, return null instead of waiting or stopping the
+	 * writer so unflushed lines can be flushed first
+	 * @return The line or null if the writer should stop or flush
+	 */
+	protected QueuedLine nextLine(boolean mayStop) throws InterruptedException {
+		writeLock.lock();
+		try {
+			while (true) {
+				QueuedLine next = null;
+				for (Queue<QueuedLine> curLane : lanes)
+					if ((next = curLane.peek()) != null)
+						break;
+				if (next == null) {
+					if (!mayStop)
+						return null;
+					//Cleared under the lock so a new writer can't be started first
+					writerRunning = false;
+					writerThread = null;
+					return null;
+				}
+
+				long waitNanos = rateLimiter.getDelayNanos(next.line, System.nanoTime());
+				if (waitNanos <= 0) {
+					for (Queue<QueuedLine> curLane : lanes)
+						if (curLane.poll() != null)
+							break;
+					return next;
+				}
+				if (!mayStop)
+					return null;
+				//A higher priority line might be queued while waiting, so check again
+				writeNowCondition.await(waitNanos, TimeUnit.NANOSECONDS);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	protected static class QueuedLine {
+		protected final String line;
+		protected final SettableFuture<Void> future = SettableFuture.create();
+
+		public QueuedLine(String line) {
+			this.line = line;
+		}
+
+		public SettableFuture<Void> getFuture() {
+			return future;
+		}
+	}
+
+	/**
+	 * Sends queued lines until all lanes are empty. Lines that can be sent
+	 * right away are written together and flushed once there are no more
+	 */
+	protected class Writer implements Runnable {
+		public void run() {
+			writerThread = Thread.currentThread();
+			Utils.addBotToMDC(bot);
+			try {
+				while (true) {
+					QueuedLine next = nextLine(unflushedLines.isEmpty());
+					if (next == null) {
+						if (unflushedLines.isEmpty())
+							return;
+						flushLines();
+						continue;
+					}
+					try {
+						sendLine(next.line);
+						unflushedLines.add(next);
+					} catch (Throwable e) {
+						next.future.setException(e);
+					}
+				}
+			} catch (InterruptedException e) {
+				for (QueuedLine curLine : unflushedLines)
+					curLine.future.setException(e);
+				unflushedLines.clear();
+				failQueuedLines(e);
+			}
+		}
+	}
+
+	protected void failQueuedLines(Exception e) {
+		writeLock.lock();
+		try {
+			for (Queue<QueuedLine> curLane : lanes) {
+				QueuedLine curLine;
+				while ((curLine = curLane.poll()) != null)
+					curLine.future.setException(e);
+			}
+			writerRunning = false;
+			writerThread = null;
+		} finally {
+			writeLock.unlock();
+		}
+	}
 }
@@ -17,6 +17,7 @@
  */
 package org.pircbotx.output;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import java.io.File;
 import java.io.IOException;
 import lombok.NonNull;
@@ -71,6 +72,16 @@ public class OutputUser implements GenericChannelUserOutput {
 		bot.sendIRC().notice(serverUser.getNick(), notice);
 	}
 
+	/**
+	 * Queue a notice to the user without waiting for it to be sent
+	 *
+	 * @param notice The notice to send
+	 * @return A future that completes once the notice is sent
+	 */
+	public ListenableFuture<Void> noticeAsync(String notice) {
+		return bot.sendIRC().noticeAsync(serverUser.getNick(), notice);
+	}
+
 	/**
 	 * Send an action to the serverUser. } for more information
 	 *
@@ -80,6 +91,16 @@ public class OutputUser implements GenericChannelUserOutput {
 		bot.sendIRC().action(serverUser.getNick(), action);
 	}
 
+	/**
+	 * Queue a action to the user without waiting for it to be sent
+	 *
+	 * @param action The action to send
+	 * @return A future that completes once the action is sent
+	 */
+	public ListenableFuture<Void> actionAsync(String action) {
+		return bot.sendIRC().actionAsync(serverUser.getNick(), action);
+	}
+
 	/**
 	 * Send a private message to a serverUser. } for more information
 	 *
@@ -89,6 +110,16 @@ public class OutputUser implements GenericChannelUserOutput {
 		bot.sendIRC().message(serverUser.getNick(), message);
 	}
 
+	/**
+	 * Queue a message to the user without waiting for it to be sent
+	 *
+	 * @param message The message to send
+	 * @return A future that completes once the message is sent
+	 */
+	public ListenableFuture<Void> messageAsync(String message) {
+		return bot.sendIRC().messageAsync(serverUser.getNick(), message);
+	}
+
 	/**
 	 * Send a CTCP command to the serverUser. } for more information
 	 *
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.output;
+
+/**
+ * Flood control for {@link OutputRaw}. Each bot has its own instance,
+ * created by
+ * {@link org.pircbotx.Configuration.BotFactory#createRateLimiter(org.pircbotx.PircBotX) }.
+ * Methods are only called by the output writer so implementations don't need
+ * to be thread safe
+ *
+ * @see TokenBucketRateLimiter
+ * @author Leon Blakey
+ */
+public interface RateLimiter {
+	/**
+	 * Get how long the line must wait before it can be sent
+	 *
+	 * @param line The next line to send
+	 * @param nowNanos The current {@link System#nanoTime() }
+	 * @return Nanoseconds to wait, 0 or less if the line can be sent now
+	 */
+	public long getDelayNanos(String line, long nowNanos);
+
+	/**
+	 * Record that a line was sent
+	 *
+	 * @param line The sent line
+	 * @param nowNanos The current {@link System#nanoTime() }
+	 */
+	public void lineSent(String line, long nowNanos);
+}
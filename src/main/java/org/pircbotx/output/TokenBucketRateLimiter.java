@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.output;
+
+import static com.google.common.base.Preconditions.*;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.ToString;
+import org.pircbotx.Configuration;
+import org.pircbotx.LineFramer;
+
+/**
+ * Token bucket flood control. The bucket holds {@code burstSize} lines worth
+ * of time and refills one line every {@code refillNanos}. Each line costs a
+ * line plus an optional penalty per encoded byte (including the line ending),
+ * so short lines can be sent in a burst after the bot was idle while long
+ * lines drain the bucket faster, which is how most ircd flood protection
+ * works.
+ * <p>
+ * This is equivalent to the message timer in RFC 1459 section 8.10: a line
+ * is sent once the timer is no more than the burst ahead of the current time,
+ * then the timer advances by the line's cost
+ *
+ * @author Leon Blakey
+ */
+@ToString(exclude = "timer")
+public class TokenBucketRateLimiter implements RateLimiter {
+	@Getter
+	protected final int burstSize;
+	@Getter
+	protected final long refillNanos;
+	@Getter
+	protected final long byteCostNanos;
+	/**
+	 * Encoding lines are sent with, used to charge per byte
+	 */
+	@Getter
+	protected final Charset encoding;
+	protected final boolean asciiCompatible;
+	protected final long burstNanos;
+	/**
+	 * When the bucket is full again, never before the current time
+	 */
+	protected long timer = Long.MIN_VALUE;
+
+	/**
+	 * Create a token bucket for UTF-8 lines
+	 *
+	 * @see #TokenBucketRateLimiter(int, long, long, java.nio.charset.Charset)
+	 */
+	public TokenBucketRateLimiter(int burstSize, long refillNanos, long byteCostNanos) {
+		this(burstSize, refillNanos, byteCostNanos, Charset.forName("UTF-8"));
+	}
+
+	/**
+	 * Create a token bucket
+	 *
+	 * @param burstSize Number of lines that can be sent without waiting
+	 * @param refillNanos Nanoseconds to refill one line
+	 * @param byteCostNanos Additional nanoseconds each byte of the encoded line
+	 * costs, 0 to ignore line length
+	 * @param encoding The encoding lines are sent with
+	 */
+	public TokenBucketRateLimiter(int burstSize, long refillNanos, long byteCostNanos, Charset encoding) {
+		checkArgument(burstSize > 0, "Burst size must be positive");
+		checkArgument(refillNanos >= 0, "Refill time cannot be negative");
+		checkArgument(byteCostNanos >= 0, "Byte cost cannot be negative");
+		checkNotNull(encoding, "Encoding cannot be null");
+		this.burstSize = burstSize;
+		this.refillNanos = refillNanos;
+		this.byteCostNanos = byteCostNanos;
+		this.encoding = encoding;
+		this.asciiCompatible = LineFramer.isAsciiCompatible(encoding);
+		this.burstNanos = burstSize * refillNanos;
+	}
+
+	/**
+	 * Send one line every delay, the same as
+	 * {@link Configuration#getMessageDelay() } always did
+	 *
+	 * @param delayMillis Milliseconds between lines
+	 */
+	public static TokenBucketRateLimiter fixedDelay(long delayMillis) {
+		return new TokenBucketRateLimiter(1, TimeUnit.MILLISECONDS.toNanos(delayMillis), 0);
+	}
+
+	/**
+	 * RFC 1459 section 8.10: Each line costs 2 seconds and the client may be
+	 * up to 10 seconds ahead, so 5 lines can be sent at once
+	 */
+	public static TokenBucketRateLimiter rfc1459() {
+		return new TokenBucketRateLimiter(5, TimeUnit.SECONDS.toNanos(2), 0);
+	}
+
+	/**
+	 * ircu and derivatives (eg Undernet, QuakeNet): Like RFC 1459 but each
+	 * line also costs 1 second per 120 bytes of UTF-8
+	 */
+	public static TokenBucketRateLimiter ircu() {
+		return ircu(Charset.forName("UTF-8"));
+	}
+
+	/**
+	 * {@link #ircu() } for lines sent in the given encoding
+	 */
+	public static TokenBucketRateLimiter ircu(Charset encoding) {
+		return new TokenBucketRateLimiter(5, TimeUnit.SECONDS.toNanos(2), TimeUnit.SECONDS.toNanos(1) / 120, encoding);
+	}
+
+	/**
+	 * Get the cost of the line, never more than the whole bucket so the line
+	 * can always be sent eventually
+	 */
+	protected long getCost(String line) {
+		long cost = refillNanos;
+		if (byteCostNanos != 0)
+			cost += (getEncodedLength(line) + 2) * byteCostNanos;
+		return Math.min(cost, Math.max(burstNanos, refillNanos));
+	}
+
+	/**
+	 * Get the number of bytes the line is sent as, without encoding pure
+	 * ASCII lines
+	 */
+	protected int getEncodedLength(String line) {
+		if (asciiCompatible) {
+			boolean ascii = true;
+			for (int i = 0, length = line.length(); i < length; i++)
+				if (line.charAt(i) >= 0x80) {
+					ascii = false;
+					break;
+				}
+			if (ascii)
+				return line.length();
+		}
+		return line.getBytes(encoding).length;
+	}
+
+	protected long getTimer(long nowNanos) {
+		return (timer == Long.MIN_VALUE || timer - nowNanos < 0) ? nowNanos : timer;
+	}
+
+	public long getDelayNanos(String line, long nowNanos) {
+		return getTimer(nowNanos) + getCost(line) - burstNanos - nowNanos;
+	}
+
+	public void lineSent(String line, long nowNanos) {
+		timer = getTimer(nowNanos) + getCost(line);
+	}
+
+	/**
+	 * Flood control presets for {@link Configuration#getRateLimitPreset() }
+	 */
+	public static enum Preset {
+		/**
+		 * {@link TokenBucketRateLimiter#fixedDelay(long) } with
+		 * {@link Configuration#getMessageDelay() }
+		 */
+		FIXED_DELAY,
+		/**
+		 * {@link TokenBucketRateLimiter#rfc1459() }
+		 */
+		RFC1459,
+		/**
+		 * {@link TokenBucketRateLimiter#ircu() }
+		 */
+		IRCU;
+
+		public TokenBucketRateLimiter create(Configuration configuration) {
+			switch (this) {
+				case RFC1459:
+					return rfc1459();
+				case IRCU:
+					return ircu(configuration.getEncoding());
+				default:
+					return fixedDelay(configuration.getMessageDelay());
+			}
+		}
+	}
+}
@@ -67,6 +67,11 @@ public class ChannelSnapshot extends Channel {
 		return (UserChannelDao<User, Channel>) (Object) dao;
 	}
 
+	@Override
+	protected void beforeChange() {
+		//Nothing shares this snapshot
+	}
+
 	@Override
 	protected void parseMode(String rawMode) {
 		SnapshotUtils.fail();
@@ -17,27 +17,305 @@
  */
 package org.pircbotx.snapshot;
 
-import com.google.common.collect.ImmutableMap;
-import java.util.EnumMap;
+import static com.google.common.base.Preconditions.*;
+import com.google.common.collect.ImmutableSortedSet;
+import java.util.Collection;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.commons.lang3.StringUtils;
+import org.pircbotx.Channel;
+import org.pircbotx.PersistentHashMap;
 import org.pircbotx.PircBotX;
+import org.pircbotx.User;
 import org.pircbotx.UserChannelDao;
-import org.pircbotx.UserChannelMap;
 import org.pircbotx.UserHostmask;
 import org.pircbotx.UserLevel;
+import org.pircbotx.exception.DaoException;
 
 /**
+ * A read only view of a {@link UserChannelDao} at the time it was created. The
+ * maps of the dao are shared instead of copied, users and channels are only
+ * copied when they are first requested from the snapshot or right before the
+ * live object is modified. Only copying needs the lock of the live dao, copies
+ * and the sets returned by the getters are kept and reused without locking
  *
  * @author Leon Blakey
  */
 public class UserChannelDaoSnapshot extends UserChannelDao<UserSnapshot, ChannelSnapshot> {
+	protected static final UserLevel[] LEVELS = UserLevel.values();
+	/**
+	 * Index of all users or channels in the cached sets, after the
+	 * {@link UserLevel#ordinal() } indexes
+	 */
+	protected static final int ALL_SET = LEVELS.length;
+	/**
+	 * Index of normal users or channels in the cached sets
+	 */
+	protected static final int NORMAL_SET = LEVELS.length + 1;
+	protected final Object liveLock;
+	/**
+	 * The snapshot version of the live dao this was created at
+	 */
+	@Getter
+	protected final int version;
+	protected final UserChannelMapSnapshot liveMap;
+	protected final PersistentHashMap<String, User> liveUserNickMap;
+	protected final PersistentHashMap<String, Channel> liveChannelNameMap;
+	protected final PersistentHashMap<String, User> livePrivateUsers;
+	/**
+	 * Copies of live users and channels. Users are equal by identity and
+	 * channel names are unique within a snapshot, so these can be hash maps
+	 * readable without the lock
+	 */
+	protected final ConcurrentMap<User, UserSnapshot> userSnapshots = new ConcurrentHashMap<User, UserSnapshot>();
+	protected final ConcurrentMap<Channel, ChannelSnapshot> channelSnapshots = new ConcurrentHashMap<Channel, ChannelSnapshot>();
+	/**
+	 * Sets returned by the getters, which never change since neither does the
+	 * snapshot. Indexed by {@link UserLevel#ordinal() }, {@link #ALL_SET} and
+	 * {@link #NORMAL_SET}. Racing threads at worst build the same set twice
+	 */
+	protected final ConcurrentMap<Channel, AtomicReferenceArray<ImmutableSortedSet<UserSnapshot>>> channelUserSets = new ConcurrentHashMap<Channel, AtomicReferenceArray<ImmutableSortedSet<UserSnapshot>>>();
+	protected final ConcurrentMap<User, AtomicReferenceArray<ImmutableSortedSet<ChannelSnapshot>>> userChannelSets = new ConcurrentHashMap<User, AtomicReferenceArray<ImmutableSortedSet<ChannelSnapshot>>>();
+	protected volatile ImmutableSortedSet<UserSnapshot> allUsers;
+	protected volatile ImmutableSortedSet<ChannelSnapshot> allChannels;
 	protected final String botNick;
 
-	public UserChannelDaoSnapshot(PircBotX bot, Locale locale, UserChannelMapSnapshot mainMap, EnumMap<UserLevel, UserChannelMap<UserSnapshot, ChannelSnapshot>> levelsMap, ImmutableMap<String, UserSnapshot> userNickMap, ImmutableMap<String, ChannelSnapshot> channelNameMap, ImmutableMap<String, UserSnapshot> privateUsers) {
-		super(bot, null, locale, mainMap, levelsMap, userNickMap, channelNameMap, privateUsers);
+	public UserChannelDaoSnapshot(PircBotX bot, Locale locale, Object liveLock, int version, UserChannelMapSnapshot liveMap,
+			PersistentHashMap<String, User> liveUserNickMap, PersistentHashMap<String, Channel> liveChannelNameMap, PersistentHashMap<String, User> livePrivateUsers) {
+		super(bot, null, locale, null);
+		this.liveLock = liveLock;
+		this.version = version;
+		this.liveMap = liveMap;
+		this.liveUserNickMap = liveUserNickMap;
+		this.liveChannelNameMap = liveChannelNameMap;
+		this.livePrivateUsers = livePrivateUsers;
 		botNick = bot.getNick();
 	}
 
+	/**
+	 * Store a copy of the user before its modified, internally called by the
+	 * dao this snapshot was created from
+	 *
+	 * @param user A live user
+	 */
+	public void captureUser(@NonNull User user) {
+		synchronized (liveLock) {
+			if (!userSnapshots.containsKey(user))
+				addSnapshot(user);
+		}
+	}
+
+	/**
+	 * Store a copy of the channel before its modified, internally called by the
+	 * dao this snapshot was created from
+	 *
+	 * @param channel A live channel
+	 */
+	public void captureChannel(@NonNull Channel channel) {
+		synchronized (liveLock) {
+			if (!channelSnapshots.containsKey(channel))
+				addSnapshot(channel);
+		}
+	}
+
+	protected UserSnapshot addSnapshot(User user) {
+		UserSnapshot userSnapshot = user.createSnapshot();
+		userSnapshot.setDao(this);
+		userSnapshots.put(user, userSnapshot);
+		return userSnapshot;
+	}
+
+	protected ChannelSnapshot addSnapshot(Channel channel) {
+		ChannelSnapshot channelSnapshot = channel.createSnapshot();
+		channelSnapshot.setDao(this);
+		channelSnapshots.put(channel, channelSnapshot);
+		return channelSnapshot;
+	}
+
+	protected UserSnapshot snapshot(User user) {
+		//A copy never changes once made, only making one needs the lock
+		UserSnapshot userSnapshot = userSnapshots.get(user);
+		if (userSnapshot != null)
+			return userSnapshot;
+		synchronized (liveLock) {
+			userSnapshot = userSnapshots.get(user);
+			return userSnapshot != null ? userSnapshot : addSnapshot(user);
+		}
+	}
+
+	protected ChannelSnapshot snapshot(Channel channel) {
+		ChannelSnapshot channelSnapshot = channelSnapshots.get(channel);
+		if (channelSnapshot != null)
+			return channelSnapshot;
+		synchronized (liveLock) {
+			channelSnapshot = channelSnapshots.get(channel);
+			return channelSnapshot != null ? channelSnapshot : addSnapshot(channel);
+		}
+	}
+
+	/**
+	 * Get the users of a channel, building the set on first use
+	 *
+	 * @param channel The live channel
+	 * @param set A {@link UserLevel#ordinal() }, {@link #ALL_SET} or
+	 * {@link #NORMAL_SET}
+	 */
+	protected ImmutableSortedSet<UserSnapshot> channelUsers(Channel channel, int set) {
+		AtomicReferenceArray<ImmutableSortedSet<UserSnapshot>> sets = channelUserSets.get(channel);
+		if (sets == null) {
+			sets = new AtomicReferenceArray<ImmutableSortedSet<UserSnapshot>>(NORMAL_SET + 1);
+			AtomicReferenceArray<ImmutableSortedSet<UserSnapshot>> existingSets = channelUserSets.putIfAbsent(channel, sets);
+			if (existingSets != null)
+				sets = existingSets;
+		}
+		ImmutableSortedSet<UserSnapshot> users = sets.get(set);
+		if (users == null) {
+			if (set == ALL_SET)
+				users = snapshotUsers(liveMap.getUsers(channel));
+			else if (set == NORMAL_SET)
+				users = snapshotUsers(liveMap.getNormalUsers(channel));
+			else
+				users = snapshotUsers(liveMap.getUsers(channel, LEVELS[set]));
+			sets.set(set, users);
+		}
+		return users;
+	}
+
+	/**
+	 * Get the channels of a user, building the set on first use
+	 *
+	 * @param user The live user
+	 * @param set A {@link UserLevel#ordinal() }, {@link #ALL_SET} or
+	 * {@link #NORMAL_SET}
+	 */
+	protected ImmutableSortedSet<ChannelSnapshot> userChannels(User user, int set) {
+		AtomicReferenceArray<ImmutableSortedSet<ChannelSnapshot>> sets = userChannelSets.get(user);
+		if (sets == null) {
+			sets = new AtomicReferenceArray<ImmutableSortedSet<ChannelSnapshot>>(NORMAL_SET + 1);
+			AtomicReferenceArray<ImmutableSortedSet<ChannelSnapshot>> existingSets = userChannelSets.putIfAbsent(user, sets);
+			if (existingSets != null)
+				sets = existingSets;
+		}
+		ImmutableSortedSet<ChannelSnapshot> channels = sets.get(set);
+		if (channels == null) {
+			if (set == ALL_SET)
+				channels = snapshotChannels(liveMap.getChannels(user));
+			else if (set == NORMAL_SET)
+				channels = snapshotChannels(liveMap.getNormalChannels(user));
+			else
+				channels = snapshotChannels(liveMap.getChannels(user, LEVELS[set]));
+			sets.set(set, channels);
+		}
+		return channels;
+	}
+
+	protected ImmutableSortedSet<UserSnapshot> snapshotUsers(Collection<User> users) {
+		ImmutableSortedSet.Builder<UserSnapshot> builder = ImmutableSortedSet.naturalOrder();
+		for (User curUser : users)
+			builder.add(snapshot(curUser));
+		return builder.build();
+	}
+
+	protected ImmutableSortedSet<ChannelSnapshot> snapshotChannels(Collection<Channel> channels) {
+		ImmutableSortedSet.Builder<ChannelSnapshot> builder = ImmutableSortedSet.naturalOrder();
+		for (Channel curChannel : channels)
+			builder.add(snapshot(curChannel));
+		return builder.build();
+	}
+
+	@Override
+	public UserSnapshot getUser(@NonNull String nick) throws DaoException {
+		checkArgument(StringUtils.isNotBlank(nick), "Cannot get a blank user");
+		User user = liveUserNickMap.get(nick.toLowerCase(locale));
+		if (user != null)
+			return snapshot(user);
+
+		//Does not exist
+		throw new DaoException(DaoException.Reason.UnknownUser, nick);
+	}
+
+	@Override
+	public boolean containsUser(@NonNull String nick) {
+		String nickLowercase = nick.toLowerCase(locale);
+		return liveUserNickMap.containsKey(nickLowercase) || livePrivateUsers.containsKey(nickLowercase);
+	}
+
+	@Override
+	public ImmutableSortedSet<UserSnapshot> getAllUsers() {
+		ImmutableSortedSet<UserSnapshot> users = allUsers;
+		if (users == null)
+			allUsers = users = snapshotUsers(liveUserNickMap.values());
+		return users;
+	}
+
+	@Override
+	public ImmutableSortedSet<UserSnapshot> getNormalUsers(@NonNull ChannelSnapshot channel) {
+		return channelUsers(channel.getGeneratedFrom(), NORMAL_SET);
+	}
+
+	@Override
+	public ImmutableSortedSet<UserSnapshot> getUsers(@NonNull ChannelSnapshot channel, @NonNull UserLevel level) {
+		return channelUsers(channel.getGeneratedFrom(), level.ordinal());
+	}
+
+	@Override
+	public ImmutableSortedSet<UserSnapshot> getUsers(@NonNull ChannelSnapshot channel) {
+		return channelUsers(channel.getGeneratedFrom(), ALL_SET);
+	}
+
+	@Override
+	public ImmutableSortedSet<UserLevel> getLevels(@NonNull ChannelSnapshot channel, @NonNull UserSnapshot user) {
+		return liveMap.getLevels(user.getGeneratedFrom(), channel.getGeneratedFrom());
+	}
+
+	@Override
+	protected boolean levelContainsUser(@NonNull UserLevel level, @NonNull ChannelSnapshot channel, @NonNull UserSnapshot user) {
+		return liveMap.containsLevel(level, user.getGeneratedFrom(), channel.getGeneratedFrom());
+	}
+
+	@Override
+	public ImmutableSortedSet<ChannelSnapshot> getNormalUserChannels(@NonNull UserSnapshot user) {
+		return userChannels(user.getGeneratedFrom(), NORMAL_SET);
+	}
+
+	@Override
+	public ImmutableSortedSet<ChannelSnapshot> getChannels(@NonNull UserSnapshot user, @NonNull UserLevel level) {
+		return userChannels(user.getGeneratedFrom(), level.ordinal());
+	}
+
+	@Override
+	public ImmutableSortedSet<ChannelSnapshot> getChannels(@NonNull UserSnapshot user) {
+		return userChannels(user.getGeneratedFrom(), ALL_SET);
+	}
+
+	@Override
+	public ChannelSnapshot getChannel(@NonNull String name) throws DaoException {
+		checkArgument(StringUtils.isNotBlank(name), "Cannot get a blank channel");
+		Channel channel = findChannel(liveChannelNameMap, name);
+		if (channel != null)
+			return snapshot(channel);
+
+		//Channel does not exist
+		throw new DaoException(DaoException.Reason.UnknownChannel, name);
+	}
+
+	@Override
+	public boolean containsChannel(@NonNull String name) {
+		return findChannel(liveChannelNameMap, name) != null;
+	}
+
+	@Override
+	public ImmutableSortedSet<ChannelSnapshot> getAllChannels() {
+		ImmutableSortedSet<ChannelSnapshot> channels = allChannels;
+		if (channels == null)
+			allChannels = channels = snapshotChannels(liveChannelNameMap.values());
+		return channels;
+	}
+
 	@Override
 	public UserChannelDaoSnapshot createSnapshot() {
 		throw new UnsupportedOperationException("Attempting to generate UserChannelDao snapshot from a snapshot");
@@ -63,6 +341,11 @@ public class UserChannelDaoSnapshot extends UserChannelDao<UserSnapshot, Channel
 		SnapshotUtils.fail();
 	}
 
+	@Override
+	protected void removeUsers(Iterable<UserSnapshot> users) {
+		SnapshotUtils.fail();
+	}
+
 	@Override
 	protected void renameUser(UserSnapshot user, String newNick) {
 		SnapshotUtils.fail();
@@ -17,30 +17,61 @@
  */
 package org.pircbotx.snapshot;
 
-import com.google.common.collect.Multimap;
+import org.pircbotx.Channel;
+import org.pircbotx.PersistentHashMap;
+import org.pircbotx.User;
 import org.pircbotx.UserChannelMap;
+import org.pircbotx.UserLevel;
 
 /**
+ * A read only {@link UserChannelMap} sharing the maps of the map it was
+ * created from. It still contains the original users and channels, which
+ * {@link UserChannelDaoSnapshot} replaces with their snapshots
  *
  * @author Leon Blakey
  */
-public class UserChannelMapSnapshot extends UserChannelMap<UserSnapshot, ChannelSnapshot> {
-	public UserChannelMapSnapshot(Multimap<UserSnapshot, ChannelSnapshot> userToChannelSnapshot, Multimap<ChannelSnapshot, UserSnapshot> channelToUserSnapshot) {
-		super(userToChannelSnapshot, channelToUserSnapshot);
+public class UserChannelMapSnapshot extends UserChannelMap<User, Channel> {
+	public UserChannelMapSnapshot(PersistentHashMap<User, PersistentHashMap<Channel, Boolean>> userToChannelMap, PersistentHashMap<Channel, PersistentHashMap<User, Integer>> channelToUserMap) {
+		super(userToChannelMap, channelToUserMap);
 	}
 
 	@Override
-	public void removeUserFromChannel(UserSnapshot user, ChannelSnapshot channel) {
+	public void addUserToChannel(User user, Channel channel) {
 		SnapshotUtils.fail();
 	}
 
 	@Override
-	public void removeUser(UserSnapshot user) {
+	public void addUserToLevel(UserLevel level, User user, Channel channel) {
 		SnapshotUtils.fail();
 	}
 
 	@Override
-	public void removeChannel(ChannelSnapshot channel) {
+	public void removeUserFromLevel(UserLevel level, User user, Channel channel) {
+		SnapshotUtils.fail();
+	}
+
+	@Override
+	public void removeUserFromChannel(User user, Channel channel) {
+		SnapshotUtils.fail();
+	}
+
+	@Override
+	public void removeUser(User user) {
+		SnapshotUtils.fail();
+	}
+
+	@Override
+	public void userRenamed(User user) {
+		SnapshotUtils.fail();
+	}
+
+	@Override
+	public void removeUsers(Iterable<User> users) {
+		SnapshotUtils.fail();
+	}
+
+	@Override
+	public void removeChannel(Channel channel) {
 		SnapshotUtils.fail();
 	}
 
@@ -48,4 +79,9 @@ public class UserChannelMapSnapshot extends UserChannelMap<UserSnapshot, Channel
 	public void clear() {
 		SnapshotUtils.fail();
 	}
+
+	@Override
+	public UserChannelMapSnapshot createSnapshot() {
+		return this;
+	}
 }
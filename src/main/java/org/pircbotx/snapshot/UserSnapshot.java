@@ -51,6 +51,7 @@ public class UserSnapshot extends User {
 		super.setIrcop(user.isIrcop());
 		super.setRealName(user.getRealName());
 		super.setServer(user.getServer());
+		super.setAccount(user.getAccount());
 	}
 
 	@Override
@@ -60,6 +61,11 @@ public class UserSnapshot extends User {
 		return (UserChannelDao<User, Channel>) (Object) dao;
 	}
 
+	@Override
+	protected void beforeChange() {
+		//Nothing shares this snapshot
+	}
+
 	@Override
 	public UserSnapshot createSnapshot() {
 		throw new UnsupportedOperationException("Attempting to generate user snapshot from a snapshot");
@@ -99,4 +105,9 @@ public class UserSnapshot extends User {
 	protected void setServer(String server) {
 		SnapshotUtils.fail();
 	}
+
+	@Override
+	protected void setAccount(String account) {
+		SnapshotUtils.fail();
+	}
 }
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+import java.util.List;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ * Runs all of the InputParser tests against {@link IndexedUserChannelDao}
+ *
+ * @author Leon Blakey
+ */
+@Test(singleThreaded = true)
+public class IndexedUserChannelDaoTest extends InputParserTest {
+	@BeforeMethod
+	@Override
+	public void setUp() {
+		bot = new TestPircBotX(TestUtils.generateConfigurationBuilder()
+				.setIndexedUserChannelDao(true));
+		bot.nick = "PircBotXBot";
+
+		//Save objects into fields for easier access
+		this.dao = bot.getUserChannelDao();
+		this.inputParser = bot.getInputParser();
+	}
+
+	@Test
+	public void daoTypeTest() {
+		assertTrue(dao instanceof IndexedUserChannelDao, "Wrong dao " + dao.getClass());
+	}
+
+	@Test
+	public void largeChannelTest() throws Exception {
+		Channel channel = dao.createChannel("#aChannel");
+		Channel otherChannel = dao.createChannel("#otherChannel");
+		List<User> users = Lists.newArrayList();
+		for (int i = 0; i < 1000; i++) {
+			User user = dao.createUser(new UserHostmask(bot, "user" + i + "!~login@host"));
+			users.add(user);
+			dao.addUserToChannel(user, channel);
+			if (i % 3 == 0)
+				dao.addUserToLevel(UserLevel.OP, user, channel);
+			if (i % 2 == 0)
+				dao.addUserToChannel(user, otherChannel);
+		}
+		assertEquals(dao.getUsers(channel).size(), 1000);
+		assertEquals(dao.getUsers(channel, UserLevel.OP).size(), 334);
+		assertEquals(dao.getNormalUsers(channel).size(), 666);
+		assertEquals(dao.getUsers(otherChannel).size(), 500);
+
+		//Remove every other user, leaving the rest intact
+		for (int i = 0; i < 1000; i += 2)
+			dao.removeUserFromChannel(users.get(i), channel);
+		assertEquals(dao.getUsers(channel).size(), 500);
+		assertEquals(dao.getUsers(channel, UserLevel.OP).size(), 167);
+		for (int i = 0; i < 1000; i++) {
+			User user = users.get(i);
+			assertEquals(dao.getUsers(channel).contains(user), i % 2 == 1, "Membership of " + user);
+			assertEquals(dao.levelContainsUser(UserLevel.OP, channel, user), i % 2 == 1 && i % 3 == 0, "Level of " + user);
+			assertTrue(dao.containsUser(user.getNick()), "User removed while still in a channel " + user);
+		}
+
+		//Users left with no channels are removed and their ids reused
+		dao.removeChannel(otherChannel);
+		assertFalse(dao.getChannels(users.get(0)).contains(otherChannel));
+		assertEquals(otherChannel.indexedId, -1, "Removed channel still has an id");
+		assertEquals(users.get(0).indexedId, -1, "Removed user still has an id");
+		User newUser = dao.createUser(new UserHostmask(bot, "newUser!~login@host"));
+		dao.addUserToChannel(newUser, channel);
+		assertTrue(newUser.indexedId < 1000, "Id not reused");
+		dao.addUserToLevel(UserLevel.VOICE, newUser, channel);
+		assertEquals(dao.getLevels(channel, newUser), ImmutableSortedSet.of(UserLevel.VOICE));
+		assertEquals(dao.getChannels(newUser), ImmutableSortedSet.of(channel));
+		assertEquals(dao.getUsers(channel).size(), 501);
+	}
+}
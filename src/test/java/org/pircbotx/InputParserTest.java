@@ -18,18 +18,21 @@
 package org.pircbotx;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import java.io.IOException;
 import org.pircbotx.hooks.events.MotdEvent;
 import org.pircbotx.hooks.events.HalfOpEvent;
 import org.pircbotx.hooks.events.OwnerEvent;
 import org.pircbotx.hooks.events.SuperOpEvent;
+import java.util.Arrays;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.pircbotx.exception.DaoException;
 import org.pircbotx.exception.IrcException;
+import org.pircbotx.hooks.Event;
 import org.pircbotx.hooks.events.ActionEvent;
 import org.pircbotx.hooks.events.BanListEvent;
 import org.pircbotx.hooks.events.ChannelInfoEvent;
@@ -39,6 +42,8 @@ import org.pircbotx.hooks.events.JoinEvent;
 import org.pircbotx.hooks.events.KickEvent;
 import org.pircbotx.hooks.events.MessageEvent;
 import org.pircbotx.hooks.events.ModeEvent;
+import org.pircbotx.hooks.events.NetJoinEvent;
+import org.pircbotx.hooks.events.NetSplitEvent;
 import org.pircbotx.hooks.events.NickAlreadyInUseEvent;
 import org.pircbotx.hooks.events.NickChangeEvent;
 import org.pircbotx.hooks.events.NoticeEvent;
@@ -56,6 +61,7 @@ import org.pircbotx.hooks.events.RemovePrivateEvent;
 import org.pircbotx.hooks.events.RemoveSecretEvent;
 import org.pircbotx.hooks.events.RemoveTopicProtectionEvent;
 import org.pircbotx.hooks.events.ServerPingEvent;
+import org.pircbotx.hooks.events.ServerResponseEvent;
 import org.pircbotx.hooks.events.SetChannelKeyEvent;
 import org.pircbotx.hooks.events.SetChannelLimitEvent;
 import org.pircbotx.hooks.events.SetInviteOnlyEvent;
@@ -65,6 +71,9 @@ import org.pircbotx.hooks.events.SetSecretEvent;
 import org.pircbotx.hooks.events.SetTopicProtectionEvent;
 import org.pircbotx.hooks.events.TimeEvent;
 import org.pircbotx.hooks.events.UserListEvent;
+import org.pircbotx.hooks.events.ChannelSyncEvent;
+import org.pircbotx.cap.CapHandler;
+import org.pircbotx.cap.EnableCapHandler;
 import org.pircbotx.hooks.events.UserModeEvent;
 import org.pircbotx.hooks.events.VersionEvent;
 import org.pircbotx.hooks.events.VoiceEvent;
@@ -72,6 +81,7 @@ import org.pircbotx.hooks.events.WhoisEvent;
 import org.pircbotx.hooks.types.GenericChannelModeEvent;
 import org.pircbotx.hooks.types.GenericUserModeEvent;
 import org.pircbotx.snapshot.ChannelSnapshot;
+import org.pircbotx.snapshot.UserChannelDaoSnapshot;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -88,7 +98,7 @@ import org.testng.collections.Lists;
 @Test(singleThreaded = true)
 public class InputParserTest {
 	final static String aString = "I'm some super long string that has multiple words";
-	protected UserChannelDao dao;
+	protected UserChannelDao<User, Channel> dao;
 	protected InputParser inputParser;
 	protected TestPircBotX bot;
 
@@ -711,6 +721,113 @@ public class InputParserTest {
 		assertFalse(aChannel.hasVoice(otherUser), "User is labeled as voiced even though specified as one in WHO");
 	}
 
+	@Test(description = "Verify WHOX channel sync + ChannelSyncEvent")
+	public void whoxSyncTest() throws IOException, IrcException {
+		bot.getServerInfo().parse(5, Arrays.asList("PircBotXBot", "WHOX", "are supported by this server"));
+		ChannelSyncManager syncManager = bot.getChannelSyncManager();
+		inputParser.handleLine(":PircBotXBot!~login@some.host JOIN :#aChannel");
+		assertTrue(syncManager.isSyncing("#aChannel"), "Join didn't request sync");
+		assertEquals(syncManager.createWho("#aChannel"), "WHO #aChannel %tcuhnfar,743");
+
+		inputParser.handleLine(":irc.someserver.net 354 PircBotXBot 743 #aChannel ~ALogin some.host AUser H@ anAccount :" + aString);
+		inputParser.handleLine(":irc.someserver.net 354 PircBotXBot 743 #aChannel ~OtherLogin some.host1 OtherUser G 0 :");
+		inputParser.handleLine(":irc.someserver.net 315 PircBotXBot #aChannel :End of /WHO list.");
+		assertFalse(syncManager.isSyncing("#aChannel"), "Channel still syncing after 315");
+
+		Channel aChannel = dao.getChannel("#aChannel");
+		ChannelSyncEvent event = bot.getTestEvent(ChannelSyncEvent.class);
+		assertEquals(event.getChannel(), aChannel);
+
+		User aUser = dao.getUser("AUser");
+		assertEquals(aUser.getLogin(), "~ALogin");
+		assertEquals(aUser.getHostname(), "some.host");
+		assertEquals(aUser.getAccount(), "anAccount");
+		assertEquals(aUser.getRealName(), aString);
+		assertTrue(aChannel.isOp(aUser));
+		User otherUser = dao.getUser("OtherUser");
+		assertNull(otherUser.getAccount());
+		assertTrue(otherUser.isAway());
+		assertTrue(aChannel.getUsers().contains(otherUser));
+	}
+
+	@Test(description = "Verify only a limited number of WHO requests are sent at once")
+	public void syncInFlightTest() {
+		ChannelSyncManager syncManager = bot.getChannelSyncManager();
+		assertEquals(syncManager.getMaxInFlight(), 2);
+		syncManager.requestSync("#chan1");
+		syncManager.requestSync("#chan2");
+		syncManager.requestSync("#chan3");
+		syncManager.requestSync("#CHAN3");
+		assertEquals(syncManager.getInFlightCount(), 2);
+		assertEquals(syncManager.getQueuedCount(), 1);
+
+		assertFalse(syncManager.whoFinished("#chan3"), "Queued channel finished");
+		assertTrue(syncManager.whoFinished("#CHAN1"));
+		assertEquals(syncManager.getInFlightCount(), 2);
+		assertEquals(syncManager.getQueuedCount(), 0);
+		assertTrue(syncManager.isSyncing("#chan3"));
+	}
+
+	@Test(description = "Verify parting a channel drops its sync and ignores late WHO replies")
+	public void syncPartTest() throws IOException, IrcException {
+		ChannelSyncManager syncManager = bot.getChannelSyncManager();
+		for (String curChannel : new String[]{"#chan1", "#chan2", "#chan3"})
+			inputParser.handleLine(":PircBotXBot!~login@some.host JOIN :" + curChannel);
+		assertEquals(syncManager.getInFlightCount(), 2);
+		assertEquals(syncManager.getQueuedCount(), 1);
+
+		inputParser.handleLine(":PircBotXBot!~login@some.host PART #chan3");
+		assertEquals(syncManager.getQueuedCount(), 0);
+		assertFalse(syncManager.isSyncing("#chan3"), "Parted channel still queued");
+
+		inputParser.handleLine(":PircBotXBot!~login@some.host KICK #chan1 PircBotXBot :bye");
+		bot.eventQueue.clear();
+		inputParser.handleLine(":irc.someserver.net 352 PircBotXBot #chan1 ~ALogin some.host irc.someserver.net AUser H :0 " + aString);
+		inputParser.handleLine(":irc.someserver.net 315 PircBotXBot #chan1 :End of /WHO list.");
+		assertFalse(dao.containsChannel("#chan1"));
+		for (Event curEvent : bot.eventQueue)
+			assertTrue(curEvent instanceof ServerResponseEvent, "Unexpected event for a channel the bot was kicked from: " + curEvent);
+		assertEquals(syncManager.getInFlightCount(), 1);
+	}
+
+	@Test(description = "Verify lazy channel sync only uses NAMES")
+	public void lazySyncTest() throws IOException, IrcException {
+		bot = new TestPircBotX(TestUtils.generateConfigurationBuilder()
+				.setLazyChannelSync(true));
+		bot.nick = "PircBotXBot";
+		dao = bot.getUserChannelDao();
+		inputParser = bot.getInputParser();
+		assertTrue(bot.getChannelSyncManager().isLazy());
+		boolean capFound = false;
+		for (CapHandler curHandler : bot.getConfiguration().getCapHandlers())
+			if (curHandler instanceof EnableCapHandler && ((EnableCapHandler) curHandler).getCap().equals("userhost-in-names"))
+				capFound = true;
+		assertTrue(capFound, "userhost-in-names not requested");
+
+		inputParser.handleLine(":PircBotXBot!~login@some.host JOIN :#aChannel");
+		assertFalse(bot.getChannelSyncManager().isSyncing("#aChannel"), "WHO requested in lazy mode");
+		inputParser.handleLine(":irc.someserver.net 353 PircBotXBot = #aChannel :@+AUser!~ALogin@some.host OtherUser");
+		inputParser.handleLine(":irc.someserver.net 366 PircBotXBot #aChannel :End of /NAMES list.");
+
+		Channel aChannel = dao.getChannel("#aChannel");
+		assertEquals(bot.getTestEvent(ChannelSyncEvent.class).getChannel(), aChannel);
+		User aUser = dao.getUser("AUser");
+		assertEquals(aUser.getLogin(), "~ALogin");
+		assertEquals(aUser.getHostname(), "some.host");
+		assertTrue(aChannel.isOp(aUser));
+		assertTrue(aChannel.hasVoice(aUser));
+		assertTrue(aChannel.getUsers().contains(dao.getUser("OtherUser")));
+
+		//Details requested on demand don't sync the channel again
+		bot.eventQueue.clear();
+		bot.getChannelSyncManager().requestSync("#aChannel");
+		inputParser.handleLine(":irc.someserver.net 352 PircBotXBot #aChannel ~OtherLogin some.host1 irc.someserver.net OtherUser H :0 " + aString);
+		inputParser.handleLine(":irc.someserver.net 315 PircBotXBot #aChannel :End of /WHO list.");
+		assertEquals(dao.getUser("OtherUser").getRealName(), aString);
+		for (Event curEvent : bot.eventQueue)
+			assertFalse(curEvent instanceof ChannelSyncEvent, "ChannelSyncEvent dispatched again for an on demand WHO");
+	}
+
 	@Test(description = "Veryfy that we don't falsely registers all WHO responses as valid channels", expectedExceptions = DaoException.class)
 	public void whoTestFalseChannels() throws IOException, IrcException {
 		assertFalse(dao.channelExists("#randomChannel"), "Intial test to ensure channel doesn't exist");
@@ -808,6 +925,137 @@ public class InputParserTest {
 		assertEquals(qevent.getUser().getChannels().first().getName(), "#aChannel", "QuitEvent user contains unexpected channels");
 	}
 
+	@Test(description = "Verify scoped snapshots only contain the quitting or parting user")
+	public void scopedSnapshotTest() throws IOException, IrcException {
+		TestPircBotX scopedBot = new TestPircBotX(TestUtils.generateConfigurationBuilder()
+				.setScopedSnapshots(true));
+		scopedBot.nick = "PircBotXBot";
+		UserChannelDao<User, Channel> scopedDao = scopedBot.getUserChannelDao();
+		InputParser scopedParser = scopedBot.getInputParser();
+		scopedDao.createChannel("#aChannel");
+		scopedDao.createChannel("#otherChannel");
+		User aUser = TestUtils.generateTestUserSource(scopedBot);
+		User otherUser = TestUtils.generateTestUserOther(scopedBot);
+		scopedParser.handleLine(":" + aUser.getHostmask() + " JOIN :#aChannel");
+		scopedParser.handleLine(":" + otherUser.getHostmask() + " JOIN :#aChannel");
+		scopedParser.handleLine(":" + otherUser.getHostmask() + " JOIN :#otherChannel");
+		scopedParser.handleLine(":" + aUser.getHostmask() + " MODE #aChannel +o " + otherUser.getNick());
+
+		scopedParser.handleLine(":" + otherUser.getHostmask() + " PART #otherChannel");
+		PartEvent pevent = scopedBot.getTestEvent(PartEvent.class, "PartEvent not dispatched");
+		assertEquals(pevent.getUser().getGeneratedFrom(), otherUser, "PartEvent's user doesn't match given");
+		assertEquals(pevent.getUser().getChannels().size(), 1, "PartEvent user contains unexpected channels");
+		assertFalse(pevent.getUserChannelDaoSnapshot().containsChannel("#aChannel"), "PartEvent contains unrelated channel");
+
+		scopedParser.handleLine(":" + otherUser.getHostmask() + " QUIT :" + aString);
+		QuitEvent qevent = scopedBot.getTestEvent(QuitEvent.class, "QuitEvent not dispatched");
+		UserChannelDaoSnapshot daoSnapshot = qevent.getUserChannelDaoSnapshot();
+		assertEquals(qevent.getUser().getGeneratedFrom(), otherUser, "QuitEvent's user does not match given");
+		assertTrue(daoSnapshot.containsChannel("#aChannel"), "QuitEvent doesn't contain channel");
+		assertFalse(daoSnapshot.containsChannel("#otherChannel"), "QuitEvent contains already parted channel");
+		assertFalse(daoSnapshot.containsUser(aUser), "QuitEvent contains unrelated user");
+		assertEquals(qevent.getUser().getChannelsOpIn().first().getName(), "#aChannel", "QuitEvent user contains unexpected channels");
+		assertEquals(daoSnapshot.getChannel("#aChannel").getUsers(), ImmutableSortedSet.of(qevent.getUser()), "QuitEvent channel contains unexpected users");
+		assertFalse(scopedDao.containsUser(otherUser), "Bot still considers user to exist after quit");
+	}
+
+	@Test(description = "Verify netsplit QUITs and rejoins are batched")
+	public void netSplitTest() throws IOException, IrcException {
+		TestPircBotX splitBot = new TestPircBotX(TestUtils.generateConfigurationBuilder()
+				.setNetSplitDetection(true)
+				.setNetSplitEventsOnly(true));
+		splitBot.nick = "PircBotXBot";
+		UserChannelDao<User, Channel> splitDao = splitBot.getUserChannelDao();
+		InputParser splitParser = splitBot.getInputParser();
+		Channel aChannel = splitDao.createChannel("#aChannel");
+		User aUser = TestUtils.generateTestUserSource(splitBot);
+		User otherUser = TestUtils.generateTestUserOther(splitBot);
+		splitParser.handleLine(":" + aUser.getHostmask() + " JOIN :#aChannel");
+		splitParser.handleLine(":" + otherUser.getHostmask() + " JOIN :#aChannel");
+		splitParser.handleLine(":" + aUser.getHostmask() + " MODE #aChannel +o " + otherUser.getNick());
+		splitBot.eventQueue.clear();
+
+		splitParser.handleLine(":" + aUser.getHostmask() + " QUIT :hub.test.net leaf.test.net");
+		splitParser.handleLine(":" + otherUser.getHostmask() + " QUIT :hub.test.net leaf.test.net");
+		assertTrue(splitBot.eventQueue.isEmpty(), "Netsplit events dispatched before the netsplit ended");
+		splitParser.handleLine("PING :1234");
+
+		NetSplitEvent splitEvent = splitBot.getTestEvent(NetSplitEvent.class);
+		assertEquals(splitEvent.getServer(), "hub.test.net");
+		assertEquals(splitEvent.getSplitServer(), "leaf.test.net");
+		assertEquals(splitEvent.getUserHostmasks().size(), 2);
+		assertEquals(splitEvent.getUserHostmasks().get(0).getNick(), aUser.getNick());
+		assertEquals(splitEvent.getUsers().get(1).getGeneratedFrom(), otherUser);
+		assertEquals(splitEvent.getUsers().get(1).getChannelsOpIn().first().getName(), "#aChannel");
+		assertTrue(splitEvent.getUserChannelDaoSnapshot().containsUser(aUser), "Snapshot doesn't contain user");
+		for (Event curEvent : splitBot.eventQueue)
+			assertFalse(curEvent instanceof QuitEvent, "QuitEvent dispatched with netSplitEventsOnly");
+		assertFalse(splitDao.containsUser(aUser), "User still exists after netsplit");
+		assertTrue(splitDao.getUsers(aChannel).isEmpty(), "Channel still contains users after netsplit");
+		splitBot.eventQueue.clear();
+
+		//Users return
+		splitParser.handleLine(":" + aUser.getHostmask() + " JOIN :#aChannel");
+		splitParser.handleLine(":" + otherUser.getHostmask() + " JOIN :#aChannel");
+		splitParser.handleLine(":leaf.test.net MODE #aChannel +o " + otherUser.getNick());
+		for (Event curEvent : splitBot.eventQueue)
+			assertFalse(curEvent instanceof NetJoinEvent || curEvent instanceof JoinEvent, "Netjoin events dispatched before the netjoin ended");
+		splitParser.handleLine("PING :1234");
+
+		NetJoinEvent joinEvent = splitBot.getTestEvent(NetJoinEvent.class);
+		assertEquals(joinEvent.getSplitServer(), "leaf.test.net");
+		assertEquals(joinEvent.getUsers().size(), 2);
+		assertEquals(joinEvent.getUserChannels().get(splitDao.getUser(otherUser.getNick())), ImmutableSet.of(aChannel));
+		for (Event curEvent : splitBot.eventQueue)
+			assertFalse(curEvent instanceof JoinEvent, "JoinEvent dispatched with netSplitEventsOnly");
+		assertEquals(splitDao.getUsers(aChannel).size(), 2);
+		assertTrue(aChannel.isOp(splitDao.getUser(otherUser.getNick())), "Mode during netjoin not applied");
+	}
+
+	@Test(description = "Verify a netsplit that no other line ends is dispatched after the timeout")
+	public void netSplitTimeoutTest() throws Exception {
+		TestPircBotX splitBot = new TestPircBotX(TestUtils.generateConfigurationBuilder()
+				.setNetSplitDetection(true)
+				.setNetSplitTimeout(50));
+		splitBot.nick = "PircBotXBot";
+		InputParser splitParser = splitBot.getInputParser();
+		splitBot.getUserChannelDao().createChannel("#aChannel");
+		User aUser = TestUtils.generateTestUserSource(splitBot);
+		splitParser.handleLine(":" + aUser.getHostmask() + " JOIN :#aChannel");
+		splitBot.eventQueue.clear();
+
+		splitParser.handleLine(":" + aUser.getHostmask() + " QUIT :hub.test.net leaf.test.net");
+		assertTrue(splitParser.getNetSplitTimeoutRemaining() > -1, "Netsplit isn't pending");
+		Thread.sleep(100);
+		//Only the thread handling lines dispatches it
+		assertTrue(splitBot.eventQueue.isEmpty(), "Netsplit events dispatched outside of the input thread");
+		assertEquals(splitParser.getNetSplitTimeoutRemaining(), 0);
+		splitParser.checkNetSplitTimeout();
+		assertEquals(splitParser.getNetSplitTimeoutRemaining(), -1);
+		assertEquals(splitBot.getTestEvent(NetSplitEvent.class).getUserHostmasks().get(0).getNick(), aUser.getNick());
+		splitBot.getTestEvent(QuitEvent.class);
+		assertFalse(splitBot.getUserChannelDao().containsUser(aUser), "User still exists after netsplit timeout");
+	}
+
+	@Test(description = "Verify a netsplit still being received is dispatched when the parser is closed")
+	public void netSplitCloseTest() throws IOException, IrcException {
+		TestPircBotX splitBot = new TestPircBotX(TestUtils.generateConfigurationBuilder()
+				.setNetSplitDetection(true)
+				.setNetSplitTimeout(60000));
+		splitBot.nick = "PircBotXBot";
+		InputParser splitParser = splitBot.getInputParser();
+		splitBot.getUserChannelDao().createChannel("#aChannel");
+		User aUser = TestUtils.generateTestUserSource(splitBot);
+		splitParser.handleLine(":" + aUser.getHostmask() + " JOIN :#aChannel");
+		splitBot.eventQueue.clear();
+
+		splitParser.handleLine(":" + aUser.getHostmask() + " QUIT :hub.test.net leaf.test.net");
+		assertTrue(splitBot.eventQueue.isEmpty(), "Netsplit events dispatched before the netsplit ended");
+		splitParser.close();
+		splitBot.getTestEvent(NetSplitEvent.class);
+		splitBot.getTestEvent(QuitEvent.class);
+	}
+
 	@Test(dependsOnMethods = "joinTest", description = "Verify part with message")
 	public void partWithMessageTest() throws IOException, IrcException {
 		User otherUser = TestUtils.generateTestUserOther(bot);
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ *
+ * @author Leon Blakey
+ */
+public class LineFramerTest {
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Test
+	public void readLineTest() throws Exception {
+		InputStream input = new ByteArrayInputStream(":irc.test 001 bot :Welcome\r\n\r\nPING :1234\nPRIVMSG #chan :héllo\r\n".getBytes(UTF8));
+		LineFramer framer = new LineFramer(UTF8);
+		assertEquals(framer.readLine(input), ":irc.test 001 bot :Welcome");
+		assertEquals(framer.readLine(input), "PING :1234");
+		assertEquals(framer.readLine(input), "PRIVMSG #chan :héllo");
+		assertNull(framer.readLine(input));
+	}
+
+	@Test
+	public void partialLineTest() {
+		LineFramer framer = new LineFramer(UTF8);
+		framer.getReadBuffer().put(":irc.test NOTICE bot :Hel".getBytes(UTF8));
+		assertFalse(framer.nextLine());
+
+		framer.getReadBuffer().put("lo\r".getBytes(UTF8));
+		assertFalse(framer.nextLine());
+
+		framer.getReadBuffer().put("\nQUIT".getBytes(UTF8));
+		assertTrue(framer.nextLine());
+		assertEquals(framer.decodeLine(), ":irc.test NOTICE bot :Hello");
+		assertFalse(framer.nextLine());
+	}
+
+	@Test
+	public void longLineTest() {
+		LineFramer framer = new LineFramer(UTF8, 8);
+		ByteBuffer buffer = framer.getReadBuffer();
+		buffer.put("12345678".getBytes(UTF8));
+		assertTrue(framer.nextLine());
+		assertEquals(framer.decodeLine(), "12345678");
+
+		framer.getReadBuffer().put("90\r\n".getBytes(UTF8));
+		assertTrue(framer.nextLine());
+		assertEquals(framer.decodeLine(), "90");
+	}
+}
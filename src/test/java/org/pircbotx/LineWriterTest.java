@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ *
+ * @author Leon Blakey
+ */
+public class LineWriterTest {
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Test
+	public void writeLineTest() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		LineWriter writer = new LineWriter(output, UTF8);
+		writer.writeLine("PRIVMSG #chan :hello");
+		writer.writeLine("PRIVMSG #chan :héllo");
+		assertEquals(output.size(), 0, "Lines written before flush");
+
+		writer.flush();
+		assertEquals(writer.getBufferedBytes(), 0);
+		assertEquals(new String(output.toByteArray(), UTF8), "PRIVMSG #chan :hello\r\nPRIVMSG #chan :héllo\r\n");
+	}
+
+	@Test
+	public void fullBufferTest() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		LineWriter writer = new LineWriter(output, UTF8, 8);
+		writer.writeLine("1234");
+		writer.writeLine("5678");
+		assertEquals(new String(output.toByteArray(), UTF8), "1234\r\n", "First line should be written when buffer filled");
+
+		writer.writeLine("longer than the buffer");
+		assertEquals(new String(output.toByteArray(), UTF8), "1234\r\n5678\r\nlonger than the buffer\r\n");
+		assertEquals(writer.getBufferedBytes(), 0);
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.Listener;
+import org.pircbotx.hooks.events.ConnectEvent;
+import org.pircbotx.hooks.events.DisconnectEvent;
+import org.pircbotx.hooks.events.SocketConnectEvent;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ * Connect to a local server through the {@link NioConnectionEngine}
+ *
+ * @author Leon Blakey
+ */
+@Test(singleThreaded = true)
+public class NioConnectionEngineTest {
+	protected NioConnectionEngine engine;
+	protected ServerSocket serverSocket;
+	protected ExecutorService serverExecutor;
+
+	@BeforeMethod
+	public void setUp() throws Exception {
+		engine = new NioConnectionEngine(1);
+		serverSocket = new ServerSocket(0, 5, InetAddress.getByName("127.0.0.1"));
+		serverExecutor = Executors.newSingleThreadExecutor();
+	}
+
+	@AfterMethod
+	public void cleanUp() throws Exception {
+		engine.close();
+		serverSocket.close();
+		serverExecutor.shutdownNow();
+	}
+
+	@Test(timeOut = 20000)
+	public void connectTest() throws Exception {
+		Future<List<String>> serverLines = serverExecutor.submit(new Callable<List<String>>() {
+			public List<String> call() throws Exception {
+				Socket socket = serverSocket.accept();
+				List<String> lines = new CopyOnWriteArrayList<String>();
+				BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+				OutputStream output = socket.getOutputStream();
+				//Split lines across writes to test partial reads
+				output.write(":ircd.test 004 PircBotXBot ircd.test jmeter-ircd-basic-0.1 ov b\r\n:ircd.te".getBytes("UTF-8"));
+				output.flush();
+				Thread.sleep(50);
+				output.write("st NOTICE PircBotXBot :Welcome\r\nPING :1234\r\n".getBytes("UTF-8"));
+				output.flush();
+
+				String line;
+				while ((line = input.readLine()) != null) {
+					lines.add(line);
+					if (line.startsWith("PONG"))
+						break;
+				}
+				output.write("ERROR :Closing link\r\n".getBytes("UTF-8"));
+				output.flush();
+				socket.close();
+				return lines;
+			}
+		});
+
+		final List<Event> events = new CopyOnWriteArrayList<Event>();
+		Configuration.Builder configurationBuilder = TestUtils.generateConfigurationBuilder()
+				.setNioConnectionEngine(engine)
+				.addListener(new Listener() {
+					public void onEvent(Event event) throws Exception {
+						events.add(event);
+					}
+				});
+		configurationBuilder.getServers().clear();
+		configurationBuilder.addServer("127.0.0.1", serverSocket.getLocalPort());
+		PircBotX bot = new PircBotX(configurationBuilder.buildConfiguration());
+
+		//Blocks until the server closes the connection
+		bot.startBot();
+
+		List<String> lines = serverLines.get(10, TimeUnit.SECONDS);
+		assertTrue(lines.contains("NICK PircBotXBot"), "Bot didn't send NICK: " + lines);
+		assertTrue(lines.contains("PONG :1234") || lines.contains("PONG 1234"), "Bot didn't respond to PING: " + lines);
+		assertEquals(bot.getState(), PircBotX.State.DISCONNECTED);
+
+		boolean socketConnect = false, connect = false, disconnect = false;
+		for (Event curEvent : events) {
+			socketConnect |= curEvent instanceof SocketConnectEvent;
+			connect |= curEvent instanceof ConnectEvent;
+			disconnect |= curEvent instanceof DisconnectEvent;
+		}
+		assertTrue(socketConnect, "No SocketConnectEvent dispatched");
+		assertTrue(connect, "No ConnectEvent dispatched");
+		assertTrue(disconnect, "No DisconnectEvent dispatched");
+	}
+
+	@Test(timeOut = 20000)
+	public void multiBotManagerStopAndWaitTest() throws Exception {
+		final CountDownLatch registeredLatch = new CountDownLatch(1);
+		serverExecutor.submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				Socket socket = serverSocket.accept();
+				BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+				String line;
+				while ((line = input.readLine()) != null)
+					if (line.startsWith("USER"))
+						registeredLatch.countDown();
+					else if (line.startsWith("QUIT"))
+						break;
+				socket.close();
+				return null;
+			}
+		});
+
+		Configuration.Builder configurationBuilder = TestUtils.generateConfigurationBuilder()
+				.setNioConnectionEngine(engine);
+		configurationBuilder.getServers().clear();
+		configurationBuilder.addServer("127.0.0.1", serverSocket.getLocalPort());
+		MultiBotManager manager = new MultiBotManager();
+		manager.addBot(configurationBuilder.buildConfiguration());
+		manager.start();
+		//Stop once the bot finished connecting
+		registeredLatch.await();
+		PircBotX bot = manager.getBots().first();
+
+		//The bot runs on the engine instead of the bot pool
+		manager.stopAndWait();
+		assertTrue(manager.getBots().isEmpty(), "Bots still running after stopAndWait");
+		assertEquals(bot.getState(), PircBotX.State.DISCONNECTED);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void sslUnsupportedTest() {
+		TestUtils.generateConfigurationBuilder()
+				.setNioConnectionEngine(engine)
+				.setSocketFactory(new UtilSSLSocketFactory())
+				.buildConfiguration();
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import java.util.List;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ *
+ * @author Leon Blakey
+ */
+public class ParsedLineTest {
+	@DataProvider
+	public Object[][] lineDataProvider() {
+		return new Object[][]{
+			{":nick!login@host PRIVMSG #channel :Hello there everyone"},
+			{":irc.server 352 PircBotX #aChannel ~someName host.test wolfe.freenode.net someNick H :0 Full Name"},
+			{":irc.server 005 PircBotX PREFIX=(ov)@+ CHANTYPES=# :are supported by this server"},
+			{":nick!login@host JOIN #channel"},
+			{":nick!login@host MODE #channel +ov  nick1 nick2"},
+			{":server :weird"},
+			{"PING :1234"},
+			{"ERROR :Closing link"},
+			{"AUTHENTICATE +"}
+		};
+	}
+
+	@Test(dataProvider = "lineDataProvider")
+	public void tokenizeCompatibleTest(String line) {
+		List<String> expected = Utils.tokenizeLine(line);
+		ParsedLine parsed = new ParsedLine(line);
+
+		String prefix = "";
+		if (expected.get(0).startsWith(":"))
+			prefix = expected.remove(0);
+		assertEquals(parsed.getPrefix(), prefix, "Prefix");
+		assertEquals(parsed.getCommand(), expected.remove(0), "Command");
+		assertEquals(parsed.getParams(), expected, "Params");
+		assertEquals(parsed.getParamsCopy(), expected, "Params copy");
+	}
+
+	@Test
+	public void numericTest() {
+		ParsedLine parsed = new ParsedLine(":irc.server 001 PircBotX :Welcome");
+		assertEquals(parsed.getCode(), 1);
+		assertTrue(parsed.isNumeric());
+		assertTrue(parsed.isTrailing());
+
+		parsed.parse(":nick!login@host PRIVMSG #channel hi");
+		assertEquals(parsed.getCode(), -1);
+		assertFalse(parsed.isTrailing());
+		assertTrue(parsed.isCommand("privmsg"));
+		assertTrue(parsed.paramStartsWith(0, '#'));
+
+		parsed.parse(":irc.server 1234 PircBotX");
+		assertEquals(parsed.getCode(), -1);
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import java.util.Map;
+import java.util.Random;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ *
+ * @author Leon Blakey
+ */
+public class PersistentHashMapTest {
+	@Test
+	public void randomTest() {
+		Random random = new Random(1234);
+		Map<Key, Integer> expected = Maps.newHashMap();
+		PersistentHashMap<Key, Integer> map = PersistentHashMap.of();
+		for (int i = 0; i < 20000; i++) {
+			//Few hashes so there are plenty of collisions
+			Key key = new Key(random.nextInt(2000));
+			if (random.nextInt(3) == 0) {
+				expected.remove(key);
+				map = map.minus(key);
+			} else {
+				expected.put(key, i);
+				map = map.plus(key, i);
+			}
+			if (i % 1000 == 0)
+				assertEquals(map, expected);
+		}
+		assertEquals(map, expected);
+		assertEquals(map.size(), expected.size());
+		for (Map.Entry<Key, Integer> curEntry : expected.entrySet()) {
+			assertTrue(map.containsKey(curEntry.getKey()));
+			assertEquals(map.get(curEntry.getKey()), curEntry.getValue());
+		}
+
+		for (Key curKey : expected.keySet())
+			map = map.minus(curKey);
+		assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void persistentTest() {
+		PersistentHashMap<String, Integer> map1 = PersistentHashMap.<String, Integer>of().plus("one", 1);
+		PersistentHashMap<String, Integer> map2 = map1.plus("two", 2);
+		PersistentHashMap<String, Integer> map3 = map2.minus("one");
+
+		assertEquals(map1.size(), 1);
+		assertNull(map1.get("two"));
+		assertEquals(map2.size(), 2);
+		assertEquals(map3.size(), 1);
+		assertEquals(map3.get("two"), Integer.valueOf(2));
+		assertSame(map2.plus("two", 2), map2);
+		assertSame(map2.minus("three"), map2);
+	}
+
+	@Test
+	public void sortedKeysTest() {
+		PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>of().plus("b", 2).plus("a", 1);
+		assertEquals(map.sortedKeys().asList(), ImmutableList.of("a", "b"));
+		assertEquals(map.sortedValues().asList(), ImmutableList.of(1, 2));
+		assertSame(map.sortedKeys(), map.sortedKeys(), "Sorted keys not cached");
+		assertEquals(map.plus("c", 3).sortedKeys().asList(), ImmutableList.of("a", "b", "c"));
+		assertEquals(map.uncached(), map);
+	}
+
+	protected static class Key {
+		protected final int id;
+
+		public Key(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && ((Key) obj).id == id;
+		}
+
+		@Override
+		public int hashCode() {
+			return id % 300;
+		}
+	}
+}
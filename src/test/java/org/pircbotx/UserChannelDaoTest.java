@@ -17,7 +17,17 @@
  */
 package org.pircbotx;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.pircbotx.exception.DaoException;
+import org.pircbotx.snapshot.ChannelSnapshot;
+import org.pircbotx.snapshot.UserChannelDaoSnapshot;
+import org.pircbotx.snapshot.UserSnapshot;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import static org.testng.Assert.*;
@@ -31,7 +41,7 @@ import static org.testng.Assert.*;
 @Test(singleThreaded = true)
 public class UserChannelDaoTest {
 	protected PircBotX smallBot;
-	protected UserChannelDao dao;
+	protected UserChannelDao<User, Channel> dao;
 
 	@BeforeMethod
 	public void setup() {
@@ -93,6 +103,144 @@ public class UserChannelDaoTest {
 		assertFalse(dao.containsUser(TestUtils.generateTestUserOtherHostmask(smallBot)));
 	}
 
+	@Test
+	public void levelsTest() {
+		Channel channel = dao.createChannel("#aChannel");
+		User opUser = TestUtils.generateTestUserSource(smallBot);
+		User normalUser = TestUtils.generateTestUserOther(smallBot);
+		dao.addUserToChannel(opUser, channel);
+		dao.addUserToChannel(normalUser, channel);
+		dao.addUserToLevel(UserLevel.OP, opUser, channel);
+		dao.addUserToLevel(UserLevel.VOICE, opUser, channel);
+
+		assertEquals(dao.getLevels(channel, opUser), ImmutableSortedSet.of(UserLevel.VOICE, UserLevel.OP));
+		assertEquals(dao.getUsers(channel, UserLevel.OP), ImmutableSortedSet.of(opUser));
+		assertEquals(dao.getNormalUsers(channel), ImmutableSortedSet.of(normalUser));
+		assertEquals(dao.getChannels(opUser, UserLevel.VOICE), ImmutableSortedSet.of(channel));
+		assertTrue(dao.getNormalUserChannels(opUser).isEmpty());
+
+		dao.removeUserFromLevel(UserLevel.OP, opUser, channel);
+		assertEquals(dao.getLevels(channel, opUser), ImmutableSortedSet.of(UserLevel.VOICE));
+		assertTrue(dao.getUsers(channel, UserLevel.OP).isEmpty());
+
+		//Rejoining the channel doesn't keep old levels
+		dao.removeUserFromChannel(opUser, channel);
+		assertFalse(dao.levelContainsUser(UserLevel.VOICE, channel, opUser));
+		dao.addUserToChannel(opUser, channel);
+		assertTrue(dao.getLevels(channel, opUser).isEmpty());
+		assertEquals(dao.getNormalUsers(channel), ImmutableSortedSet.of(normalUser, opUser));
+	}
+
+	@Test
+	public void cachedUsersTest() {
+		Channel channel = dao.createChannel("#aChannel");
+		User aUser = TestUtils.generateTestUserSource(smallBot);
+		User otherUser = TestUtils.generateTestUserOther(smallBot);
+		dao.addUserToChannel(aUser, channel);
+		dao.addUserToChannel(otherUser, channel);
+		assertSame(dao.getUsers(channel), dao.getUsers(channel), "Users not cached");
+		assertSame(dao.getChannels(aUser), dao.getChannels(aUser), "Channels not cached");
+		assertEquals(dao.getUsers(channel).asList(), ImmutableList.of(otherUser, aUser));
+
+		//Renaming changes the order
+		dao.renameUser(aUser, "AUser");
+		assertEquals(dao.getUsers(channel).asList(), ImmutableList.of(aUser, otherUser));
+		assertTrue(dao.getUsers(channel).contains(aUser));
+		assertTrue(dao.getAllUsers().contains(aUser));
+	}
+
+	@Test(description = "Make sure lookups don't wait for changes in progress")
+	public void lockFreeReadTest() throws Exception {
+		final Channel channel = dao.createChannel("#aChannel");
+		final User user = TestUtils.generateTestUserSource(smallBot);
+		dao.addUserToChannel(user, channel);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			synchronized (dao.accessLock) {
+				Future<Boolean> result = executor.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						return dao.getUsers(channel).contains(user)
+								&& dao.getChannels(user).contains(channel)
+								&& dao.getUser("SourceUser") == user
+								&& dao.containsChannel("#aChannel");
+					}
+				});
+				assertTrue(result.get(10, TimeUnit.SECONDS), "Lookups returned wrong data");
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void snapshotTest() {
+		Channel channel = dao.createChannel("#aChannel");
+		channel.setTopic("Old topic");
+		User user = TestUtils.generateTestUserSource(smallBot);
+		dao.addUserToChannel(user, channel);
+		dao.addUserToLevel(UserLevel.OP, user, channel);
+		UserChannelDaoSnapshot snapshot = dao.createSnapshot();
+
+		//Modify everything after the snapshot was created
+		channel.setTopic("New topic");
+		dao.renameUser(user, "NewNick");
+		dao.removeUserFromLevel(UserLevel.OP, user, channel);
+		dao.createChannel("#otherChannel");
+
+		ChannelSnapshot channelSnapshot = snapshot.getChannel("#aChannel");
+		assertEquals(channelSnapshot.getTopic(), "Old topic");
+		assertEquals(channelSnapshot.getGeneratedFrom(), channel);
+		assertFalse(snapshot.containsChannel("#otherChannel"));
+		UserSnapshot userSnapshot = snapshot.getUser("SourceUser");
+		assertEquals(userSnapshot.getNick(), "SourceUser");
+		assertFalse(snapshot.containsUser("NewNick"));
+		assertSame(snapshot.getUsers(channelSnapshot).first(), userSnapshot);
+		assertTrue(channelSnapshot.isOp(userSnapshot));
+		assertEquals(userSnapshot.getChannelsOpIn(), ImmutableSortedSet.of(channelSnapshot));
+
+		//Live objects are unchanged by the snapshot
+		assertEquals(channel.getTopic(), "New topic");
+		assertEquals(dao.getUser("NewNick"), user);
+		assertFalse(channel.isOp(user));
+	}
+
+	@Test(description = "Make sure reading a snapshot doesn't wait for the live dao once copied")
+	public void snapshotCachedReadTest() throws Exception {
+		Channel channel = dao.createChannel("#aChannel");
+		User user = TestUtils.generateTestUserSource(smallBot);
+		dao.addUserToChannel(user, channel);
+		dao.addUserToLevel(UserLevel.OP, user, channel);
+		final UserChannelDaoSnapshot snapshot = dao.createSnapshot();
+		final ChannelSnapshot channelSnapshot = snapshot.getChannel("#aChannel");
+		final UserSnapshot userSnapshot = snapshot.getUser("SourceUser");
+		final ImmutableSortedSet<UserSnapshot> users = snapshot.getUsers(channelSnapshot);
+		final ImmutableSortedSet<UserSnapshot> ops = snapshot.getUsers(channelSnapshot, UserLevel.OP);
+		final ImmutableSortedSet<ChannelSnapshot> channels = snapshot.getChannels(userSnapshot);
+		final ImmutableSortedSet<UserSnapshot> allUsers = snapshot.getAllUsers();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			synchronized (dao.accessLock) {
+				Future<Boolean> result = executor.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						return snapshot.getChannel("#aChannel") == channelSnapshot
+								&& snapshot.getUser("SourceUser") == userSnapshot
+								&& snapshot.getUsers(channelSnapshot) == users
+								&& snapshot.getUsers(channelSnapshot, UserLevel.OP) == ops
+								&& snapshot.getChannels(userSnapshot) == channels
+								&& snapshot.getAllUsers() == allUsers;
+					}
+				});
+				assertTrue(result.get(10, TimeUnit.SECONDS), "Snapshot sets weren't cached");
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(ops, ImmutableSortedSet.of(userSnapshot));
+		assertTrue(snapshot.getUsers(channelSnapshot, UserLevel.VOICE).isEmpty());
+	}
+
 	@Test
 	public void userHostmaskEqualsAndHashCodeTest() {
 		UserHostmask user1 = TestUtils.generateTestUserOtherHostmask(smallBot);
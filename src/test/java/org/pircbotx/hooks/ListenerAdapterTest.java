@@ -117,6 +117,23 @@ public class ListenerAdapterTest {
 		customListener.onEvent(customEvent);
 	}
 
+	@Test(description = "Handlers overridden in a superclass of the listener are still called")
+	public void inheritedHandlerTest() throws Exception {
+		final MutableBoolean onMessageCalled = new MutableBoolean(false);
+		class ParentListener extends ListenerAdapter {
+			@Override
+			public void onMessage(MessageEvent event) throws Exception {
+				onMessageCalled.setValue(true);
+			}
+		}
+		ListenerAdapter testListener = new ParentListener() {
+		};
+
+		testListener.onEvent(mock(MessageEvent.class));
+		assertTrue(onMessageCalled.isTrue(), "onMessage from the superclass wasn't called");
+		testListener.onEvent(mock(WhoisEvent.class));
+	}
+
 	@DataProvider
 	@SuppressWarnings("unchecked")
 	public static Object[][] onEventTestDataProvider() {
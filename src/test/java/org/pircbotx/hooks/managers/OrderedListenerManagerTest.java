@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.hooks.managers;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.pircbotx.PircBotX;
+import org.pircbotx.TestUtils;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.Listener;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ *
+ * @author Leon Blakey
+ */
+public class OrderedListenerManagerTest {
+	protected PircBotX bot;
+	protected List<Integer> received;
+	protected CountDownLatch firstEventStarted;
+	protected CountDownLatch releaseFirstEvent;
+
+	@BeforeMethod
+	public void setUp() {
+		bot = new PircBotX(TestUtils.generateConfigurationBuilder().buildConfiguration());
+		received = Collections.synchronizedList(Lists.<Integer>newArrayList());
+		firstEventStarted = new CountDownLatch(1);
+		releaseFirstEvent = new CountDownLatch(1);
+	}
+
+	protected void addListener(OrderedListenerManager manager) {
+		manager.addListener(new Listener() {
+			public void onEvent(Event event) throws Exception {
+				int number = ((TestEvent) event).number;
+				if (number == 0) {
+					firstEventStarted.countDown();
+					releaseFirstEvent.await();
+				}
+				received.add(number);
+			}
+		});
+	}
+
+	protected void finish(OrderedListenerManager manager) throws InterruptedException {
+		manager.shutdown(bot);
+		ExecutorService pool = manager.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS), "Pool didn't shutdown");
+	}
+
+	@Test
+	public void orderTest() throws InterruptedException {
+		OrderedListenerManager manager = new OrderedListenerManager();
+		addListener(manager);
+		releaseFirstEvent.countDown();
+		List<Integer> expected = Lists.newArrayList();
+		for (int i = 0; i < 500; i++) {
+			manager.dispatchEvent(new TestEvent(bot, i));
+			expected.add(i);
+		}
+		finish(manager);
+		assertEquals(received, expected);
+	}
+
+	@Test
+	public void dropOldestTest() throws InterruptedException {
+		OrderedListenerManager manager = new OrderedListenerManager(OrderedListenerManager.DispatchKey.BOT, 3,
+				OrderedListenerManager.OverflowPolicy.DROP_OLDEST, ImmutableSet.<Class<?>>of());
+		addListener(manager);
+		manager.dispatchEvent(new TestEvent(bot, 0));
+		firstEventStarted.await();
+		for (int i = 1; i <= 5; i++)
+			manager.dispatchEvent(new TestEvent(bot, i));
+		releaseFirstEvent.countDown();
+		finish(manager);
+		assertEquals(received, Lists.newArrayList(0, 3, 4, 5));
+		assertEquals(manager.getDroppedEvents(), 2);
+	}
+
+	@Test
+	public void dropByTypeTest() throws InterruptedException {
+		OrderedListenerManager manager = new OrderedListenerManager(OrderedListenerManager.DispatchKey.BOT, 2,
+				OrderedListenerManager.OverflowPolicy.DROP_NEWEST, ImmutableSet.<Class<?>>of(DroppableEvent.class));
+		addListener(manager);
+		manager.dispatchEvent(new TestEvent(bot, 0));
+		firstEventStarted.await();
+		manager.dispatchEvent(new DroppableEvent(bot, 1));
+		manager.dispatchEvent(new TestEvent(bot, 2));
+		//Full, the queued droppable event makes room
+		manager.dispatchEvent(new TestEvent(bot, 3));
+		//Full, nothing droppable is queued so the new event is dropped
+		manager.dispatchEvent(new TestEvent(bot, 4));
+		releaseFirstEvent.countDown();
+		finish(manager);
+		assertEquals(received, Lists.newArrayList(0, 2, 3));
+		assertEquals(manager.getDroppedEvents(), 2);
+	}
+
+	protected static class TestEvent extends Event {
+		protected final int number;
+
+		public TestEvent(PircBotX bot, int number) {
+			super(bot);
+			this.number = number;
+		}
+
+		@Override
+		public void respond(String response) {
+			throw new UnsupportedOperationException("Not supported");
+		}
+	}
+
+	protected static class DroppableEvent extends TestEvent {
+		public DroppableEvent(PircBotX bot, int number) {
+			super(bot, number);
+		}
+	}
+}
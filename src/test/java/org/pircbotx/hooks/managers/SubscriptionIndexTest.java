@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.hooks.managers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.Listener;
+import org.pircbotx.hooks.ListenerAdapter;
+import org.pircbotx.hooks.events.JoinEvent;
+import org.pircbotx.hooks.events.MessageEvent;
+import org.pircbotx.hooks.events.OutputEvent;
+import org.pircbotx.hooks.events.PrivateMessageEvent;
+import org.pircbotx.hooks.events.ServerResponseEvent;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ *
+ * @author Leon Blakey
+ */
+public class SubscriptionIndexTest {
+	@Test
+	public void adapterSubscriptionTest() {
+		ListenerAdapter messageListener = new ListenerAdapter() {
+			@Override
+			public void onMessage(MessageEvent event) throws Exception {
+			}
+		};
+		ListenerAdapter genericListener = new ListenerAdapter() {
+			@Override
+			public void onGenericMessage(GenericMessageEvent event) throws Exception {
+			}
+		};
+		ListenerAdapter eventListener = new ListenerAdapter() {
+			@Override
+			public void onEvent(Event event) throws Exception {
+				super.onEvent(event);
+			}
+		};
+		Listener plainListener = new Listener() {
+			public void onEvent(Event event) throws Exception {
+			}
+		};
+		assertEquals(messageListener.getSubscribedEvents(), ImmutableSet.of(MessageEvent.class));
+		assertEquals(eventListener.getSubscribedEvents(), ImmutableSet.of(Event.class));
+
+		SubscriptionIndex index = new SubscriptionIndex(ImmutableList.of(messageListener, genericListener, eventListener, plainListener));
+		assertEquals(index.getListeners(MessageEvent.class), ImmutableList.of(messageListener, genericListener, eventListener, plainListener));
+		assertEquals(index.getListeners(PrivateMessageEvent.class), ImmutableList.of(genericListener, eventListener, plainListener));
+		assertEquals(index.getListeners(ServerResponseEvent.class), ImmutableList.of(eventListener, plainListener));
+		assertSame(index.getListeners(JoinEvent.class), index.getListeners(JoinEvent.class), "Listeners not cached");
+	}
+
+	@Test
+	public void hasSubscribersTest() {
+		ListenerAdapter messageListener = new ListenerAdapter() {
+			@Override
+			public void onMessage(MessageEvent event) throws Exception {
+			}
+		};
+		ListenerAdapter outputListener = new ListenerAdapter() {
+			@Override
+			public void onOutput(OutputEvent event) throws Exception {
+			}
+		};
+
+		GenericListenerManager genericManager = new GenericListenerManager();
+		assertFalse(genericManager.hasSubscribers(OutputEvent.class));
+		genericManager.addListener(messageListener);
+		assertTrue(genericManager.hasSubscribers(MessageEvent.class));
+		assertFalse(genericManager.hasSubscribers(OutputEvent.class));
+		genericManager.addListener(outputListener);
+		assertTrue(genericManager.hasSubscribers(OutputEvent.class));
+
+		BackgroundListenerManager backgroundManager = new BackgroundListenerManager();
+		backgroundManager.addListener(messageListener);
+		assertFalse(backgroundManager.hasSubscribers(OutputEvent.class));
+		backgroundManager.addListener(outputListener, true);
+		assertTrue(backgroundManager.hasSubscribers(OutputEvent.class));
+		backgroundManager.shutdown();
+	}
+}
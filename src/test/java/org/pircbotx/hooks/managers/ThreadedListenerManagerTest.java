@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.hooks.managers;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.pircbotx.PircBotX;
+import org.pircbotx.TestUtils;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.Listener;
+import org.pircbotx.hooks.events.ConnectEvent;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ *
+ * @author Leon Blakey
+ */
+public class ThreadedListenerManagerTest {
+	@Test
+	public void modifyDuringDispatchTest() throws InterruptedException {
+		final ThreadedListenerManager manager = new ThreadedListenerManager();
+		PircBotX bot = new PircBotX(TestUtils.generateConfigurationBuilder().buildConfiguration());
+		final AtomicInteger calls = new AtomicInteger();
+		Listener selfRemoving = new Listener() {
+			public void onEvent(Event event) throws Exception {
+				calls.incrementAndGet();
+				manager.removeListener(this);
+			}
+		};
+		manager.addListener(selfRemoving);
+		ImmutableSet<Listener> snapshot = manager.getListeners();
+		assertSame(manager.getListeners(), snapshot, "Listeners copied without modification");
+
+		manager.dispatchEvent(new ConnectEvent(bot));
+		manager.shutdown(bot);
+		assertEquals(calls.get(), 1);
+		assertFalse(manager.listenerExists(selfRemoving));
+		assertEquals(snapshot, ImmutableSet.of(selfRemoving), "Snapshot modified");
+
+		manager.dispatchEvent(new ConnectEvent(bot));
+		manager.shutdown(bot);
+		assertEquals(calls.get(), 1);
+		assertTrue(manager.shutdown().awaitTermination(10, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.hooks.managers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.pircbotx.Configuration;
+import org.pircbotx.PircBotX;
+import org.pircbotx.TestUtils;
+import org.pircbotx.Utils;
+import org.pircbotx.hooks.Event;
+import org.pircbotx.hooks.Listener;
+import org.pircbotx.hooks.events.ConnectEvent;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ *
+ * @author Leon Blakey
+ */
+public class VirtualThreadListenerManagerTest {
+	@Test
+	public void dispatchTest() throws InterruptedException {
+		ExecutorService virtualPool = Utils.newVirtualThreadExecutor("test");
+		boolean supported = virtualPool != null;
+		if (supported)
+			virtualPool.shutdown();
+
+		VirtualThreadListenerManager manager = new VirtualThreadListenerManager();
+		assertEquals(manager.isVirtual(), supported);
+		final AtomicReference<Thread> listenerThread = new AtomicReference<Thread>();
+		manager.addListener(new Listener() {
+			public void onEvent(Event event) throws Exception {
+				listenerThread.set(Thread.currentThread());
+			}
+		});
+		PircBotX bot = new PircBotX(TestUtils.generateConfigurationBuilder().buildConfiguration());
+		manager.dispatchEvent(new ConnectEvent(bot));
+		manager.shutdown(bot);
+		assertNotNull(listenerThread.get(), "Listener not executed");
+		assertNotSame(listenerThread.get(), Thread.currentThread());
+		String prefix = supported ? "virtualListener" : "virtualListenerFallback";
+		assertTrue(listenerThread.get().getName().startsWith(prefix + manager.managerNumber + "-thread"),
+				"Thread name doesn't match the manager number: " + listenerThread.get().getName());
+		assertTrue(manager.shutdown().awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void enableAfterListenerManagerTest() {
+		Configuration.Builder builder = new Configuration.Builder();
+		//Creates the default listener manager
+		assertTrue(builder.getListenerManager() instanceof ThreadedListenerManager);
+		builder.setVirtualThreadsEnabled(true);
+	}
+}
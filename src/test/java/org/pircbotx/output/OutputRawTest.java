@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.output;
+
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import org.pircbotx.PircBotX;
+import org.pircbotx.TestUtils;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Leon Blakey
+ */
+public class OutputRawTest {
+	@Test
+	public void priorityTest() throws Exception {
+		PircBotX bot = mock(PircBotX.class);
+		when(bot.isConnected()).thenReturn(true);
+		when(bot.getConfiguration()).thenReturn(TestUtils.generateConfigurationBuilder()
+				.setMessageDelay(5)
+				.buildConfiguration());
+		final List<String> sent = Collections.synchronizedList(Lists.<String>newArrayList());
+		final CountDownLatch firstLineLatch = new CountDownLatch(1);
+		final CountDownLatch writerBlockedLatch = new CountDownLatch(1);
+		final OutputRaw output = new OutputRaw(bot) {
+			@Override
+			protected void sendLine(String line) throws IOException {
+				try {
+					writerBlockedLatch.countDown();
+					firstLineLatch.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				sent.add(line);
+				super.sendLine(line);
+			}
+		};
+
+		//First line blocks the writer so the rest have to queue
+		List<Thread> senders = Lists.newArrayList();
+		senders.add(send(output, "PRIVMSG #chan :first", OutputPriority.INTERACTIVE));
+		//Wait until the writer took the first line so the queue size only grows
+		writerBlockedLatch.await();
+		senders.add(send(output, "PRIVMSG #chan :bulk1", OutputPriority.BULK));
+		senders.add(send(output, "PRIVMSG #chan :bulk2", OutputPriority.BULK));
+		senders.add(send(output, "PRIVMSG #chan :reply", OutputPriority.INTERACTIVE));
+		senders.add(send(output, "PONG :1234", null));
+		firstLineLatch.countDown();
+		for (Thread curSender : senders)
+			curSender.join();
+
+		assertEquals(sent, Lists.newArrayList("PRIVMSG #chan :first", "PONG :1234",
+				"PRIVMSG #chan :reply", "PRIVMSG #chan :bulk1", "PRIVMSG #chan :bulk2"));
+		assertEquals(output.getOutgoingQueueSize(), 0);
+	}
+
+	@Test
+	public void criticalCommandLocaleTest() {
+		PircBotX bot = mock(PircBotX.class);
+		when(bot.getConfiguration()).thenReturn(TestUtils.generateConfigurationBuilder().buildConfiguration());
+		OutputRaw output = new OutputRaw(bot);
+		Locale defaultLocale = Locale.getDefault();
+		try {
+			//Upper cases i to a dotted I
+			Locale.setDefault(new Locale("tr", "TR"));
+			assertEquals(output.getPriority("quit :bye"), OutputPriority.CRITICAL);
+			assertEquals(output.getPriority("ping 1234"), OutputPriority.CRITICAL);
+			assertEquals(output.getPriority("privmsg #chan :hi"), OutputPriority.INTERACTIVE);
+		} finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+
+	protected Thread send(final OutputRaw output, final String line, final OutputPriority priority) throws InterruptedException {
+		int queued = output.getOutgoingQueueSize();
+		Thread sender = new Thread() {
+			@Override
+			public void run() {
+				if (priority == null)
+					output.rawLine(line);
+				else
+					output.rawLine(line, priority);
+			}
+		};
+		sender.start();
+		//Wait until its queued to keep the order predictable
+		if (output.writerThread != null)
+			while (output.getOutgoingQueueSize() == queued)
+				Thread.sleep(1);
+		return sender;
+	}
+}
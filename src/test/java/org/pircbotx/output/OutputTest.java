@@ -17,6 +17,8 @@
  */
 package org.pircbotx.output;
 
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
 import java.io.BufferedReader;
 import java.io.IOException;
 import org.pircbotx.hooks.managers.GenericListenerManager;
@@ -27,7 +29,9 @@ import java.net.InetAddress;
 import java.net.Socket;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
@@ -38,6 +42,8 @@ import org.pircbotx.Configuration;
 import org.pircbotx.InputParser;
 import org.pircbotx.PircBotX;
 import org.pircbotx.User;
+import org.pircbotx.hooks.ListenerAdapter;
+import org.pircbotx.hooks.events.OutputEvent;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -109,6 +115,21 @@ public class OutputTest {
 		checkOutput(aString);
 	}
 
+	@Test(description = "Verify an OutputEvent listener can send a line from the writer thread", timeOut = 10000)
+	public void sendRawLineFromOutputListenerTest() throws Exception {
+		assertTrue(bot.getConfiguration().getListenerManager() instanceof GenericListenerManager);
+		bot.getConfiguration().getListenerManager().addListener(new ListenerAdapter() {
+			@Override
+			public void onOutput(OutputEvent event) throws Exception {
+				if (event.getRawLine().equals(aString))
+					event.getBot().sendRaw().rawLine("PRIVMSG #aChannel :reply");
+			}
+		});
+		bot.sendRaw().rawLine(aString);
+		Iterator<String> outputItr = checkOutput(aString);
+		assertEquals(tryGetNextLine(outputItr), "PRIVMSG #aChannel :reply");
+	}
+
 	@Test(description = "Verify sendRawLineSplit works correctly with short strings")
 	public void sendRawLineSplitShort() throws Exception {
 		String beginning = "BEGIN";
@@ -286,6 +307,44 @@ public class OutputTest {
 		checkOutput("NOTICE SourceUser :" + aString);
 	}
 
+	@Test(description = "Verify async sends to a channel and a user")
+	public void sendAsyncTest() throws Exception {
+		ListenableFuture<Void> messageFuture = aChannel.send().messageAsync(aString);
+		ListenableFuture<Void> noticeFuture = aUser.send().noticeAsync(aString);
+		noticeFuture.get(10, TimeUnit.SECONDS);
+		assertTrue(messageFuture.isDone(), "Message not sent before the following notice");
+		Iterator<String> outputItr = checkOutput("PRIVMSG #aChannel :" + aString);
+		assertEquals(tryGetNextLine(outputItr), "NOTICE SourceUser :" + aString);
+	}
+
+	@Test
+	public void broadcastTest() throws Exception {
+		bot.getServerInfo().parse(5, Arrays.asList("PircBotX", "TARGMAX=NAMES:1,PRIVMSG:2,NOTICE:", "are supported by this server"));
+		assertEquals(bot.getServerInfo().getMaxTargets("privmsg"), 2);
+		assertEquals(bot.getServerInfo().getMaxTargets("NOTICE"), Integer.MAX_VALUE);
+		assertEquals(bot.getServerInfo().getMaxTargets("KICK"), 1);
+
+		bot.sendIRC().broadcast(Arrays.asList("#chan1", "#chan2", "#chan3"), aString);
+		bot.sendIRC().broadcastNotice(Arrays.asList("#chan1", "#chan2", "#chan3"), aString);
+		Iterator<String> outputItr = checkOutput("PRIVMSG #chan1,#chan2 :" + aString);
+		assertEquals(tryGetNextLine(outputItr), "PRIVMSG #chan3 :" + aString);
+		assertEquals(tryGetNextLine(outputItr), "NOTICE #chan1,#chan2,#chan3 :" + aString);
+	}
+
+	@Test
+	public void joinChannelsTest() throws Exception {
+		Map<String, String> channels = Maps.newLinkedHashMap();
+		channels.put("#chan1", "key1");
+		channels.put("#chan2", "");
+		channels.put("#chan3", "key3");
+		assertEquals(bot.sendIRC().joinLines(channels), Arrays.asList("JOIN #chan1,#chan3,#chan2 key1,key3"));
+
+		bot.getServerInfo().parse(5, Arrays.asList("PircBotX", "TARGMAX=JOIN:2", "are supported by this server"));
+		bot.sendIRC().joinChannels(channels);
+		Iterator<String> outputItr = checkOutput("JOIN #chan1,#chan3 key1,key3");
+		assertEquals(tryGetNextLine(outputItr), "JOIN #chan2");
+	}
+
 	@Test
 	public void sendQuit() throws Exception {
 		bot.sendIRC().quitServer();
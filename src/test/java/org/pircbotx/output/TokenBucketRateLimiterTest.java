@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2010-2014 Leon Blakey <lord.quackstar at gmail.com>
+ *
+ * This file is part of PircBotX.
+ *
+ * PircBotX is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * PircBotX is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * PircBotX. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.pircbotx.output;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+/**
+ *
+ * @author Leon Blakey
+ */
+public class TokenBucketRateLimiterTest {
+	protected static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	public void burstTest() {
+		RateLimiter limiter = TokenBucketRateLimiter.rfc1459();
+		long now = -123 * SECOND;
+		for (int i = 0; i < 5; i++) {
+			assertTrue(limiter.getDelayNanos("PRIVMSG #chan :hi", now) <= 0, "Line " + i + " not part of burst");
+			limiter.lineSent("PRIVMSG #chan :hi", now);
+		}
+		assertEquals(limiter.getDelayNanos("PRIVMSG #chan :hi", now), 2 * SECOND);
+
+		//Refills one line every 2 seconds
+		now += 2 * SECOND;
+		assertTrue(limiter.getDelayNanos("PRIVMSG #chan :hi", now) <= 0);
+		limiter.lineSent("PRIVMSG #chan :hi", now);
+		assertEquals(limiter.getDelayNanos("PRIVMSG #chan :hi", now), 2 * SECOND);
+
+		//Idle refills the whole bucket but not more
+		now += 60 * SECOND;
+		for (int i = 0; i < 5; i++)
+			limiter.lineSent("PRIVMSG #chan :hi", now);
+		assertEquals(limiter.getDelayNanos("PRIVMSG #chan :hi", now), 2 * SECOND);
+	}
+
+	@Test
+	public void fixedDelayTest() {
+		RateLimiter limiter = TokenBucketRateLimiter.fixedDelay(1000);
+		assertTrue(limiter.getDelayNanos("PING", 0) <= 0);
+		limiter.lineSent("PING", 0);
+		assertEquals(limiter.getDelayNanos("PING", 0), SECOND);
+		assertEquals(limiter.getDelayNanos("PING", SECOND / 4), 3 * SECOND / 4);
+
+		limiter = TokenBucketRateLimiter.fixedDelay(0);
+		limiter.lineSent("PING", 0);
+		assertTrue(limiter.getDelayNanos("PING", 0) <= 0);
+	}
+
+	@Test
+	public void lengthPenaltyTest() {
+		String longLine = "PRIVMSG #chan :" + new String(new char[223]).replace('\0', 'a');
+		//240 characters including the line ending cost about 2 extra seconds each
+		RateLimiter limiter = TokenBucketRateLimiter.ircu();
+		limiter.lineSent(longLine, 0);
+		limiter.lineSent(longLine, 0);
+		assertTrue(limiter.getDelayNanos("PING", 0) > 0, "Line length ignored");
+
+		limiter = TokenBucketRateLimiter.rfc1459();
+		limiter.lineSent(longLine, 0);
+		limiter.lineSent(longLine, 0);
+		assertTrue(limiter.getDelayNanos("PING", 0) <= 0);
+	}
+
+	@Test
+	public void encodedLengthTest() {
+		TokenBucketRateLimiter limiter = TokenBucketRateLimiter.ircu(Charset.forName("UTF-8"));
+		String asciiLine = "PRIVMSG #chan :" + new String(new char[100]).replace('\0', 'a');
+		String unicodeLine = "PRIVMSG #chan :" + new String(new char[100]).replace('\0', '\u00e9');
+		assertEquals(limiter.getEncodedLength(asciiLine), 115);
+		assertEquals(limiter.getEncodedLength(unicodeLine), 215);
+		//Each two byte character is charged twice
+		assertEquals(limiter.getDelayNanos(unicodeLine, 0) - limiter.getDelayNanos(asciiLine, 0), 100 * limiter.getByteCostNanos());
+
+		limiter = TokenBucketRateLimiter.ircu(Charset.forName("ISO-8859-1"));
+		assertEquals(limiter.getEncodedLength(unicodeLine), 115);
+	}
+}